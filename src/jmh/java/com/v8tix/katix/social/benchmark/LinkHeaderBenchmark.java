@@ -0,0 +1,102 @@
+package com.v8tix.katix.social.benchmark;
+
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.util.LinkHeaderWriter;
+import com.v8tix.katix.social.util.LinkRelation;
+import com.v8tix.katix.social.util.RestHelper;
+import com.v8tix.katix.social.utils.LegacyLinkHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.v8tix.katix.social.util.CursorHelper.encodeCursor;
+
+/**
+ * The Link header of a pageable listing, of a cursor listing and of a single post, written by
+ * {@link LinkHeaderWriter} and by the previous {@code String.format} based {@link
+ * LegacyLinkHelper}. {@code LinkHeaderWriterTests} checks that both produce the same bytes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkHeaderBenchmark {
+
+  private static final String POSTS_PATH = "localhost:8080/katix/social/api/v1/posts/";
+  private static final String USERS_PATH = "localhost:8080/katix/social/api/v1/users/";
+  private static final String ID = "5b85bc5610dfea5143d83d75";
+  private static final long PAGE = 3;
+  private static final long PER_PAGE = 5;
+  private static final long NUMBER_OF_ELEMENTS = 100;
+
+  private CursorPage<Long> cursorPage;
+  private String commentsWebLink;
+  private String userWebLink;
+
+  @Setup
+  public void setUp() {
+    final String cursor = encodeCursor(1535491159707L, ID);
+    cursorPage = new CursorPage<>(Collections.singletonList(1L), cursor, cursor);
+    commentsWebLink =
+        RestHelper.createPageableWebLink(
+            POSTS_PATH + ID + "/comments/", 1, PER_PAGE, LinkRelation.COMMENTS);
+    userWebLink = RestHelper.createWebLink(USERS_PATH + ID, LinkRelation.USER);
+  }
+
+  @Benchmark
+  public String pageableHeader() {
+    return LinkHeaderWriter.start()
+        .pageableLinks(POSTS_PATH, PAGE, PER_PAGE, NUMBER_OF_ELEMENTS)
+        .pageableLink(POSTS_PATH, PAGE, PER_PAGE, LinkRelation.SELF)
+        .toString();
+  }
+
+  @Benchmark
+  public String legacyPageableHeader() {
+    final String selfWebLink =
+        LegacyLinkHelper.createPageableWebLink(POSTS_PATH, PAGE, PER_PAGE, LinkRelation.SELF);
+    return LegacyLinkHelper.createPageableHeader(
+        POSTS_PATH, PAGE, PER_PAGE, NUMBER_OF_ELEMENTS, selfWebLink);
+  }
+
+  @Benchmark
+  public String cursorHeader() {
+    return LinkHeaderWriter.start()
+        .cursorLinks(POSTS_PATH, PER_PAGE, cursorPage)
+        .cursorLink(POSTS_PATH, PER_PAGE, cursorPage.getNext(), null, LinkRelation.SELF)
+        .toString();
+  }
+
+  @Benchmark
+  public String legacyCursorHeader() {
+    final String selfWebLink =
+        LegacyLinkHelper.createCursorWebLink(
+            POSTS_PATH, PER_PAGE, cursorPage.getNext(), null, LinkRelation.SELF);
+    return LegacyLinkHelper.createCursorHeader(POSTS_PATH, PER_PAGE, cursorPage, selfWebLink);
+  }
+
+  @Benchmark
+  public String selfHeader() {
+    return LinkHeaderWriter.start()
+        .link(POSTS_PATH, ID, LinkRelation.SELF)
+        .links(commentsWebLink, userWebLink)
+        .toString();
+  }
+
+  @Benchmark
+  public String legacySelfHeader() {
+    return LegacyLinkHelper.createSelfWebLinks(POSTS_PATH, ID, commentsWebLink, userWebLink);
+  }
+}
@@ -0,0 +1,107 @@
+package com.v8tix.katix.social.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.util.JsonHelper;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing, encoding and decoding a post with embedded comments: the id-based {@code hashCode} and
+ * the shared {@link JsonHelper} writers against the previous JSON-based hash and per-call {@link
+ * ObjectMapper}. Run with {@code -prof gc} to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+
+  private static final String CONTENT = "Hello World !";
+
+  @Param({"0", "5"})
+  private int comments;
+
+  private List<Post> posts;
+  private byte[] encodedPost;
+  private ObjectReader postReader;
+
+  @Setup
+  public void setUp() throws JsonProcessingException {
+    posts = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final Post post = new Post(CONTENT, new ObjectId().toHexString());
+      post.setId(new ObjectId().toHexString());
+      post.setProfilePicture(CONTENT);
+      final List<Comment> postComments = new ArrayList<>();
+      for (int j = 0; j < comments; j++) {
+        final Comment comment = new Comment(CONTENT, post.getUserId(), post.getId());
+        comment.setId(new ObjectId().toHexString());
+        postComments.add(comment);
+      }
+      post.addComments(postComments);
+      posts.add(post);
+    }
+    encodedPost = JsonHelper.writerFor(Post.class).writeValueAsBytes(posts.get(0));
+    postReader = JsonHelper.MAPPER.readerFor(Post.class);
+  }
+
+  @Benchmark
+  public Set<Post> hashSetOfPosts() {
+    return new HashSet<>(posts);
+  }
+
+  @Benchmark
+  public int legacyHashSetOfPosts() {
+    final Set<Integer> hashes = new HashSet<>();
+    for (Post post : posts) {
+      hashes.add(legacyToJson(post).hashCode());
+    }
+    return hashes.size();
+  }
+
+  @Benchmark
+  public int encodePost() throws JsonProcessingException {
+    return JsonHelper.writerFor(Post.class).writeValueAsBytes(posts.get(0)).length;
+  }
+
+  @Benchmark
+  public int legacyEncodePost() throws JsonProcessingException {
+    return new ObjectMapper().writeValueAsBytes(posts.get(0)).length;
+  }
+
+  @Benchmark
+  public Post decodePost() throws IOException {
+    return postReader.readValue(encodedPost);
+  }
+
+  private static String legacyToJson(final Object value) {
+    try {
+      return new ObjectMapper().writeValueAsString(value);
+    } catch (JsonProcessingException e) {
+      return "";
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.v8tix.katix.social.benchmark;
+
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.util.RestHelper;
+import com.v8tix.katix.social.util.StringHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.v8tix.katix.social.util.CursorHelper.encodeCursor;
+
+/** The pagination links and the string concatenation every listing response goes through. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RestHelperBenchmark {
+
+  private static final String POSTS_PATH = "localhost:8080/katix/social/api/v1/posts/";
+  private static final String ID = "5b85bc5610dfea5143d83d75";
+  private static final long PER_PAGE = 5;
+
+  private static final long NUMBER_OF_ELEMENTS = 20 * PER_PAGE;
+
+  private CursorPage<Long> cursorPage;
+
+  @State(Scope.Benchmark)
+  public static class PageState {
+
+    @Param({"1", "10", "20"})
+    private long page;
+  }
+
+  @Setup
+  public void setUp() {
+    final String cursor = encodeCursor(1535491159707L, ID);
+    cursorPage = new CursorPage<>(Collections.singletonList(1L), cursor, cursor);
+  }
+
+  @Benchmark
+  public String createPageableWebLinks(final PageState pageState) {
+    return RestHelper.createPageableWebLinks(
+        POSTS_PATH, pageState.page, PER_PAGE, NUMBER_OF_ELEMENTS);
+  }
+
+  @Benchmark
+  public String createCursorWebLinks() {
+    return RestHelper.createPageableWebLinks(POSTS_PATH, PER_PAGE, cursorPage);
+  }
+
+  @Benchmark
+  public String concatStrings() {
+    return StringHelper.concatStrings(
+        StringHelper.EMPTY_STRING, POSTS_PATH, ID, "/comments/", ID);
+  }
+
+  @Benchmark
+  public String concatStringsWithDelimiter() {
+    return StringHelper.concatStrings(
+        StringHelper.COMA, POSTS_PATH, ID, StringHelper.EMPTY_STRING, POSTS_PATH);
+  }
+}
@@ -0,0 +1,78 @@
+package com.v8tix.katix.social.benchmark;
+
+import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.exception.ErrorDetail;
+import com.v8tix.katix.social.exception.RestExceptionHandler;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.util.BeanValidationHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean validation of a post on the write path, and turning a rejected post into the 400 response
+ * through {@link RestExceptionHandler}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark implements BeanValidationHelper<Post> {
+
+  private static final String CONTENT = "Hello World !";
+  private static final String ID = "5b85bc5610dfea5143d83d75";
+
+  private final RestExceptionHandler restExceptionHandler = new RestExceptionHandler();
+  private Validator validator;
+  private Post validPost;
+  private Post invalidPost;
+  private BeanValidationException exception;
+
+  @Setup
+  public void setUp() {
+    validator = Validation.buildDefaultValidatorFactory().getValidator();
+    validPost = new Post(CONTENT, ID);
+    validPost.setProfilePicture(CONTENT);
+    invalidPost = new Post();
+    try {
+      validate(validator, invalidPost);
+    } catch (BeanValidationException e) {
+      exception = e;
+    }
+  }
+
+  @Benchmark
+  public Post validateValidPost() {
+    validate(validator, validPost);
+    return validPost;
+  }
+
+  @Benchmark
+  public String validateInvalidPost() {
+    try {
+      validate(validator, invalidPost);
+      return null;
+    } catch (BeanValidationException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Benchmark
+  public ResponseEntity<ErrorDetail> handleErrorDetailException() {
+    return restExceptionHandler.handleErrorDetailException(exception);
+  }
+}
@@ -0,0 +1,363 @@
+package com.v8tix.katix.social.component;
+
+import com.v8tix.katix.social.model.CascadeTask;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.Versioned;
+import com.v8tix.katix.social.service.ExistenceReactiveService;
+import com.v8tix.katix.social.service.TimelineReactiveService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.v8tix.katix.social.model.CascadeTask.Status.DONE;
+import static com.v8tix.katix.social.model.CascadeTask.Status.FAILED;
+import static com.v8tix.katix.social.model.CascadeTask.Status.PENDING;
+import static com.v8tix.katix.social.model.CascadeTask.Status.RUNNING;
+import static com.v8tix.katix.social.service.VersionedUpdateService.ID;
+import static com.v8tix.katix.social.util.StringHelper.COLON;
+import static com.v8tix.katix.social.util.StringHelper.concatStrings;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Removes the documents orphaned by a delete in the background: the comments of a post, and the
+ * comments, posts, follows and timeline of a user. Tasks are stored in Mongo and claimed under a
+ * lease, so a cascade interrupted by a restart is resumed by the next poll of any instance.
+ *
+ * <p>Each batch looks up at most {@code social.cascade.batch_size} ids and removes them with one
+ * deleteMany, followed by a pause of {@code social.cascade.batch_delay_ms} so that a large cascade
+ * never saturates the database.
+ */
+@Component
+public class CascadeDeleteJob {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CascadeDeleteJob.class);
+  private static final String STATUS = "status";
+  private static final String LEASE_UNTIL = "leaseUntil";
+  private static final String UPDATED_AT_EPOCH = "updatedAtEpoch";
+  private static final String CREATED_AT_EPOCH = "createdAtEpoch";
+  private static final String ATTEMPTS = "attempts";
+  private static final String LAST_ERROR = "lastError";
+  private static final String DELETED_POSTS = "deletedPosts";
+  private static final String DELETED_COMMENTS = "deletedComments";
+  private static final String POST_ID = "postId";
+  private static final String USER_ID = "userId";
+
+  private final ReactiveMongoOperations operations;
+  private final CounterCache counterCache;
+  private final ExistenceReactiveService existenceReactiveService;
+  private final EntityCache<Post> postCache;
+  private final LatestComments latestComments;
+  private final TimelineReactiveService timelineReactiveService;
+  private final SearchIndex searchIndex;
+  private final MeterRegistry meterRegistry;
+  private final int batchSize;
+  private final Duration batchDelay;
+  private final Duration pollInterval;
+  private final long leaseMs;
+  private final int maxAttempts;
+  private final AtomicLong openTasks = new AtomicLong();
+  private Disposable poller;
+
+  @Autowired
+  public CascadeDeleteJob(
+      final ReactiveMongoOperations operations,
+      final CounterCache counterCache,
+      final ExistenceReactiveService existenceReactiveService,
+      final EntityCache<Post> postCache,
+      final LatestComments latestComments,
+      final TimelineReactiveService timelineReactiveService,
+      final SearchIndex searchIndex,
+      final MeterRegistry meterRegistry,
+      final @Value("${social.cascade.batch_size}") int batchSize,
+      final @Value("${social.cascade.batch_delay_ms}") long batchDelayMs,
+      final @Value("${social.cascade.poll_ms}") long pollMs,
+      final @Value("${social.cascade.lease_ms}") long leaseMs,
+      final @Value("${social.cascade.max_attempts}") int maxAttempts) {
+    this.operations = operations;
+    this.counterCache = counterCache;
+    this.existenceReactiveService = existenceReactiveService;
+    this.postCache = postCache;
+    this.latestComments = latestComments;
+    this.timelineReactiveService = timelineReactiveService;
+    this.searchIndex = searchIndex;
+    this.meterRegistry = meterRegistry;
+    this.batchSize = batchSize;
+    this.batchDelay = Duration.ofMillis(batchDelayMs);
+    this.pollInterval = Duration.ofMillis(pollMs);
+    this.leaseMs = leaseMs;
+    this.maxAttempts = maxAttempts;
+    Gauge.builder("social.cascade.open_tasks", openTasks, AtomicLong::get)
+        .description("Cascade tasks pending or running when last polled")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    poller =
+        Flux.interval(pollInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> drain(), 1)
+            .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (poller != null) {
+      poller.dispose();
+    }
+  }
+
+  public Mono<CascadeTask> enqueue(final CascadeTask.Type type, final String targetId) {
+    return operations.insert(new CascadeTask(type, targetId, System.currentTimeMillis()));
+  }
+
+  /** Runs claimed tasks one after another until none is left. */
+  private Mono<Void> drain() {
+    return countOpenTasks()
+        .then(claim())
+        .flatMap(this::run)
+        .expand(task -> claim().flatMap(this::run))
+        .then()
+        .onErrorResume(
+            e -> {
+              LOGGER.warn(concatStrings(COLON, "Cascade poll failed", e.getMessage()));
+              return Mono.empty();
+            });
+  }
+
+  private Mono<Long> countOpenTasks() {
+    return operations
+        .count(query(where(STATUS).in(PENDING, RUNNING)), CascadeTask.class)
+        .doOnNext(openTasks::set);
+  }
+
+  // Pending tasks, and running ones whose instance stopped renewing the lease.
+  private Mono<CascadeTask> claim() {
+    final long now = System.currentTimeMillis();
+    final Query claimable =
+        query(
+                new Criteria()
+                    .orOperator(
+                        where(STATUS).is(PENDING),
+                        where(STATUS).is(RUNNING).and(LEASE_UNTIL).lt(now)))
+            .with(Sort.by(CREATED_AT_EPOCH));
+    final Update lease =
+        new Update()
+            .set(STATUS, RUNNING)
+            .set(LEASE_UNTIL, now + leaseMs)
+            .set(UPDATED_AT_EPOCH, now)
+            .inc(ATTEMPTS, 1);
+    return operations.findAndModify(
+        claimable, lease, FindAndModifyOptions.options().returnNew(true), CascadeTask.class);
+  }
+
+  private Mono<CascadeTask> run(final CascadeTask task) {
+    final Mono<Void> cascade =
+        task.getType() == CascadeTask.Type.POST_COMMENTS
+            ? deletePostComments(task, Collections.singletonList(task.getTargetId()))
+            : deleteUserContent(task);
+    return cascade
+        .then(Mono.defer(() -> finish(task, DONE, null)))
+        .onErrorResume(
+            e -> {
+              LOGGER.warn(concatStrings(COLON, "Cascade failed", task.getId(), e.getMessage()));
+              return finish(task, task.getAttempts() < maxAttempts ? RUNNING : FAILED, e);
+            });
+  }
+
+  /** A task left RUNNING is retried once its lease runs out, which spaces the attempts. */
+  private Mono<CascadeTask> finish(
+      final CascadeTask task, final CascadeTask.Status status, final Throwable error) {
+    final long now = System.currentTimeMillis();
+    final Update update = new Update().set(STATUS, status).set(UPDATED_AT_EPOCH, now);
+    if (status == RUNNING) {
+      update.set(LEASE_UNTIL, now + leaseMs);
+    }
+    if (error != null) {
+      update.set(LAST_ERROR, error.getMessage());
+    }
+    return operations
+        .updateFirst(query(where(ID).is(task.getId())), update, CascadeTask.class)
+        .doOnSuccess(
+            updateResult ->
+                Counter.builder("social.cascade.tasks")
+                    .description("Cascade task runs by type and outcome")
+                    .tag("type", task.getType().name())
+                    .tag("status", status.name())
+                    .register(meterRegistry)
+                    .increment())
+        .thenReturn(task);
+  }
+
+  private Mono<Void> deletePostComments(final CascadeTask task, final List<String> postIds) {
+    return deleteInBatches(
+            task, Comment.class, where(POST_ID).in(postIds), DELETED_COMMENTS, nothing(), nothing())
+        .then();
+  }
+
+  /**
+   * The user's comments on other posts go first, each removed batch marking the posts it touches
+   * beforehand and rebuilding their comment preview and lowering their comment count after, then
+   * the user's posts together with all of their comments. A count left behind by an interrupted
+   * batch is repaired by the {@link CommentCountReconciler}.
+   */
+  private Mono<Void> deleteUserContent(final CascadeTask task) {
+    final Mono<Long> comments =
+        deleteInBatches(
+            task,
+            Comment.class,
+            where(USER_ID).is(task.getTargetId()),
+            DELETED_COMMENTS,
+            batch -> latestComments.beforeRemove(postIdsOf(batch)),
+            batch -> {
+              searchIndex.removeComments(idsOf(batch));
+              return rebuildPreviews(batch);
+            });
+    final Mono<Long> posts =
+        deleteInBatches(
+            task,
+            Post.class,
+            where(USER_ID).is(task.getTargetId()),
+            DELETED_POSTS,
+            batch -> deletePostsComments(task, batch),
+            nothing());
+    return comments.then(posts).then(timelineReactiveService.removeUser(task.getTargetId()));
+  }
+
+  private static Set<String> postIdsOf(final List<Comment> comments) {
+    return comments.stream().map(Comment::getPostId).collect(toSet());
+  }
+
+  private Mono<Void> rebuildPreviews(final List<Comment> comments) {
+    final Map<String, Long> removedByPostId =
+        comments.stream().collect(groupingBy(Comment::getPostId, counting()));
+    return Flux.fromIterable(removedByPostId.entrySet())
+        .flatMap(removed -> latestComments.rebuild(removed.getKey(), -removed.getValue()))
+        .then();
+  }
+
+  private Mono<Void> deletePostsComments(final CascadeTask task, final List<Post> posts) {
+    final List<String> postIds = posts.stream().map(Post::getId).collect(toList());
+    return deletePostComments(task, postIds)
+        .doOnSuccess(
+            none -> {
+              counterCache.add(counterCache.collectionKey(Post.class), -postIds.size());
+              searchIndex.removePosts(postIds);
+              postIds.forEach(
+                  postId -> {
+                    existenceReactiveService.evict(Post.class, postId);
+                    postCache.invalidate(postId);
+                  });
+            });
+  }
+
+  /**
+   * Removes the matching documents one batch at a time and emits how many were removed. {@code
+   * beforeRemove} and {@code afterRemove} see each batch, projected to the id and the reference
+   * fields.
+   */
+  private <T extends Versioned> Mono<Long> deleteInBatches(
+      final CascadeTask task,
+      final Class<T> entityClass,
+      final Criteria criteria,
+      final String progressField,
+      final Function<List<T>, Mono<Void>> beforeRemove,
+      final Function<List<T>, Mono<Void>> afterRemove) {
+    final Mono<Long> batch =
+        Mono.defer(
+            () ->
+                deleteBatch(
+                    task, entityClass, criteria, progressField, beforeRemove, afterRemove));
+    return batch
+        .expand(deleted -> deleted < batchSize ? Mono.empty() : Mono.delay(batchDelay).then(batch))
+        .reduce(0L, Long::sum);
+  }
+
+  private <T extends Versioned> Mono<Long> deleteBatch(
+      final CascadeTask task,
+      final Class<T> entityClass,
+      final Criteria criteria,
+      final String progressField,
+      final Function<List<T>, Mono<Void>> beforeRemove,
+      final Function<List<T>, Mono<Void>> afterRemove) {
+    final Query batchQuery = query(criteria).limit(batchSize);
+    batchQuery.fields().include(ID).include(POST_ID).include(USER_ID);
+    return operations
+        .find(batchQuery, entityClass)
+        .collectList()
+        .filter(batch -> !batch.isEmpty())
+        .flatMap(
+            batch ->
+                beforeRemove
+                    .apply(batch)
+                    .then(operations.remove(query(where(ID).in(idsOf(batch))), entityClass))
+                    .flatMap(
+                        deleteResult ->
+                            recordProgress(
+                                task, entityClass, progressField, deleteResult.getDeletedCount()))
+                    .then(Mono.defer(() -> afterRemove.apply(batch)))
+                    .thenReturn((long) batch.size()))
+        .defaultIfEmpty(0L);
+  }
+
+  private static <T> Function<List<T>, Mono<Void>> nothing() {
+    return batch -> Mono.empty();
+  }
+
+  private static List<String> idsOf(final List<? extends Versioned> batch) {
+    return batch.stream().map(Versioned::getId).collect(toList());
+  }
+
+  private Mono<Void> recordProgress(
+      final CascadeTask task,
+      final Class<?> entityClass,
+      final String progressField,
+      final long deleted) {
+    Counter.builder("social.cascade.deleted")
+        .description("Documents removed by cascade deletes")
+        .tag("collection", operations.getCollectionName(entityClass))
+        .register(meterRegistry)
+        .increment(deleted);
+    final long now = System.currentTimeMillis();
+    return operations
+        .updateFirst(
+            query(where(ID).is(task.getId())),
+            new Update()
+                .inc(progressField, deleted)
+                .set(LEASE_UNTIL, now + leaseMs)
+                .set(UPDATED_AT_EPOCH, now),
+            CascadeTask.class)
+        .then();
+  }
+}
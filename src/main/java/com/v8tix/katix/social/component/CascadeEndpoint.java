@@ -0,0 +1,50 @@
+package com.v8tix.katix.social.component;
+
+import com.v8tix.katix.social.model.CascadeTask;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/** The cascade tasks by status and the most recent ones, at {@code /actuator/cascades}. */
+@Component
+@Endpoint(id = "cascades")
+public class CascadeEndpoint {
+
+  private static final int RECENT_TASKS = 20;
+
+  private final MongoOperations operations;
+
+  @Autowired
+  public CascadeEndpoint(final MongoOperations operations) {
+    this.operations = operations;
+  }
+
+  @ReadOperation
+  public Map<String, Object> cascades() {
+    final Map<String, Long> counts = new LinkedHashMap<>();
+    for (CascadeTask.Status status : CascadeTask.Status.values()) {
+      counts.put(
+          status.name(), operations.count(query(where("status").is(status)), CascadeTask.class));
+    }
+    final Map<String, Object> cascades = new LinkedHashMap<>();
+    cascades.put("counts", counts);
+    cascades.put(
+        "recent",
+        operations.find(
+            new Query()
+                .with(Sort.by(Sort.Direction.DESC, "createdAtEpoch"))
+                .limit(RECENT_TASKS),
+            CascadeTask.class));
+    return cascades;
+  }
+}
@@ -0,0 +1,237 @@
+package com.v8tix.katix.social.component;
+
+import com.mongodb.client.result.UpdateResult;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Post;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.v8tix.katix.social.model.Post.COMMENT_COUNT;
+import static com.v8tix.katix.social.model.Post.COMMENT_REMOVAL_EPOCH;
+import static com.v8tix.katix.social.service.VersionedUpdateService.ID;
+import static com.v8tix.katix.social.service.VersionedUpdateService.VERSION;
+import static com.v8tix.katix.social.util.StoredIdHelper.storedId;
+import static com.v8tix.katix.social.util.StringHelper.COLON;
+import static com.v8tix.katix.social.util.StringHelper.concatStrings;
+import static java.util.stream.Collectors.toList;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Repairs the comment counts kept on the posts, which drift when a write fails between the comment
+ * and the post update. Every {@code social.comment_count.reconcile_ms} the posts are walked by id,
+ * {@code social.comment_count.batch_size} at a time with a pause of {@code
+ * social.comment_count.batch_delay_ms} in between, and each batch is compared with one grouped
+ * count of its comments.
+ *
+ * <p>A comment is written in two steps, the insert and then the count and version of its post, so
+ * a count read between the two is ahead of the post. A post is therefore only repaired when its
+ * version did not move across the count, checked by reading the versions again afterwards, and
+ * when none of its comments is newer than {@code social.comment_count.grace_ms}. Removals run the
+ * other way round, so a count read between the two is behind the post; the post is marked before
+ * the comment goes, see {@link LatestComments#beforeRemove}, and a post marked within the grace
+ * period is skipped as well. The repair itself only applies to the version that was read, so a
+ * post written meanwhile keeps its count until the next pass.
+ */
+@Component
+public class CommentCountReconciler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CommentCountReconciler.class);
+  private static final String POST_ID = "postId";
+  private static final String COUNT = "count";
+  private static final String NEWEST = "newest";
+  private static final String CREATED_AT_EPOCH = "createdAtEpoch";
+  private static final String GROUP_ID = "_id";
+
+  private final ReactiveMongoOperations operations;
+  private final EntityCache<Post> postCache;
+  private final int batchSize;
+  private final Duration batchDelay;
+  private final Duration interval;
+  private final long graceMs;
+  private final Counter repaired;
+  private Disposable reconciler;
+
+  @Autowired
+  public CommentCountReconciler(
+      final ReactiveMongoOperations operations,
+      final EntityCache<Post> postCache,
+      final MeterRegistry meterRegistry,
+      final @Value("${social.comment_count.batch_size}") int batchSize,
+      final @Value("${social.comment_count.batch_delay_ms}") long batchDelayMs,
+      final @Value("${social.comment_count.reconcile_ms}") long reconcileMs,
+      final @Value("${social.comment_count.grace_ms}") long graceMs) {
+    this.operations = operations;
+    this.postCache = postCache;
+    this.batchSize = batchSize;
+    this.batchDelay = Duration.ofMillis(batchDelayMs);
+    this.interval = Duration.ofMillis(reconcileMs);
+    this.graceMs = graceMs;
+    this.repaired =
+        Counter.builder("social.comment_count.repaired")
+            .description("Post comment counts corrected by the reconciliation")
+            .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    reconciler =
+        Flux.interval(interval)
+            .onBackpressureDrop()
+            .concatMap(tick -> reconcile(), 1)
+            .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (reconciler != null) {
+      reconciler.dispose();
+    }
+  }
+
+  /** One pass over all of the posts, emitting how many counts were repaired. */
+  public Mono<Long> reconcile() {
+    return Mono.defer(
+        () -> {
+          final AtomicLong passRepairs = new AtomicLong();
+          return reconcileBatch(null, passRepairs)
+              .expand(
+                  posts ->
+                      posts.size() < batchSize
+                          ? Mono.empty()
+                          : Mono.delay(batchDelay)
+                              .then(reconcileBatch(lastIdOf(posts), passRepairs)))
+              .then(Mono.fromSupplier(passRepairs::get))
+              .doOnNext(
+                  repairs -> {
+                    if (repairs > 0) {
+                      LOGGER.info(
+                          concatStrings(COLON, "Comment counts repaired", Long.toString(repairs)));
+                    }
+                  })
+              .onErrorResume(
+                  e -> {
+                    LOGGER.warn(
+                        concatStrings(
+                            COLON, "Comment count reconciliation failed", e.getMessage()));
+                    return Mono.empty();
+                  });
+        });
+  }
+
+  private Mono<List<Post>> reconcileBatch(final String afterId, final AtomicLong passRepairs) {
+    final Query batchQuery =
+        (afterId == null ? new Query() : query(where(ID).gt(storedId(afterId))))
+            .with(Sort.by(ID))
+            .limit(batchSize);
+    batchQuery.fields().include(ID).include(VERSION).include(COMMENT_COUNT);
+    return operations
+        .find(batchQuery, Post.class)
+        .collectList()
+        .flatMap(
+            posts ->
+                posts.isEmpty()
+                    ? Mono.just(posts)
+                    : repair(posts).doOnNext(passRepairs::addAndGet).thenReturn(posts));
+  }
+
+  private Mono<Long> repair(final List<Post> posts) {
+    final List<String> postIds = posts.stream().map(Post::getId).collect(toList());
+    final long settledBefore = System.currentTimeMillis() - graceMs;
+    return operations
+        .aggregate(
+            newAggregation(
+                Comment.class,
+                match(where(POST_ID).in(postIds)),
+                group(POST_ID).count().as(COUNT).max(CREATED_AT_EPOCH).as(NEWEST)),
+            Document.class)
+        .collectMap(count -> count.get(GROUP_ID).toString())
+        .flatMapMany(
+            counts -> {
+              final List<Post> drifted =
+                  posts.stream()
+                      .filter(post -> post.getCommentCount() != countOf(counts, post))
+                      .filter(post -> newestOf(counts, post) < settledBefore)
+                      .collect(toList());
+              return drifted.isEmpty()
+                  ? Flux.empty()
+                  : unchanged(drifted, settledBefore)
+                      .flatMap(post -> repair(post, countOf(counts, post)));
+            })
+        .reduce(0L, Long::sum);
+  }
+
+  /**
+   * The posts whose version is still the one read with the batch and that were not marked for a
+   * comment removal since {@code settledBefore}. Read after the count, so that a removal counted
+   * is always seen marked.
+   */
+  private Flux<Post> unchanged(final List<Post> posts, final long settledBefore) {
+    final Query versions = query(where(ID).in(posts.stream().map(Post::getId).collect(toList())));
+    versions.fields().include(ID).include(VERSION).include(COMMENT_REMOVAL_EPOCH);
+    return operations
+        .find(versions, Post.class)
+        .filter(current -> current.getCommentRemovalEpoch() < settledBefore)
+        .collectMap(Post::getId, Post::getVersion)
+        .flatMapMany(
+            current ->
+                Flux.fromIterable(posts)
+                    .filter(post -> current.getOrDefault(post.getId(), -1L) == post.getVersion()));
+  }
+
+  private static long countOf(final Map<String, Document> counts, final Post post) {
+    final Document count = counts.get(post.getId());
+    return count == null ? 0L : count.get(COUNT, Number.class).longValue();
+  }
+
+  private static long newestOf(final Map<String, Document> counts, final Post post) {
+    final Document count = counts.get(post.getId());
+    final Number newest = count == null ? null : count.get(NEWEST, Number.class);
+    return newest == null ? 0L : newest.longValue();
+  }
+
+  // A new version too, as the count is part of the post's representation.
+  private Mono<Long> repair(final Post post, final long commentCount) {
+    return operations
+        .updateFirst(
+            query(where(ID).is(post.getId()).and(VERSION).is(post.getVersion())),
+            new Update().set(COMMENT_COUNT, commentCount).inc(VERSION, 1),
+            Post.class)
+        .map(UpdateResult::getModifiedCount)
+        .doOnNext(
+            modified -> {
+              if (modified > 0) {
+                repaired.increment(modified);
+                postCache.invalidate(post.getId());
+              }
+            });
+  }
+
+  private static String lastIdOf(final List<Post> posts) {
+    return posts.get(posts.size() - 1).getId();
+  }
+}
@@ -0,0 +1,81 @@
+package com.v8tix.katix.social.component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Totals for the pageable endpoints: counted once on the server, then adjusted by the write paths
+ * until they are older than {@code social.counters.staleness_ms} and get counted again.
+ */
+@Component
+public class CounterCache {
+
+  private final ReactiveMongoOperations operations;
+  private final AsyncCache<String, AtomicLong> counters;
+
+  @Autowired
+  public CounterCache(
+      final ReactiveMongoOperations operations,
+      final @Value("${social.counters.staleness_ms}") long stalenessMs,
+      final @Value("${social.counters.max_size}") long maxSize) {
+    this.operations = operations;
+    this.counters =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(stalenessMs, TimeUnit.MILLISECONDS)
+            .buildAsync();
+  }
+
+  public Mono<Long> getCollectionCount(final Class<?> entityClass) {
+    return getCount(
+        collectionKey(entityClass),
+        () ->
+            operations
+                .execute(entityClass, MongoCollection::estimatedDocumentCount)
+                .next()
+                .defaultIfEmpty(0L));
+  }
+
+  public Mono<Long> getCount(final String key, final Supplier<Mono<Long>> loader) {
+    return Mono.fromFuture(
+            counters.get(key, (k, executor) -> loader.get().map(AtomicLong::new).toFuture()))
+        .map(AtomicLong::get);
+  }
+
+  public void increment(final String key) {
+    add(key, 1);
+  }
+
+  public void decrement(final String key) {
+    add(key, -1);
+  }
+
+  public void add(final String key, final long delta) {
+    final CompletableFuture<AtomicLong> counter = counters.getIfPresent(key);
+    if (counter != null && counter.isDone() && !counter.isCompletedExceptionally()) {
+      counter.join().addAndGet(delta);
+    } else if (counter != null) {
+      // A load is in flight and may not observe this write, so drop it and count again.
+      invalidate(key);
+    }
+  }
+
+  public void invalidate(final String key) {
+    counters.synchronous().invalidate(key);
+  }
+
+  public String collectionKey(final Class<?> entityClass) {
+    return operations.getCollectionName(entityClass);
+  }
+}
@@ -0,0 +1,67 @@
+package com.v8tix.katix.social.component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Read-through cache of documents by id. Concurrent misses on the same id share one load, missing
+ * documents and failed loads are not kept, and every caller gets its own copy so that embedding
+ * comments into a post never touches the cached instance.
+ *
+ * <p>A disabled cache hands every lookup straight to the loader.
+ */
+public final class EntityCache<T> {
+
+  private final AsyncCache<String, T> entities;
+  private final UnaryOperator<T> copier;
+
+  private EntityCache(final AsyncCache<String, T> entities, final UnaryOperator<T> copier) {
+    this.entities = entities;
+    this.copier = copier;
+  }
+
+  public static <T> EntityCache<T> create(
+      final String name,
+      final boolean enabled,
+      final long ttlMs,
+      final long maxSize,
+      final UnaryOperator<T> copier,
+      final MeterRegistry meterRegistry) {
+    if (!enabled) {
+      return new EntityCache<>(null, copier);
+    }
+    final AsyncCache<String, T> entities =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+            .recordStats()
+            .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, entities.synchronous(), name);
+    return new EntityCache<>(entities, copier);
+  }
+
+  public Mono<T> get(final String id, final Function<String, Mono<T>> loader) {
+    if (entities == null || id == null) {
+      return loader.apply(id);
+    }
+    return Mono.fromFuture(entities.get(id, (key, executor) -> loader.apply(key).toFuture()))
+        .map(copier);
+  }
+
+  public void invalidate(final String id) {
+    if (entities != null && id != null) {
+      entities.synchronous().invalidate(id);
+    }
+  }
+
+  public boolean isEnabled() {
+    return entities != null;
+  }
+}
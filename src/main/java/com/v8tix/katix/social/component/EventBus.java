@@ -0,0 +1,58 @@
+package com.v8tix.katix.social.component;
+
+import com.v8tix.katix.social.model.FeedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Fans the successful writes out to the live feeds of this instance.
+ *
+ * <p>Publishing never waits for a subscriber: each one gets its own buffer of {@code
+ * social.feed.buffer_size} events, and a subscriber that falls further behind loses its oldest
+ * events rather than holding up the write paths.
+ */
+@Component
+public class EventBus {
+
+  private final DirectProcessor<FeedEvent> processor = DirectProcessor.create();
+  private final FluxSink<FeedEvent> sink = processor.sink();
+  private final AtomicLong sequence = new AtomicLong();
+  private final int bufferSize;
+  private final Counter dropped;
+
+  @Autowired
+  public EventBus(
+      final MeterRegistry meterRegistry,
+      final @Value("${social.feed.buffer_size}") int bufferSize) {
+    this.bufferSize = bufferSize;
+    this.dropped =
+        Counter.builder("social.feed.dropped")
+            .description("Feed events dropped for subscribers that fell behind")
+            .register(meterRegistry);
+  }
+
+  public void publish(final FeedEvent event) {
+    event.setSequence(sequence.incrementAndGet());
+    sink.next(event);
+  }
+
+  /** The events published from now on that match {@code filter}, delivered off the write path. */
+  public Flux<FeedEvent> events(final Predicate<FeedEvent> filter) {
+    return processor
+        .filter(filter)
+        .onBackpressureBuffer(
+            bufferSize, event -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST)
+        .publishOn(Schedulers.parallel(), 1);
+  }
+}
@@ -0,0 +1,66 @@
+package com.v8tix.katix.social.component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+
+import static java.lang.String.format;
+
+/**
+ * The local host name for the {@code Host} response header. It is resolved while the context
+ * starts, before the server takes requests, and then refreshed in the background. Until a lookup
+ * succeeds the name is {@value #DEFAULT_HOST_NAME}; a failed refresh keeps the previous name.
+ */
+@Component
+public class HostName {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HostName.class);
+  private static final String UNKNOWN_EXCEPTION = "Unknown Host exception: %s";
+  private static final String DEFAULT_HOST_NAME = "localhost";
+  private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(5);
+  private static volatile String hostName = DEFAULT_HOST_NAME;
+
+  private Scheduler scheduler;
+  private Disposable refresh;
+
+  public static String get() {
+    return hostName;
+  }
+
+  @PostConstruct
+  public void start() {
+    hostName = lookUpHostName();
+    scheduler = Schedulers.newSingle("host-name", true);
+    refresh =
+        Flux.interval(REFRESH_INTERVAL, scheduler).subscribe(tick -> hostName = lookUpHostName());
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (refresh != null) {
+      refresh.dispose();
+    }
+    if (scheduler != null) {
+      scheduler.dispose();
+    }
+  }
+
+  private static String lookUpHostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      LOGGER.info(format(UNKNOWN_EXCEPTION, e.getMessage()));
+      return hostName;
+    }
+  }
+}
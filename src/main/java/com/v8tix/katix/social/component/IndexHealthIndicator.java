@@ -0,0 +1,35 @@
+package com.v8tix.katix.social.component;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class IndexHealthIndicator implements HealthIndicator {
+
+  private static final Status WARN = new Status("WARN", "Some queries can't use an index");
+  private static final String UNINDEXED_QUERIES = "unindexedQueries";
+
+  private final MongoIndexInitializer mongoIndexInitializer;
+
+  @Autowired
+  public IndexHealthIndicator(final MongoIndexInitializer mongoIndexInitializer) {
+    this.mongoIndexInitializer = mongoIndexInitializer;
+  }
+
+  @Override
+  public Health health() {
+    if (!mongoIndexInitializer.isVerified()) {
+      return Health.unknown().build();
+    }
+    final List<String> unindexedQueries = mongoIndexInitializer.getUnindexedQueries();
+    if (unindexedQueries.isEmpty()) {
+      return Health.up().build();
+    }
+    return Health.status(WARN).withDetail(UNINDEXED_QUERIES, unindexedQueries).build();
+  }
+}
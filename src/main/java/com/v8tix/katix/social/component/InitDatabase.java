@@ -1,16 +1,19 @@
 package com.v8tix.katix.social.component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.v8tix.katix.social.model.CascadeTask;
 import com.v8tix.katix.social.model.Comment;
 import com.v8tix.katix.social.model.Post;
 import com.v8tix.katix.social.model.User;
 import com.v8tix.katix.social.util.MathHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -19,10 +22,17 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
+import static com.v8tix.katix.social.model.Post.COMMENT_COUNT;
+import static com.v8tix.katix.social.model.Post.LATEST_COMMENTS;
 import static com.v8tix.katix.social.util.StringHelper.*;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.io.IOUtils.copy;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 @Profile("dev")
 @Component
@@ -31,7 +41,8 @@ public class InitDatabase {
     private static final Logger LOGGER = LoggerFactory.getLogger(InitDatabase.class);
 
     @Bean
-    CommandLineRunner init(MongoOperations operations) {
+    CommandLineRunner init(MongoOperations operations,
+                           @Value("${social.embed.preview_size}") int previewSize) {
         LOGGER.info(concatStrings(COLON, "Mongo Operations", "Data ingestion started."));
         return args -> {
             final String usersJson = getFileContent("users.json");
@@ -41,12 +52,37 @@ public class InitDatabase {
             operations.dropCollection(User.class);
             operations.dropCollection(Post.class);
             operations.dropCollection(Comment.class);
+            operations.dropCollection(CascadeTask.class);
             operations.insertAll(users);
             operations.insertAll(samplePosts(operations, posts));
-            operations.insertAll(sampleComments(operations));
+            final List<Comment> comments = sampleComments(operations);
+            operations.insertAll(comments);
+            setCommentSummaries(operations, comments, previewSize);
         };
     }
 
+    // What LatestComments maintains from now on: the count and the preview of the newest comments.
+    private static void setCommentSummaries(final MongoOperations operations,
+                                            final List<Comment> comments,
+                                            final int previewSize) {
+        final Comparator<Comment> newestFirst = Comparator.comparingLong(Comment::getCreatedAtEpoch)
+                .thenComparing(Comment::getId)
+                .reversed();
+        comments.stream()
+                .collect(groupingBy(Comment::getPostId))
+                .forEach((postId, postComments) -> {
+                    final List<Comment> latestComments = postComments.stream()
+                            .sorted(newestFirst)
+                            .limit(previewSize)
+                            .collect(toList());
+                    operations.updateFirst(query(where("id").is(postId)),
+                            new Update()
+                                    .set(COMMENT_COUNT, postComments.size())
+                                    .set(LATEST_COMMENTS, latestComments),
+                            Post.class);
+                });
+    }
+
     private static List<Post> samplePosts(final MongoOperations operations,
                                           final List<Post> posts) {
         final List<User> users = operations.findAll(User.class);
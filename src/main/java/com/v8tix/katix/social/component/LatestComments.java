@@ -0,0 +1,124 @@
+package com.v8tix.katix.social.component;
+
+import com.mongodb.client.result.UpdateResult;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Post;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+import static com.v8tix.katix.social.model.Post.COMMENT_COUNT;
+import static com.v8tix.katix.social.model.Post.COMMENT_REMOVAL_EPOCH;
+import static com.v8tix.katix.social.model.Post.LATEST_COMMENTS;
+import static com.v8tix.katix.social.service.VersionedUpdateService.ID;
+import static com.v8tix.katix.social.service.VersionedUpdateService.VERSION;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Keeps the preview of the newest {@code social.embed.preview_size} comments stored on each post,
+ * which is what {@code embed=comments} returns. Every comment write goes through here: it bumps the
+ * post version, applies the change to the comment count and updates the preview in one update.
+ *
+ * <p>New comments are pushed into the preview, which stays sorted and bounded. Edits and deletes
+ * read the newest comments again and replace the preview if the post did not change in between.
+ *
+ * <p>Comments are removed before their post is rebuilt, so the post is marked first with {@link
+ * #beforeRemove}, which keeps the {@link CommentCountReconciler} off its count meanwhile.
+ */
+@Component
+public class LatestComments {
+
+  private static final String POST_ID = "postId";
+  private static final String CREATED_AT_EPOCH = "createdAtEpoch";
+  private static final String STORED_ID = "_id";
+  private static final int REBUILD_ATTEMPTS = 3;
+  private static final Sort NEWEST_FIRST =
+      Sort.by(Sort.Direction.DESC, CREATED_AT_EPOCH, STORED_ID);
+
+  private final ReactiveMongoOperations operations;
+  private final EntityCache<Post> postCache;
+  private final int previewSize;
+
+  @Autowired
+  public LatestComments(
+      final ReactiveMongoOperations operations,
+      final EntityCache<Post> postCache,
+      final @Value("${social.embed.preview_size}") int previewSize) {
+    this.operations = operations;
+    this.postCache = postCache;
+    this.previewSize = previewSize;
+  }
+
+  /** After {@code comments} were inserted into the post. */
+  public Mono<Void> add(final String postId, final List<Comment> comments) {
+    final Update update =
+        new Update()
+            .inc(VERSION, 1)
+            .inc(COMMENT_COUNT, comments.size())
+            .push(LATEST_COMMENTS)
+            .sort(NEWEST_FIRST)
+            .slice(previewSize)
+            .each(comments.toArray());
+    return write(query(where(ID).is(postId)), update, postId).then();
+  }
+
+  /** Before comments of the posts are removed; neither the version nor the cached post change. */
+  public Mono<Void> beforeRemove(final Collection<String> postIds) {
+    return operations
+        .updateMulti(
+            query(where(ID).in(postIds)),
+            new Update().max(COMMENT_REMOVAL_EPOCH, System.currentTimeMillis()),
+            Post.class)
+        .then();
+  }
+
+  /** After a comment of the post was changed, or {@code commentDelta} of them added or removed. */
+  public Mono<Void> rebuild(final String postId, final long commentDelta) {
+    return rebuild(postId, commentDelta, REBUILD_ATTEMPTS);
+  }
+
+  // The last attempt is applied whatever the version, so that the count is never lost.
+  private Mono<Void> rebuild(final String postId, final long commentDelta, final int attempts) {
+    final Query latest = query(where(POST_ID).is(postId)).with(NEWEST_FIRST).limit(previewSize);
+    return Mono.zip(versionOf(postId), operations.find(latest, Comment.class).collectList())
+        .flatMap(
+            versionAndComments -> {
+              final Query post = query(where(ID).is(postId));
+              if (attempts > 1) {
+                post.addCriteria(where(VERSION).is(versionAndComments.getT1()));
+              }
+              final Update update =
+                  new Update()
+                      .set(LATEST_COMMENTS, versionAndComments.getT2())
+                      .inc(VERSION, 1)
+                      .inc(COMMENT_COUNT, commentDelta);
+              return write(post, update, postId);
+            })
+        .flatMap(
+            updateResult ->
+                updateResult.getMatchedCount() == 0
+                    ? rebuild(postId, commentDelta, attempts - 1)
+                    : Mono.empty());
+  }
+
+  private Mono<Long> versionOf(final String postId) {
+    final Query post = query(where(ID).is(postId));
+    post.fields().include(VERSION);
+    return operations.findOne(post, Post.class).map(Post::getVersion);
+  }
+
+  private Mono<UpdateResult> write(final Query post, final Update update, final String postId) {
+    return operations
+        .updateFirst(post, update, Post.class)
+        .doOnSuccess(updateResult -> postCache.invalidate(postId));
+  }
+}
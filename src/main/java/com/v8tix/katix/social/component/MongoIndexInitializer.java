@@ -0,0 +1,274 @@
+package com.v8tix.katix.social.component;
+
+import com.v8tix.katix.social.model.CascadeTask;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Follow;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.User;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.v8tix.katix.social.util.StringHelper.COLON;
+import static com.v8tix.katix.social.util.StringHelper.concatStrings;
+
+/**
+ * Creates the indexes declared on the documents once the application is ready (after any sample
+ * data has been loaded) and asks the query planner whether each repository query shape can be
+ * answered without a collection scan or an in-memory sort.
+ */
+@Component
+public class MongoIndexInitializer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MongoIndexInitializer.class);
+  private static final String FAIL = "fail";
+  private static final String OFF = "off";
+  private static final String POST_ID = "postId";
+  private static final String USER_ID = "userId";
+  private static final String CREATED_AT_EPOCH = "createdAtEpoch";
+  private static final String ID = "_id";
+  private static final String CONTENT = "content";
+  private static final String CONTENT_TEXT = "content_text";
+  private static final List<String> UNINDEXED_STAGES = Arrays.asList("COLLSCAN", "SORT");
+
+  private final ReactiveMongoOperations operations;
+  private final MongoMappingContext mappingContext;
+  private final String verification;
+  private final Duration timeout;
+  private volatile List<String> unindexedQueries = Collections.emptyList();
+  private volatile boolean verified;
+
+  @Autowired
+  public MongoIndexInitializer(
+      final ReactiveMongoOperations operations,
+      final MongoMappingContext mappingContext,
+      final @Value("${social.indexes.verification}") String verification,
+      final @Value("${social.indexes.timeout_ms}") long timeoutMs) {
+    this.operations = operations;
+    this.mappingContext = mappingContext;
+    this.verification = verification;
+    this.timeout = Duration.ofMillis(timeoutMs);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void init() {
+    ensureIndexes(Post.class, User.class, Comment.class, CascadeTask.class, Follow.class)
+        .then(ensureTextIndexes(Post.class, Comment.class))
+        .block(timeout);
+    if (OFF.equals(verification)) {
+      return;
+    }
+    unindexedQueries = verifyQueries().collectList().block(timeout);
+    verified = true;
+    if (!unindexedQueries.isEmpty()) {
+      final String message =
+          concatStrings(COLON, "Queries without a usable index", unindexedQueries.toString());
+      if (FAIL.equals(verification)) {
+        throw new IllegalStateException(message);
+      }
+      LOGGER.warn(message);
+    }
+  }
+
+  public List<String> getUnindexedQueries() {
+    return unindexedQueries;
+  }
+
+  public boolean isVerified() {
+    return verified;
+  }
+
+  private Mono<Void> ensureIndexes(final Class<?>... entityClasses) {
+    final MongoPersistentEntityIndexResolver indexResolver =
+        new MongoPersistentEntityIndexResolver(mappingContext);
+    return Flux.fromArray(entityClasses)
+        .map(mappingContext::getRequiredPersistentEntity)
+        .flatMapIterable(indexResolver::resolveIndexForEntity)
+        .concatMap(
+            index ->
+                operations
+                    .indexOps(index.getCollection())
+                    .ensureIndex(index)
+                    .doOnNext(name -> LOGGER.info(concatStrings(COLON, "Index ensured", name))))
+        .then();
+  }
+
+  // Declared here rather than with @TextIndexed, which would also index the comments embedded in
+  // the posts.
+  private Mono<Void> ensureTextIndexes(final Class<?>... entityClasses) {
+    final TextIndexDefinition content =
+        TextIndexDefinition.builder().named(CONTENT_TEXT).onField(CONTENT).build();
+    return Flux.fromArray(entityClasses)
+        .concatMap(
+            entityClass ->
+                operations
+                    .indexOps(entityClass)
+                    .ensureIndex(content)
+                    .doOnNext(name -> LOGGER.info(concatStrings(COLON, "Index ensured", name))))
+        .then();
+  }
+
+  private Flux<String> verifyQueries() {
+    return Flux.fromIterable(queryShapes())
+        .concatMap(
+            shape ->
+                operations
+                    .executeCommand(shape.explainCommand())
+                    .filter(MongoIndexInitializer::isUnindexed)
+                    .map(explain -> shape.name));
+  }
+
+  private List<QueryShape> queryShapes() {
+    final Document newestFirst = new Document(CREATED_AT_EPOCH, -1).append(ID, -1);
+    final Document afterCursor = afterCursor();
+    final List<QueryShape> shapes = new ArrayList<>();
+    shapes.add(
+        new QueryShape(
+            "Post.findAllBy",
+            collection(Post.class),
+            new Document(),
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "Post.findAllAfter",
+            collection(Post.class),
+            afterCursor,
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "Post.findAllByUserId",
+            collection(Post.class),
+            new Document(USER_ID, ""),
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "Post.findAllByUserIdAfter",
+            collection(Post.class),
+            new Document(USER_ID, "").append("$or", afterCursor.get("$or")),
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "User.findAllBy",
+            collection(User.class),
+            new Document(),
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "User.findAllAfter",
+            collection(User.class),
+            afterCursor,
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "Comment.findAllByPostId",
+            collection(Comment.class),
+            new Document(POST_ID, ""),
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "Comment.findAllByPostIdAfter",
+            collection(Comment.class),
+            new Document(POST_ID, "").append("$or", afterCursor.get("$or")),
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "Comment.findAllByUserId",
+            collection(Comment.class),
+            new Document(USER_ID, ""),
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "Comment.findAllByUserIdAfter",
+            collection(Comment.class),
+            new Document(USER_ID, "").append("$or", afterCursor.get("$or")),
+            newestFirst));
+    shapes.add(
+        new QueryShape(
+            "Follow.byFolloweeId",
+            collection(Follow.class),
+            new Document(Follow.FOLLOWEE_ID, ""),
+            new Document(Follow.FOLLOWER_ID, 1)));
+    shapes.add(
+        new QueryShape(
+            "User.byFollowerCount",
+            collection(User.class),
+            new Document(User.FOLLOWER_COUNT, new Document("$gte", 0)),
+            new Document(User.FOLLOWER_COUNT, -1)));
+    return shapes;
+  }
+
+  private static Document afterCursor() {
+    final ObjectId id = new ObjectId();
+    final long createdAtEpoch = id.getDate().getTime();
+    return new Document(
+        "$or",
+        Arrays.asList(
+            new Document(CREATED_AT_EPOCH, new Document("$lt", createdAtEpoch)),
+            new Document(CREATED_AT_EPOCH, createdAtEpoch).append(ID, new Document("$lt", id))));
+  }
+
+  private String collection(final Class<?> entityClass) {
+    return operations.getCollectionName(entityClass);
+  }
+
+  private static boolean isUnindexed(final Document explain) {
+    final Document queryPlanner = (Document) explain.get("queryPlanner");
+    return queryPlanner != null && hasUnindexedStage((Document) queryPlanner.get("winningPlan"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static boolean hasUnindexedStage(final Document plan) {
+    if (plan == null) {
+      return false;
+    }
+    if (UNINDEXED_STAGES.contains(plan.getString("stage"))) {
+      return true;
+    }
+    if (hasUnindexedStage((Document) plan.get("inputStage"))) {
+      return true;
+    }
+    final List<Document> inputStages = (List<Document>) plan.get("inputStages");
+    return inputStages != null
+        && inputStages.stream().anyMatch(MongoIndexInitializer::hasUnindexedStage);
+  }
+
+  private static class QueryShape {
+
+    private final String name;
+    private final String collection;
+    private final Document filter;
+    private final Document sort;
+
+    private QueryShape(
+        final String name, final String collection, final Document filter, final Document sort) {
+      this.name = name;
+      this.collection = collection;
+      this.filter = filter;
+      this.sort = sort;
+    }
+
+    private Document explainCommand() {
+      final Document find =
+          new Document("find", collection).append("filter", filter).append("sort", sort);
+      return new Document("explain", find).append("verbosity", "queryPlanner");
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.v8tix.katix.social.component;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every command sent by the sync and the reactive Mongo clients, tagged by command,
+ * collection and outcome.
+ */
+@Component
+public class MongoMetricsCommandListener implements CommandListener {
+
+  public static final String METRIC_NAME = "mongodb.driver.commands";
+  private static final String UNKNOWN = "unknown";
+  private static final String SUCCESS = "SUCCESS";
+  private static final String FAILED = "FAILED";
+
+  private final MeterRegistry meterRegistry;
+  private final Map<Integer, String> collectionsByRequestId = new ConcurrentHashMap<>();
+
+  @Autowired
+  public MongoMetricsCommandListener(final MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public void commandStarted(final CommandStartedEvent event) {
+    final BsonValue collection = event.getCommand().get(event.getCommandName());
+    collectionsByRequestId.put(
+        event.getRequestId(),
+        collection != null && collection.isString()
+            ? collection.asString().getValue()
+            : UNKNOWN);
+  }
+
+  @Override
+  public void commandSucceeded(final CommandSucceededEvent event) {
+    record(
+        event.getRequestId(),
+        event.getCommandName(),
+        SUCCESS,
+        event.getElapsedTime(TimeUnit.NANOSECONDS));
+  }
+
+  @Override
+  public void commandFailed(final CommandFailedEvent event) {
+    record(
+        event.getRequestId(),
+        event.getCommandName(),
+        FAILED,
+        event.getElapsedTime(TimeUnit.NANOSECONDS));
+  }
+
+  private void record(
+      final int requestId, final String command, final String status, final long elapsedNanos) {
+    final String collection = collectionsByRequestId.remove(requestId);
+    Timer.builder(METRIC_NAME)
+        .description("Mongo command latency")
+        .tag("command", command)
+        .tag("collection", collection != null ? collection : UNKNOWN)
+        .tag("status", status)
+        .register(meterRegistry)
+        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+}
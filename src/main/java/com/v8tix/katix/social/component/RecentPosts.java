@@ -0,0 +1,125 @@
+package com.v8tix.katix.social.component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.TimelineEntry;
+import com.v8tix.katix.social.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.v8tix.katix.social.model.TimelineEntry.USER_ID;
+import static com.v8tix.katix.social.model.User.FOLLOWER_COUNT;
+import static com.v8tix.katix.social.service.VersionedUpdateService.ID;
+import static com.v8tix.katix.social.util.CursorHelper.CREATED_AT_EPOCH;
+import static com.v8tix.katix.social.util.CursorHelper.NEWEST_FIRST;
+import static com.v8tix.katix.social.util.TimelineHelper.merge;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toSet;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * The pull side of the timelines. Accounts with at least {@code social.timeline.pull_threshold}
+ * followers are not fanned out; instead their newest {@code social.timeline.recent_posts} posts are
+ * kept here, per author, and merged into the timelines of their followers when those are read.
+ *
+ * <p>An author is loaded with one indexed query on the first read and then kept up to date by the
+ * posts saved on this instance; posts saved on other instances show up once the entry expires.
+ *
+ * <p>The pulled authors are looked up again every {@code social.timeline.pulled_refresh_ms}; a
+ * failed lookup is not kept, so the next fan-out or timeline read tries again. An author whose
+ * follower count drops back below the threshold is fanned out again from then on, but the posts
+ * made while pulled are not backfilled: they drop out of the timelines of the followers.
+ */
+@Component
+public class RecentPosts {
+
+  private final ReactiveMongoOperations operations;
+  private final AsyncCache<String, List<TimelineEntry>> entries;
+  private final Mono<Set<String>> pulledAuthorIds;
+  private final long pullThreshold;
+  private final int perAuthor;
+
+  @Autowired
+  public RecentPosts(
+      final ReactiveMongoOperations operations,
+      final MeterRegistry meterRegistry,
+      final @Value("${social.timeline.pull_threshold}") long pullThreshold,
+      final @Value("${social.timeline.recent_posts}") int perAuthor,
+      final @Value("${social.timeline.recent_posts_ttl_ms}") long ttlMs,
+      final @Value("${social.timeline.recent_posts_authors}") long maxAuthors,
+      final @Value("${social.timeline.pulled_refresh_ms}") long pulledRefreshMs) {
+    this.operations = operations;
+    this.pullThreshold = pullThreshold;
+    this.perAuthor = perAuthor;
+    this.entries =
+        Caffeine.newBuilder()
+            .maximumSize(maxAuthors)
+            .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+            .recordStats()
+            .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, entries.synchronous(), "recent_posts");
+    final Duration pulledRefresh = Duration.ofMillis(pulledRefreshMs);
+    this.pulledAuthorIds =
+        Mono.defer(this::findPulledAuthorIds)
+            .cache(ids -> pulledRefresh, e -> Duration.ZERO, () -> pulledRefresh);
+  }
+
+  /** The authors whose posts are pulled, as of the last lookup. */
+  public Mono<Set<String>> pulledAuthorIds() {
+    return pulledAuthorIds;
+  }
+
+  /** The newest posts of the author, newest first. */
+  public Mono<List<TimelineEntry>> of(final String authorId) {
+    return Mono.fromFuture(entries.get(authorId, (key, executor) -> load(key).toFuture()));
+  }
+
+  /** Adds new posts to the authors already kept; the others are loaded when first read. */
+  public void add(final List<TimelineEntry> added) {
+    final Map<String, List<TimelineEntry>> addedByAuthor =
+        added.stream().collect(groupingBy(TimelineEntry::getUserId));
+    addedByAuthor.forEach(
+        (authorId, authorEntries) ->
+            entries
+                .asMap()
+                .computeIfPresent(
+                    authorId,
+                    (key, kept) ->
+                        kept.thenApply(
+                            keptList ->
+                                Collections.unmodifiableList(
+                                    merge(authorEntries, keptList, perAuthor)))));
+  }
+
+  private Mono<Set<String>> findPulledAuthorIds() {
+    final Query pulled = query(where(FOLLOWER_COUNT).gte(pullThreshold));
+    pulled.fields().include(ID);
+    return operations.find(pulled, User.class).map(User::getId).collect(toSet());
+  }
+
+  private Mono<List<TimelineEntry>> load(final String authorId) {
+    final Query newestPosts =
+        query(where(USER_ID).is(authorId)).with(NEWEST_FIRST).limit(perAuthor);
+    newestPosts.fields().include(ID).include(USER_ID).include(CREATED_AT_EPOCH);
+    return operations
+        .find(newestPosts, Post.class)
+        .map(TimelineEntry::of)
+        .collectList()
+        .map(Collections::unmodifiableList);
+  }
+}
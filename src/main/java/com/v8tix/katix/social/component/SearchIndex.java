@@ -0,0 +1,264 @@
+package com.v8tix.katix.social.component;
+
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.SearchMatch;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static com.v8tix.katix.social.service.VersionedUpdateService.ID;
+import static com.v8tix.katix.social.util.CursorHelper.CREATED_AT_EPOCH;
+import static com.v8tix.katix.social.util.SearchHelper.countTokens;
+import static com.v8tix.katix.social.util.StringHelper.COLON;
+import static com.v8tix.katix.social.util.StringHelper.concatStrings;
+import static java.util.Map.Entry.comparingByValue;
+
+/**
+ * The in-process search mode: an inverted index from the tokens of the posts and of the comments
+ * to the documents holding them, kept sorted so that a term finds every token it is a prefix of
+ * with one range scan. Only the token counts are kept, not the text.
+ *
+ * <p>It is off unless {@code social.search.memory_index} is set. It is then loaded once the
+ * application is ready and kept up to date by the write paths of this instance, so writes made on
+ * other instances are missed until the next restart. Writes are applied one at a time, searches
+ * run alongside them.
+ */
+@Component
+public class SearchIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndex.class);
+  private static final String POST_ID = "postId";
+  private static final String CONTENT = "content";
+
+  private final ReactiveMongoOperations operations;
+  private final boolean enabled;
+  private final Postings posts = new Postings();
+  private final Postings comments = new Postings();
+  private final Map<String, Long> createdAtEpochs = new ConcurrentHashMap<>();
+  private final Map<String, String> postIdsByCommentId = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> commentIdsByPostId = new ConcurrentHashMap<>();
+  private volatile boolean loaded;
+
+  @Autowired
+  public SearchIndex(
+      final ReactiveMongoOperations operations,
+      final MeterRegistry meterRegistry,
+      final @Value("${social.search.memory_index}") boolean enabled) {
+    this.operations = operations;
+    this.enabled = enabled;
+    Gauge.builder("social.search.index.tokens", this, SearchIndex::tokenCount)
+        .description("Distinct tokens of the in-process search index")
+        .register(meterRegistry);
+  }
+
+  /** Reads every post and comment; the ones written meanwhile are indexed as written. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    if (!enabled) {
+      return;
+    }
+    final Query allPosts = new Query();
+    allPosts.fields().include(ID).include(CONTENT).include(CREATED_AT_EPOCH);
+    final Query allComments = new Query();
+    allComments.fields().include(ID).include(CONTENT).include(POST_ID);
+    operations
+        .find(allPosts, Post.class)
+        .doOnNext(this::loadPost)
+        .thenMany(operations.find(allComments, Comment.class))
+        .doOnNext(this::loadComment)
+        .then()
+        .subscribe(
+            none -> {},
+            e -> LOGGER.warn(concatStrings(COLON, "Search index not loaded", e.getMessage())),
+            () -> {
+              loaded = true;
+              LOGGER.info(concatStrings(COLON, "Search index loaded", tokenCount() + " tokens"));
+            });
+  }
+
+  /** Whether searches can be answered from here, that is it is enabled and loaded. */
+  public boolean isReady() {
+    return enabled && loaded;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public synchronized void addPosts(final Collection<Post> added) {
+    if (enabled) {
+      added.forEach(this::indexPost);
+    }
+  }
+
+  public synchronized void addComments(final Collection<Comment> added) {
+    if (enabled) {
+      added.forEach(this::indexComment);
+    }
+  }
+
+  /** Removes the posts together with their comments. */
+  public synchronized void removePosts(final Collection<String> postIds) {
+    if (!enabled) {
+      return;
+    }
+    for (String postId : postIds) {
+      posts.remove(postId);
+      createdAtEpochs.remove(postId);
+      final Set<String> commentIds = commentIdsByPostId.remove(postId);
+      if (commentIds != null) {
+        commentIds.forEach(this::unindexComment);
+      }
+    }
+  }
+
+  public synchronized void removeComments(final Collection<String> commentIds) {
+    if (enabled) {
+      commentIds.forEach(this::unindexComment);
+    }
+  }
+
+  /**
+   * The {@code maxResults} best posts for the terms, each scored by the occurrences of the tokens
+   * the terms are a prefix of in its content plus in its best matching comment.
+   */
+  public List<SearchMatch> match(
+      final Collection<String> terms, final int maxResults, final int commentsPerMatch) {
+    final Map<String, SearchMatch> matches = new HashMap<>();
+    posts
+        .score(terms)
+        .forEach(
+            (postId, score) -> {
+              final Long createdAtEpoch = createdAtEpochs.get(postId);
+              if (createdAtEpoch != null) {
+                matches.put(postId, new SearchMatch(postId, createdAtEpoch, score));
+              }
+            });
+    final List<Entry<String, Double>> commentScores =
+        new ArrayList<>(comments.score(terms).entrySet());
+    commentScores.sort(Collections.reverseOrder(comparingByValue()));
+    for (Entry<String, Double> commentScore : commentScores) {
+      final String postId = postIdsByCommentId.get(commentScore.getKey());
+      final Long createdAtEpoch = postId != null ? createdAtEpochs.get(postId) : null;
+      if (createdAtEpoch != null) {
+        matches
+            .computeIfAbsent(postId, id -> new SearchMatch(id, createdAtEpoch, 0))
+            .addComment(commentScore.getKey(), commentScore.getValue(), commentsPerMatch);
+      }
+    }
+    final List<SearchMatch> best = new ArrayList<>(matches.values());
+    best.sort(SearchMatch.BEST_FIRST);
+    return best.size() > maxResults ? new ArrayList<>(best.subList(0, maxResults)) : best;
+  }
+
+  private int tokenCount() {
+    return posts.byToken.size() + comments.byToken.size();
+  }
+
+  private synchronized void loadPost(final Post post) {
+    if (!createdAtEpochs.containsKey(post.getId())) {
+      indexPost(post);
+    }
+  }
+
+  private synchronized void loadComment(final Comment comment) {
+    if (!postIdsByCommentId.containsKey(comment.getId())) {
+      indexComment(comment);
+    }
+  }
+
+  private void indexPost(final Post post) {
+    createdAtEpochs.put(post.getId(), post.getCreatedAtEpoch());
+    posts.put(post.getId(), post.getContent());
+  }
+
+  private void indexComment(final Comment comment) {
+    unindexComment(comment.getId());
+    postIdsByCommentId.put(comment.getId(), comment.getPostId());
+    commentIdsByPostId
+        .computeIfAbsent(comment.getPostId(), postId -> ConcurrentHashMap.newKeySet())
+        .add(comment.getId());
+    comments.put(comment.getId(), comment.getContent());
+  }
+
+  private void unindexComment(final String commentId) {
+    comments.remove(commentId);
+    final String postId = postIdsByCommentId.remove(commentId);
+    if (postId != null) {
+      final Set<String> commentIds = commentIdsByPostId.get(postId);
+      if (commentIds != null) {
+        commentIds.remove(commentId);
+        if (commentIds.isEmpty()) {
+          commentIdsByPostId.remove(postId);
+        }
+      }
+    }
+  }
+
+  /** Token to document to occurrences, and back from each document to its tokens. */
+  private static final class Postings {
+
+    private final ConcurrentSkipListMap<String, Map<String, Integer>> byToken =
+        new ConcurrentSkipListMap<>();
+    private final Map<String, Set<String>> byDocument = new ConcurrentHashMap<>();
+
+    private void put(final String documentId, final String text) {
+      remove(documentId);
+      final Map<String, Integer> counts = countTokens(text);
+      counts.forEach(
+          (token, count) ->
+              byToken
+                  .computeIfAbsent(token, key -> new ConcurrentHashMap<>())
+                  .put(documentId, count));
+      byDocument.put(documentId, counts.keySet());
+    }
+
+    private void remove(final String documentId) {
+      final Set<String> tokens = byDocument.remove(documentId);
+      if (tokens == null) {
+        return;
+      }
+      for (String token : tokens) {
+        final Map<String, Integer> documents = byToken.get(token);
+        if (documents != null) {
+          documents.remove(documentId);
+          if (documents.isEmpty()) {
+            byToken.remove(token);
+          }
+        }
+      }
+    }
+
+    private Map<String, Double> score(final Collection<String> terms) {
+      final Map<String, Double> scores = new HashMap<>();
+      for (String term : terms) {
+        for (Map<String, Integer> documents :
+            byToken.subMap(term, true, term + Character.MAX_VALUE, true).values()) {
+          documents.forEach(
+              (documentId, count) -> scores.merge(documentId, (double) count, Double::sum));
+        }
+      }
+      return scores;
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package com.v8tix.katix.social.component;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.v8tix.katix.social.model.Follow;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.Timeline;
+import com.v8tix.katix.social.model.TimelineEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.UnicastProcessor;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.v8tix.katix.social.model.Follow.FOLLOWEE_ID;
+import static com.v8tix.katix.social.model.Follow.FOLLOWER_ID;
+import static com.v8tix.katix.social.model.Timeline.ENTRIES;
+import static com.v8tix.katix.social.model.TimelineEntry.CREATED_AT_EPOCH;
+import static com.v8tix.katix.social.model.TimelineEntry.POST_ID;
+import static com.v8tix.katix.social.model.TimelineEntry.USER_ID;
+import static com.v8tix.katix.social.util.StoredIdHelper.storedId;
+import static com.v8tix.katix.social.util.StringHelper.COLON;
+import static com.v8tix.katix.social.util.StringHelper.concatStrings;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Pushes new posts to the timelines in the background. At most {@code
+ * social.timeline.fan_out_workers} fan-outs run at once; each walks the followers of an author and
+ * writes {@code social.timeline.batch_size} timelines per unordered bulkWrite.
+ *
+ * <p>Up to {@code social.timeline.fan_out_queue_size} fan-outs wait for a worker. Past that the
+ * fan-out runs on the request that saved the post, so a backlog slows the writers down instead of
+ * losing posts. Fan-outs still waiting when the instance stops are lost, as are the ones that
+ * fail; the timelines of the followers miss those posts.
+ *
+ * <p>Posts of the accounts in {@link RecentPosts#pulledAuthorIds()} only go to their author's own
+ * timeline.
+ */
+@Component
+public class TimelineFanOut {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TimelineFanOut.class);
+  private static final String TIMELINE_ID = "_id";
+
+  private final ReactiveMongoOperations operations;
+  private final RecentPosts recentPosts;
+  private final UnicastProcessor<FanOutTask> processor = UnicastProcessor.create();
+  private final FluxSink<FanOutTask> sink = processor.sink();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final int maxSize;
+  private final int batchSize;
+  private final int workers;
+  private final int queueSize;
+  private final Timer lag;
+  private final Counter inline;
+  private final Counter timelines;
+  private Disposable worker;
+
+  @Autowired
+  public TimelineFanOut(
+      final ReactiveMongoOperations operations,
+      final RecentPosts recentPosts,
+      final MeterRegistry meterRegistry,
+      final @Value("${social.timeline.max_size}") int maxSize,
+      final @Value("${social.timeline.batch_size}") int batchSize,
+      final @Value("${social.timeline.fan_out_workers}") int workers,
+      final @Value("${social.timeline.fan_out_queue_size}") int queueSize) {
+    this.operations = operations;
+    this.recentPosts = recentPosts;
+    this.maxSize = maxSize;
+    this.batchSize = batchSize;
+    this.workers = workers;
+    this.queueSize = queueSize;
+    this.lag =
+        Timer.builder("social.timeline.fan_out.lag")
+            .description("Time fan-outs waited for a worker")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    this.inline =
+        Counter.builder("social.timeline.fan_out.inline")
+            .description("Fan-outs run on the request because the queue was full")
+            .register(meterRegistry);
+    this.timelines =
+        Counter.builder("social.timeline.fan_out.timelines")
+            .description("Timelines written by fan-outs")
+            .register(meterRegistry);
+    Gauge.builder("social.timeline.fan_out.queued", queued, AtomicInteger::get)
+        .description("Fan-outs waiting for a worker")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    worker =
+        processor
+            .flatMap(
+                task -> {
+                  queued.decrementAndGet();
+                  lag.record(System.nanoTime() - task.queuedAtNanos, TimeUnit.NANOSECONDS);
+                  return fanOutLogged(task.posts);
+                },
+                workers)
+            .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (worker != null) {
+      worker.dispose();
+    }
+  }
+
+  /** Completes once the fan-out is queued, or once it is done when the queue is full. */
+  public Mono<Void> submit(final List<Post> posts) {
+    if (posts.isEmpty()) {
+      return Mono.empty();
+    }
+    recentPosts.add(posts.stream().map(TimelineEntry::of).collect(toList()));
+    if (queued.incrementAndGet() > queueSize) {
+      queued.decrementAndGet();
+      inline.increment();
+      return fanOutLogged(posts);
+    }
+    sink.next(new FanOutTask(posts, System.nanoTime()));
+    return Mono.empty();
+  }
+
+  // The post is saved by then, so a failed fan-out must not fail the request that saved it.
+  private Mono<Void> fanOutLogged(final List<Post> posts) {
+    return fanOut(posts)
+        .onErrorResume(
+            e -> {
+              LOGGER.warn(concatStrings(COLON, "Fan-out failed", e.getMessage()));
+              return Mono.empty();
+            });
+  }
+
+  private Mono<Void> fanOut(final List<Post> posts) {
+    final Map<String, List<Post>> postsByUserId =
+        posts.stream().collect(groupingBy(Post::getUserId));
+    return recentPosts
+        .pulledAuthorIds()
+        .flatMapMany(
+            pulledAuthorIds ->
+                Flux.fromIterable(postsByUserId.entrySet())
+                    .concatMap(
+                        authorPosts ->
+                            fanOut(authorPosts.getKey(), authorPosts.getValue(), pulledAuthorIds)))
+        .then();
+  }
+
+  private Mono<Void> fanOut(
+      final String authorId, final List<Post> posts, final Set<String> pulledAuthorIds) {
+    final List<TimelineEntry> entries = posts.stream().map(TimelineEntry::of).collect(toList());
+    final Flux<String> followerIds =
+        pulledAuthorIds.contains(authorId) ? Flux.empty() : followerIdsOf(authorId);
+    return followerIds
+        .startWith(authorId)
+        .buffer(batchSize)
+        .concatMap(timelineIds -> push(timelineIds, entries))
+        .then();
+  }
+
+  private Flux<String> followerIdsOf(final String userId) {
+    final Query followers = query(where(FOLLOWEE_ID).is(userId));
+    followers.fields().include(FOLLOWER_ID);
+    return operations.find(followers, Follow.class).map(Follow::getFollowerId);
+  }
+
+  /**
+   * Adds the entries to each timeline, creating the missing ones, in one unordered bulkWrite. Each
+   * timeline stays sorted newest first and capped at {@code social.timeline.max_size}.
+   */
+  public Mono<Void> push(final List<String> timelineIds, final List<TimelineEntry> entries) {
+    final List<Document> entryDocuments = new ArrayList<>(entries.size());
+    for (TimelineEntry entry : entries) {
+      entryDocuments.add(
+          new Document(POST_ID, entry.getPostId())
+              .append(USER_ID, entry.getUserId())
+              .append(CREATED_AT_EPOCH, entry.getCreatedAtEpoch()));
+    }
+    final Document update =
+        new Document(
+            "$push",
+            new Document(
+                ENTRIES,
+                new Document("$each", entryDocuments)
+                    .append("$sort", new Document(CREATED_AT_EPOCH, -1).append(POST_ID, -1))
+                    .append("$slice", maxSize)));
+    final UpdateOptions upsert = new UpdateOptions().upsert(true);
+    final List<WriteModel<Document>> writes = new ArrayList<>(timelineIds.size());
+    for (String timelineId : timelineIds) {
+      writes.add(
+          new UpdateOneModel<>(Filters.eq(TIMELINE_ID, storedId(timelineId)), update, upsert));
+    }
+    return Mono.from(
+            operations
+                .getCollection(operations.getCollectionName(Timeline.class))
+                .bulkWrite(writes, new BulkWriteOptions().ordered(false)))
+        .doOnSuccess(bulkWriteResult -> timelines.increment(timelineIds.size()))
+        .then();
+  }
+
+  private static final class FanOutTask {
+
+    private final List<Post> posts;
+    private final long queuedAtNanos;
+
+    private FanOutTask(final List<Post> posts, final long queuedAtNanos) {
+      this.posts = posts;
+      this.queuedAtNanos = queuedAtNanos;
+    }
+  }
+}
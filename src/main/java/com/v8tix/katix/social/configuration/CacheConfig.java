@@ -0,0 +1,31 @@
+package com.v8tix.katix.social.configuration;
+
+import com.v8tix.katix.social.component.EntityCache;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+  @Bean
+  public EntityCache<Post> setUpPostCache(
+      final @Value("${social.entity_cache.posts.enabled}") boolean enabled,
+      final @Value("${social.entity_cache.posts.ttl_ms}") long ttlMs,
+      final @Value("${social.entity_cache.posts.max_size}") long maxSize,
+      final MeterRegistry meterRegistry) {
+    return EntityCache.create("posts", enabled, ttlMs, maxSize, Post::copy, meterRegistry);
+  }
+
+  @Bean
+  public EntityCache<User> setUpUserCache(
+      final @Value("${social.entity_cache.users.enabled}") boolean enabled,
+      final @Value("${social.entity_cache.users.ttl_ms}") long ttlMs,
+      final @Value("${social.entity_cache.users.max_size}") long maxSize,
+      final MeterRegistry meterRegistry) {
+    return EntityCache.create("users", enabled, ttlMs, maxSize, User::copy, meterRegistry);
+  }
+}
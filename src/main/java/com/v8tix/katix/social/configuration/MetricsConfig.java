@@ -0,0 +1,81 @@
+package com.v8tix.katix.social.configuration;
+
+import com.mongodb.MongoClientOptions;
+import com.v8tix.katix.social.component.MongoMetricsCommandListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MetricsConfig {
+
+  /** Request attribute naming the call site of a WebClient exchange in the timer tags. */
+  public static final String WEB_CLIENT_OPERATION = "social.web_client.operation";
+
+  public static final String WEB_CLIENT_METRIC_NAME = "social.web_client.requests";
+  private static final String UNKNOWN = "unknown";
+  private static final String CLIENT_ERROR = "CLIENT_ERROR";
+
+  // Reactor registers executor.queued/executor.active gauges for every scheduler created from now
+  // on, in the global registry Spring Boot adds its own registry to.
+  @PostConstruct
+  public void enableSchedulerMetrics() {
+    Schedulers.enableMetrics();
+  }
+
+  @PreDestroy
+  public void disableSchedulerMetrics() {
+    Schedulers.disableMetrics();
+  }
+
+  @Bean
+  public MongoClientSettingsBuilderCustomizer setUpReactiveMongoMetrics(
+      final MongoMetricsCommandListener commandListener) {
+    return builder -> builder.addCommandListener(commandListener);
+  }
+
+  @Bean
+  public MongoClientOptions setUpMongoClientOptions(
+      final MongoMetricsCommandListener commandListener) {
+    return MongoClientOptions.builder().addCommandListener(commandListener).build();
+  }
+
+  @Bean
+  public WebClientCustomizer setUpWebClientMetrics(final MeterRegistry meterRegistry) {
+    return webClientBuilder -> webClientBuilder.filter(webClientTimer(meterRegistry));
+  }
+
+  private static ExchangeFilterFunction webClientTimer(final MeterRegistry meterRegistry) {
+    return (request, next) -> {
+      final long start = System.nanoTime();
+      return next.exchange(request)
+          .doOnSuccessOrError(
+              (response, error) ->
+                  Timer.builder(WEB_CLIENT_METRIC_NAME)
+                      .description("Exchanges of the internal WebClient")
+                      .tag("operation", operation(request))
+                      .tag("method", request.method().name())
+                      .tag(
+                          "status",
+                          response != null
+                              ? String.valueOf(response.rawStatusCode())
+                              : CLIENT_ERROR)
+                      .register(meterRegistry)
+                      .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    };
+  }
+
+  private static String operation(final ClientRequest request) {
+    return request.attribute(WEB_CLIENT_OPERATION).map(Object::toString).orElse(UNKNOWN);
+  }
+}
@@ -1,9 +1,12 @@
 package com.v8tix.katix.social.configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.v8tix.katix.social.util.JsonHelper;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import javax.validation.Validation;
@@ -17,8 +20,15 @@ public class WebConfig {
   private String host;
 
   @Bean
-  public WebClient setUpWebClient() {
-    return WebClient.create(host);
+  @Primary
+  public ObjectMapper setUpObjectMapper() {
+    return JsonHelper.MAPPER;
+  }
+
+  // The auto-configured builder carries the Jackson codecs built on the mapper above.
+  @Bean
+  public WebClient setUpWebClient(final WebClient.Builder webClientBuilder) {
+    return webClientBuilder.baseUrl(host).build();
   }
 
   @Bean
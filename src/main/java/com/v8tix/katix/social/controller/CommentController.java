@@ -1,23 +1,41 @@
 package com.v8tix.katix.social.controller;
 
 import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.BulkResult;
 import com.v8tix.katix.social.exception.ErrorDetail;
 import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.FeedEvent;
 import com.v8tix.katix.social.service.CommentReactiveService;
+import com.v8tix.katix.social.service.FeedReactiveService;
 import com.v8tix.katix.social.util.LinkRelation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.SortedSet;
 
+import static com.v8tix.katix.social.util.ETagHelper.conditionalResponse;
+import static com.v8tix.katix.social.util.ETagHelper.listETag;
+import static com.v8tix.katix.social.util.ETagHelper.variantETag;
+import static com.v8tix.katix.social.util.ETagHelper.versionETag;
+import static com.v8tix.katix.social.util.ETagHelper.withETag;
+import static com.v8tix.katix.social.util.FieldsHelper.parseFields;
+import static com.v8tix.katix.social.util.FieldsHelper.withFields;
 import static com.v8tix.katix.social.util.RestHelper.*;
 import static com.v8tix.katix.social.util.StringHelper.*;
 import static java.lang.String.format;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.MediaType.APPLICATION_STREAM_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 import static org.springframework.web.bind.annotation.RequestMethod.*;
 
 @RestController
@@ -26,12 +44,13 @@ import static org.springframework.web.bind.annotation.RequestMethod.*;
     origins = "*",
     methods = {HEAD, OPTIONS, GET, POST, PUT, DELETE},
     allowedHeaders = "*",
-    exposedHeaders = "Link, Location, Host",
+    exposedHeaders = "Link, Location, Host, ETag",
     maxAge = 3600)
 public class CommentController {
 
   private final CommentReactiveService commentReactiveService;
   private final MessageSource messageSource;
+  private final FeedReactiveService feedReactiveService;
 
   @Value("${rest.comments.path}")
   private String commentsPath;
@@ -47,40 +66,138 @@ public class CommentController {
 
   @Autowired
   public CommentController(
-      final CommentReactiveService commentReactiveService, final MessageSource messageSource) {
+      final CommentReactiveService commentReactiveService,
+      final MessageSource messageSource,
+      final FeedReactiveService feedReactiveService) {
     this.commentReactiveService = commentReactiveService;
     this.messageSource = messageSource;
+    this.feedReactiveService = feedReactiveService;
   }
 
   @GetMapping("/")
   public Mono<ResponseEntity<Object>> getAll(
-      final @RequestParam int page,
+      final @RequestParam(required = false) Integer page,
       final @RequestParam("per_page") long perPage,
-      final @PathVariable("postId") String postId) {
+      final @PathVariable("postId") String postId,
+      final @RequestParam(value = "after", required = false) String after,
+      final @RequestParam(value = "before", required = false) String before,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, Comment.class, messageSource);
+    if (page == null) {
+      return getAllByCursor(perPage, postId, after, before, fieldSet, ifNoneMatch);
+    }
     final Mono<Long> numberOfElementsMono = commentReactiveService.getNumberOfComments(postId);
     final Mono<List<Comment>> listCommentsMono =
-        commentReactiveService.findAllByPostId(page, perPage, postId).collectList();
+        commentReactiveService.findAllByPostId(page, perPage, postId, fieldSet).collectList();
     return numberOfElementsMono
         .zipWith(listCommentsMono)
-        .map(
+        .flatMap(
             tuple -> {
               final Long numberOfElements = tuple.getT1();
               final List<Comment> tComments = tuple.getT2();
-              final String domainCommentsPathWithPostId = format(domainCommentsPath, postId);
-              final String webLinks = getAllWebLinks(domainCommentsPathWithPostId, page, perPage);
-              final String selfPath = format(domainCommentsPath, postId);
-              return createPageableLinkHeaderResponse(
-                  selfPath, page, perPage, numberOfElements, tComments, webLinks);
+              return conditionalResponse(
+                  ifNoneMatch,
+                  listETag(tComments, numberOfElements, fieldSet),
+                  () -> {
+                    final String domainCommentsPathWithPostId = format(domainCommentsPath, postId);
+                    final String webLinks =
+                        getAllWebLinks(domainCommentsPathWithPostId, page, perPage);
+                    final String selfPath = format(domainCommentsPath, postId);
+                    return Mono.just(
+                        withFields(
+                            createPageableLinkHeaderResponse(
+                                selfPath, page, perPage, numberOfElements, tComments, webLinks),
+                            Comment.FIELDS_FILTER,
+                            fieldSet));
+                  });
             });
   }
 
+  private Mono<ResponseEntity<Object>> getAllByCursor(
+      final long perPage,
+      final String postId,
+      final String after,
+      final String before,
+      final SortedSet<String> fields,
+      final String ifNoneMatch) {
+    return commentReactiveService
+        .findAllByPostIdCursor(perPage, after, before, postId, fields)
+        .flatMap(
+            cursorPage ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    listETag(
+                        cursorPage.getItems(),
+                        cursorPage.getNext(),
+                        cursorPage.getPrevious(),
+                        fields),
+                    () -> {
+                      final String domainCommentsPathWithPostId =
+                          format(domainCommentsPath, postId);
+                      final String selfWebLink =
+                          createCursorWebLink(
+                              domainCommentsPathWithPostId,
+                              perPage,
+                              after,
+                              before,
+                              LinkRelation.SELF);
+                      return Mono.just(
+                          withFields(
+                              createCursorLinkHeaderResponse(
+                                  domainCommentsPathWithPostId, perPage, cursorPage, selfWebLink),
+                              Comment.FIELDS_FILTER,
+                              fields));
+                    }));
+  }
+
+  /** The comments of the post with the ids, in that order, and the ids not found. */
+  @GetMapping(path = "/", params = IDS_PARAM)
+  public Mono<ResponseEntity<Object>> getAllByIds(
+      final @PathVariable("postId") String postId,
+      final @RequestParam(IDS_PARAM) String ids,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, Comment.class, messageSource);
+    final String domainCommentsPathWithPostId = format(domainCommentsPath, postId);
+    return commentReactiveService
+        .findAllByIds(postId, ids, fieldSet)
+        .flatMap(
+            result ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    listETag(result.getItems(), result.getMissing(), fieldSet),
+                    () ->
+                        Mono.just(
+                            withFields(
+                                createMultiGetResponse(domainCommentsPathWithPostId, ids, result),
+                                Comment.FIELDS_FILTER,
+                                fieldSet))));
+  }
+
   @GetMapping("/{commentId}")
   public Mono<ResponseEntity<Object>> get(
       final @PathVariable("postId") String postId,
-      final @PathVariable("commentId") String commentId) {
+      final @PathVariable("commentId") String commentId,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, Comment.class, messageSource);
     return commentReactiveService
         .findById(postId, commentId)
-        .map(comment -> getAndUpdateResponseEntity(postId, comment))
+        .flatMap(
+            comment ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    variantETag(versionETag(comment.getVersion()), fieldSet),
+                    () ->
+                        Mono.just(
+                            withFields(
+                                getAndUpdateResponseEntity(postId, comment),
+                                Comment.FIELDS_FILTER,
+                                fieldSet))))
         .defaultIfEmpty(ResponseEntity.notFound().build());
   }
 
@@ -100,23 +217,52 @@ public class CommentController {
         .defaultIfEmpty(new ResponseEntity<>(errorDetail, HttpStatus.BAD_REQUEST));
   }
 
+  @GetMapping(path = EXPORT_PATH, produces = APPLICATION_STREAM_JSON_VALUE)
+  public Flux<Comment> export(
+      final @PathVariable("postId") String postId,
+      final @RequestParam(value = "after", required = false) String after) {
+    return commentReactiveService.export(postId, after);
+  }
+
+  /** The comments of the post created, updated and deleted from now on. */
+  @GetMapping(path = FEED_PATH, produces = TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<FeedEvent>> feed(final @PathVariable("postId") String postId) {
+    return feedReactiveService.comments(postId);
+  }
+
+  @PostMapping(
+      path = BULK_PATH,
+      consumes = {APPLICATION_NDJSON_VALUE, APPLICATION_STREAM_JSON_VALUE},
+      produces = APPLICATION_STREAM_JSON_VALUE)
+  public Flux<BulkResult> bulkSave(
+      final @PathVariable("postId") String postId, final @RequestBody Flux<DataBuffer> body) {
+    return commentReactiveService.bulkSave(postId, body);
+  }
+
   @PutMapping("/{commentId}")
   public Mono<ResponseEntity<Object>> update(
       final @PathVariable("postId") String postId,
       final @PathVariable(value = "commentId") String commentId,
-      final @RequestBody Comment comment)
+      final @RequestBody Comment comment,
+      final @RequestHeader(value = IF_MATCH, required = false) String ifMatch)
       throws BeanValidationException {
     final ErrorDetail errorDetail = getUpsertErrorDetail(messageSource, null);
     return commentReactiveService
-        .update(postId, commentId, comment)
-        .map(updatedComment -> getAndUpdateResponseEntity(postId, comment))
+        .update(postId, commentId, comment, ifMatch)
+        .map(
+            updatedComment ->
+                withETag(
+                    getAndUpdateResponseEntity(postId, updatedComment),
+                    versionETag(updatedComment.getVersion())))
         .defaultIfEmpty(new ResponseEntity<>(errorDetail, HttpStatus.NOT_FOUND));
   }
 
   @DeleteMapping("/{commentId}")
-  public Mono<ResponseEntity<Object>> delete(final @PathVariable String commentId) {
+  public Mono<ResponseEntity<Object>> delete(
+      final @PathVariable String commentId,
+      final @RequestHeader(value = IF_MATCH, required = false) String ifMatch) {
     return commentReactiveService
-        .delete(commentId)
+        .delete(commentId, ifMatch)
         .map(comment -> new ResponseEntity<>(HttpStatus.NO_CONTENT))
         .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
   }
@@ -1,21 +1,45 @@
 package com.v8tix.katix.social.controller;
 
 import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.BulkResult;
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.model.FeedEvent;
 import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.service.FeedReactiveService;
 import com.v8tix.katix.social.service.PostReactiveService;
+import com.v8tix.katix.social.service.SearchReactiveService;
 import com.v8tix.katix.social.util.LinkRelation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriUtils;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.SortedSet;
 
+import static com.v8tix.katix.social.util.ETagHelper.conditionalResponse;
+import static com.v8tix.katix.social.util.ETagHelper.listETag;
+import static com.v8tix.katix.social.util.ETagHelper.variantETag;
+import static com.v8tix.katix.social.util.ETagHelper.versionETag;
+import static com.v8tix.katix.social.util.ETagHelper.withETag;
+import static com.v8tix.katix.social.util.FieldsHelper.parseFields;
+import static com.v8tix.katix.social.util.FieldsHelper.wants;
+import static com.v8tix.katix.social.util.FieldsHelper.withFields;
 import static com.v8tix.katix.social.util.RestHelper.*;
 import static com.v8tix.katix.social.util.StringHelper.*;
 import static java.lang.String.format;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.MediaType.APPLICATION_STREAM_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 import static org.springframework.web.bind.annotation.RequestMethod.*;
 
 @RestController
@@ -24,13 +48,16 @@ import static org.springframework.web.bind.annotation.RequestMethod.*;
     origins = "*",
     methods = {HEAD, OPTIONS, GET, POST, PUT, DELETE},
     allowedHeaders = "*",
-    exposedHeaders = "Link, Location, Host",
+    exposedHeaders = "Link, Location, Host, ETag",
     maxAge = 3600)
 public class PostController {
 
   private static final int FIRST_PAGE = 1;
   private static final int PER_PAGE = 5;
   private final PostReactiveService postReactiveService;
+  private final FeedReactiveService feedReactiveService;
+  private final SearchReactiveService searchReactiveService;
+  private final MessageSource messageSource;
 
   @Value("${rest.posts.path}")
   private String postsPath;
@@ -51,41 +78,159 @@ public class PostController {
   private String domainUsersPath;
 
   @Autowired
-  public PostController(final PostReactiveService postReactiveService) {
+  public PostController(
+      final PostReactiveService postReactiveService,
+      final FeedReactiveService feedReactiveService,
+      final SearchReactiveService searchReactiveService,
+      final MessageSource messageSource) {
     this.postReactiveService = postReactiveService;
+    this.feedReactiveService = feedReactiveService;
+    this.searchReactiveService = searchReactiveService;
+    this.messageSource = messageSource;
   }
 
   @GetMapping("/")
   public Mono<ResponseEntity<Object>> getAll(
-      final @RequestParam long page,
+      final @RequestParam(required = false) Long page,
       final @RequestParam("per_page") long perPage,
-      final @RequestParam(value = "embed", required = false) String embed) {
+      final @RequestParam(value = "embed", required = false) String embed,
+      final @RequestParam(value = "after", required = false) String after,
+      final @RequestParam(value = "before", required = false) String before,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, Post.class, messageSource);
+    final String embedded = wants(fieldSet, Post.COMMENTS) ? embed : null;
+    if (page == null) {
+      return getAllByCursor(perPage, embedded, after, before, fieldSet, ifNoneMatch);
+    }
     final Mono<Long> numberOfElementsMono = postReactiveService.getNumberOfPosts();
     final Mono<List<Post>> listPostsMono =
-        postReactiveService.findAllPageable(page, perPage, embed).collectList();
+        postReactiveService.findAllPageable(page, perPage, fieldSet, embedded).collectList();
     return numberOfElementsMono
         .zipWith(listPostsMono)
-        .map(
+        .flatMap(
             tuple -> {
               final Long numberOfElements = tuple.getT1();
               final List<Post> tPosts = tuple.getT2();
+              return conditionalResponse(
+                  ifNoneMatch,
+                  listETag(tPosts, numberOfElements, embedded, fieldSet),
+                  () ->
+                      getAllResponse(page, perPage, numberOfElements, embedded, tPosts)
+                          .map(response -> withFields(response, Post.FIELDS_FILTER, fieldSet)));
+            });
+  }
+
+  private Mono<ResponseEntity<Object>> getAllResponse(
+      final long page,
+      final long perPage,
+      final long numberOfElements,
+      final String embed,
+      final List<Post> posts) {
+    return postReactiveService
+        .embedComments(embed, posts)
+        .map(
+            embeddedPosts -> {
               final String webLinks = getAllWebLinks(domainPostsPath, page, perPage);
               return createPageableLinkHeaderResponse(
-                  domainPostsPath, page, perPage, numberOfElements, tPosts, webLinks);
+                  domainPostsPath, page, perPage, numberOfElements, embeddedPosts, webLinks);
             });
   }
 
+  private Mono<ResponseEntity<Object>> getAllByCursor(
+      final long perPage,
+      final String embed,
+      final String after,
+      final String before,
+      final SortedSet<String> fields,
+      final String ifNoneMatch) {
+    return postReactiveService
+        .findAllByCursor(perPage, after, before, fields, embed)
+        .flatMap(
+            cursorPage ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    listETag(
+                        cursorPage.getItems(),
+                        cursorPage.getNext(),
+                        cursorPage.getPrevious(),
+                        embed,
+                        fields),
+                    () ->
+                        getAllByCursorResponse(perPage, embed, after, before, cursorPage)
+                            .map(response -> withFields(response, Post.FIELDS_FILTER, fields))));
+  }
+
+  private Mono<ResponseEntity<Object>> getAllByCursorResponse(
+      final long perPage,
+      final String embed,
+      final String after,
+      final String before,
+      final CursorPage<Post> cursorPage) {
+    return postReactiveService
+        .embedComments(embed, cursorPage)
+        .map(
+            embeddedPage -> {
+              final String selfWebLink =
+                  createCursorWebLink(domainPostsPath, perPage, after, before, LinkRelation.SELF);
+              return createCursorLinkHeaderResponse(
+                  domainPostsPath, perPage, embeddedPage, selfWebLink);
+            });
+  }
+
+  /** The posts with the ids, in that order, and the ids not found; one query for all of them. */
+  @GetMapping(path = "/", params = IDS_PARAM)
+  public Mono<ResponseEntity<Object>> getAllByIds(
+      final @RequestParam(IDS_PARAM) String ids,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, Post.class, messageSource);
+    return postReactiveService
+        .findAllByIds(ids, fieldSet)
+        .flatMap(
+            result ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    listETag(result.getItems(), result.getMissing(), fieldSet),
+                    () ->
+                        Mono.just(
+                            withFields(
+                                createMultiGetResponse(domainPostsPath, ids, result),
+                                Post.FIELDS_FILTER,
+                                fieldSet))));
+  }
+
   @GetMapping("/{postId}")
-  public Mono<ResponseEntity<Object>> get(final @PathVariable(value = "postId") String postId) {
+  public Mono<ResponseEntity<Object>> get(
+      final @PathVariable(value = "postId") String postId,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, Post.class, messageSource);
     return postReactiveService
-        .findByPostId(postId)
+        .findPostById(postId)
+        .flatMap(
+            post ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    variantETag(versionETag(post.getVersion()), fieldSet),
+                    () ->
+                        getResponse(post, wants(fieldSet, Post.COMMENTS))
+                            .map(response -> withFields(response, Post.FIELDS_FILTER, fieldSet))))
+        .defaultIfEmpty(ResponseEntity.notFound().build());
+  }
+
+  private Mono<ResponseEntity<Object>> getResponse(final Post post, final boolean embed) {
+    return (embed ? postReactiveService.embedComments(post) : Mono.just(post))
         .map(
-            post -> {
-              final String webLinks = commonWebLinks(post, domainCommentsPath, domainUsersPath);
+            embeddedPost -> {
+              final String webLinks =
+                  commonWebLinks(embeddedPost, domainCommentsPath, domainUsersPath);
               return createSelfLinkHeaderResponse(
-                  domainPostsPath, post.getId(), post, HttpStatus.OK, webLinks);
-            })
-        .defaultIfEmpty(ResponseEntity.notFound().build());
+                  domainPostsPath, embeddedPost.getId(), embeddedPost, HttpStatus.OK, webLinks);
+            });
   }
 
   @PostMapping("/")
@@ -103,26 +248,85 @@ public class PostController {
         .defaultIfEmpty(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
   }
 
+  @GetMapping(path = EXPORT_PATH, produces = APPLICATION_STREAM_JSON_VALUE)
+  public Flux<Post> export(final @RequestParam(value = "after", required = false) String after) {
+    return postReactiveService.export(after);
+  }
+
+  /** The posts created, updated and deleted from now on, see {@link FeedReactiveService}. */
+  @GetMapping(path = FEED_PATH, produces = TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<FeedEvent>> feed() {
+    return feedReactiveService.posts();
+  }
+
+  /** The posts matching {@code q}, best first, see {@link SearchReactiveService}. */
+  @GetMapping(SEARCH_PATH)
+  public Mono<ResponseEntity<Object>> search(
+      final @RequestParam("q") String q,
+      final @RequestParam("per_page") long perPage,
+      final @RequestParam(value = "after", required = false) String after,
+      final @RequestParam(value = "before", required = false) String before,
+      final @RequestParam(value = "mode", required = false) String mode)
+      throws BeanValidationException {
+    final String searchPath = searchPath(q, mode);
+    return searchReactiveService
+        .search(q, mode, perPage, after, before)
+        .map(
+            searchPage -> {
+              final String selfWebLink =
+                  createCursorWebLink(searchPath, perPage, after, before, LinkRelation.SELF);
+              return createCursorLinkHeaderResponse(searchPath, perPage, searchPage, selfWebLink);
+            });
+  }
+
+  private String searchPath(final String q, final String mode) {
+    final String path =
+        concatStrings(
+            EMPTY_STRING,
+            removeLastChar(domainPostsPath, '/'),
+            SEARCH_PATH,
+            "?q=",
+            UriUtils.encodeQueryParam(q, StandardCharsets.UTF_8));
+    return mode == null
+        ? path
+        : concatStrings(
+            EMPTY_STRING, path, "&mode=", UriUtils.encodeQueryParam(mode, StandardCharsets.UTF_8));
+  }
+
+  @PostMapping(
+      path = BULK_PATH,
+      consumes = {APPLICATION_NDJSON_VALUE, APPLICATION_STREAM_JSON_VALUE},
+      produces = APPLICATION_STREAM_JSON_VALUE)
+  public Flux<BulkResult> bulkSave(final @RequestBody Flux<DataBuffer> body) {
+    return postReactiveService.bulkSave(body);
+  }
+
   @PutMapping("/{postId}")
   public Mono<ResponseEntity<Object>> update(
-      final @PathVariable(value = "postId") String postId, final @RequestBody Post post)
+      final @PathVariable(value = "postId") String postId,
+      final @RequestBody Post post,
+      final @RequestHeader(value = IF_MATCH, required = false) String ifMatch)
       throws BeanValidationException {
     return postReactiveService
-        .update(postId, post)
+        .update(postId, post, ifMatch)
         .map(
             updatedPost -> {
               final String webLinks =
                   commonWebLinks(updatedPost, domainCommentsPath, domainUsersPath);
-              return createSelfLinkHeaderResponse(
-                  domainPostsPath, updatedPost.getId(), updatedPost, HttpStatus.OK, webLinks);
+              final ResponseEntity<Object> response =
+                  createSelfLinkHeaderResponse(
+                      domainPostsPath, updatedPost.getId(), updatedPost, HttpStatus.OK, webLinks);
+              return withETag(response, versionETag(updatedPost.getVersion()));
             })
         .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
   }
 
   @DeleteMapping("/{postId}")
-  public Mono<ResponseEntity<Object>> delete(final @PathVariable String postId) {
+  public Mono<ResponseEntity<Object>> delete(
+      final @PathVariable String postId,
+      final @RequestHeader(value = IF_MATCH, required = false) String ifMatch) {
     return postReactiveService
-        .delete(postId)
+        .delete(postId, ifMatch)
         .map(post -> new ResponseEntity<>(HttpStatus.NO_CONTENT))
         .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
   }
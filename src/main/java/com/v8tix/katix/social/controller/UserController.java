@@ -1,20 +1,42 @@
 package com.v8tix.katix.social.controller;
 
 import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.BulkResult;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.model.Post;
 import com.v8tix.katix.social.model.User;
+import com.v8tix.katix.social.model.Versioned;
+import com.v8tix.katix.social.service.CommentReactiveService;
+import com.v8tix.katix.social.service.PostReactiveService;
+import com.v8tix.katix.social.service.TimelineReactiveService;
 import com.v8tix.katix.social.service.UserReactiveService;
 import com.v8tix.katix.social.util.LinkRelation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.SortedSet;
 
+import static com.v8tix.katix.social.util.ETagHelper.conditionalResponse;
+import static com.v8tix.katix.social.util.ETagHelper.listETag;
+import static com.v8tix.katix.social.util.ETagHelper.variantETag;
+import static com.v8tix.katix.social.util.ETagHelper.versionETag;
+import static com.v8tix.katix.social.util.ETagHelper.withETag;
+import static com.v8tix.katix.social.util.FieldsHelper.parseFields;
+import static com.v8tix.katix.social.util.FieldsHelper.withFields;
 import static com.v8tix.katix.social.util.RestHelper.*;
 import static com.v8tix.katix.social.util.StringHelper.*;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.MediaType.APPLICATION_STREAM_JSON_VALUE;
 import static org.springframework.web.bind.annotation.RequestMethod.*;
 
 @RestController
@@ -23,11 +45,17 @@ import static org.springframework.web.bind.annotation.RequestMethod.*;
     origins = "*",
     methods = {HEAD, OPTIONS, GET, POST, PUT, DELETE},
     allowedHeaders = "*",
-    exposedHeaders = "Link, Location, Host",
+    exposedHeaders = "Link, Location, Host, ETag",
     maxAge = 3600)
 public class UserController {
 
+  private static final int TIMELINE_PER_PAGE = 20;
+  private static final int LISTING_PER_PAGE = 20;
   private final UserReactiveService userReactiveService;
+  private final TimelineReactiveService timelineReactiveService;
+  private final PostReactiveService postReactiveService;
+  private final CommentReactiveService commentReactiveService;
+  private final MessageSource messageSource;
 
   @Value("${rest.users.path}")
   private String usersPath;
@@ -36,38 +64,132 @@ public class UserController {
   private String domainUsersPath;
 
   @Autowired
-  public UserController(final UserReactiveService userReactiveService) {
+  public UserController(
+      final UserReactiveService userReactiveService,
+      final TimelineReactiveService timelineReactiveService,
+      final PostReactiveService postReactiveService,
+      final CommentReactiveService commentReactiveService,
+      final MessageSource messageSource) {
     this.userReactiveService = userReactiveService;
+    this.timelineReactiveService = timelineReactiveService;
+    this.postReactiveService = postReactiveService;
+    this.commentReactiveService = commentReactiveService;
+    this.messageSource = messageSource;
   }
 
   @GetMapping("/")
   public Mono<ResponseEntity<Object>> getAll(
-      final @RequestParam long page, final @RequestParam("per_page") long perPage) {
+      final @RequestParam(required = false) Long page,
+      final @RequestParam("per_page") long perPage,
+      final @RequestParam(value = "after", required = false) String after,
+      final @RequestParam(value = "before", required = false) String before,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, User.class, messageSource);
+    if (page == null) {
+      return getAllByCursor(perPage, after, before, fieldSet, ifNoneMatch);
+    }
     final Mono<Long> numberOfElementsMono = userReactiveService.getNumberOfUsers();
     final Mono<List<User>> listUsersMono =
-        userReactiveService.findAllPageable(page, perPage).collectList();
+        userReactiveService.findAllPageable(page, perPage, fieldSet).collectList();
     return numberOfElementsMono
         .zipWith(listUsersMono)
-        .map(
+        .flatMap(
             tuple -> {
               final Long numberOfElements = tuple.getT1();
               final List<User> tUsers = tuple.getT2();
-              final String webLinks = getAllWebLinks(domainUsersPath, page, perPage);
-              return createPageableLinkHeaderResponse(
-                  domainUsersPath, page, perPage, numberOfElements, tUsers, webLinks);
+              return conditionalResponse(
+                  ifNoneMatch,
+                  listETag(tUsers, numberOfElements, fieldSet),
+                  () -> {
+                    final String webLinks = getAllWebLinks(domainUsersPath, page, perPage);
+                    return Mono.just(
+                        withFields(
+                            createPageableLinkHeaderResponse(
+                                domainUsersPath, page, perPage, numberOfElements, tUsers, webLinks),
+                            User.FIELDS_FILTER,
+                            fieldSet));
+                  });
             });
   }
 
+  private Mono<ResponseEntity<Object>> getAllByCursor(
+      final long perPage,
+      final String after,
+      final String before,
+      final SortedSet<String> fields,
+      final String ifNoneMatch) {
+    return userReactiveService
+        .findAllByCursor(perPage, after, before, fields)
+        .flatMap(
+            cursorPage ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    listETag(
+                        cursorPage.getItems(),
+                        cursorPage.getNext(),
+                        cursorPage.getPrevious(),
+                        fields),
+                    () -> {
+                      final String selfWebLink =
+                          createCursorWebLink(
+                              domainUsersPath, perPage, after, before, LinkRelation.SELF);
+                      return Mono.just(
+                          withFields(
+                              createCursorLinkHeaderResponse(
+                                  domainUsersPath, perPage, cursorPage, selfWebLink),
+                              User.FIELDS_FILTER,
+                              fields));
+                    }));
+  }
+
+  /** The users with the ids, in that order, and the ids not found; one query for all of them. */
+  @GetMapping(path = "/", params = IDS_PARAM)
+  public Mono<ResponseEntity<Object>> getAllByIds(
+      final @RequestParam(IDS_PARAM) String ids,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, User.class, messageSource);
+    return userReactiveService
+        .findAllByIds(ids, fieldSet)
+        .flatMap(
+            result ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    listETag(result.getItems(), result.getMissing(), fieldSet),
+                    () ->
+                        Mono.just(
+                            withFields(
+                                createMultiGetResponse(domainUsersPath, ids, result),
+                                User.FIELDS_FILTER,
+                                fieldSet))));
+  }
+
   @GetMapping("/{userId}")
-  public Mono<ResponseEntity<Object>> get(final @PathVariable(value = "userId") String userId) {
+  public Mono<ResponseEntity<Object>> get(
+      final @PathVariable(value = "userId") String userId,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, User.class, messageSource);
     return userReactiveService
         .findById(userId)
-        .map(
-            user -> {
-              final String webLinks = commonWebLinks(domainUsersPath, user);
-              return createSelfLinkHeaderResponse(
-                  domainUsersPath, user.getId(), user, HttpStatus.OK, webLinks);
-            })
+        .flatMap(
+            user ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    variantETag(versionETag(user.getVersion()), fieldSet),
+                    () -> {
+                      final String webLinks = commonWebLinks(domainUsersPath, user);
+                      return Mono.just(
+                          withFields(
+                              createSelfLinkHeaderResponse(
+                                  domainUsersPath, user.getId(), user, HttpStatus.OK, webLinks),
+                              User.FIELDS_FILTER,
+                              fieldSet));
+                    }))
         .defaultIfEmpty(ResponseEntity.notFound().build());
   }
 
@@ -85,25 +207,169 @@ public class UserController {
         .defaultIfEmpty(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
   }
 
+  @GetMapping(path = EXPORT_PATH, produces = APPLICATION_STREAM_JSON_VALUE)
+  public Flux<User> export(final @RequestParam(value = "after", required = false) String after) {
+    return userReactiveService.export(after);
+  }
+
+  @PostMapping(
+      path = BULK_PATH,
+      consumes = {APPLICATION_NDJSON_VALUE, APPLICATION_STREAM_JSON_VALUE},
+      produces = APPLICATION_STREAM_JSON_VALUE)
+  public Flux<BulkResult> bulkSave(final @RequestBody Flux<DataBuffer> body) {
+    return userReactiveService.bulkSave(body);
+  }
+
   @PutMapping("/{userId}")
   public Mono<ResponseEntity<Object>> update(
-      final @PathVariable(value = "userId") String userId, final @RequestBody User user)
+      final @PathVariable(value = "userId") String userId,
+      final @RequestBody User user,
+      final @RequestHeader(value = IF_MATCH, required = false) String ifMatch)
       throws BeanValidationException {
     return userReactiveService
-        .update(userId, user)
+        .update(userId, user, ifMatch)
         .map(
             updatedUser -> {
               final String webLinks = commonWebLinks(domainUsersPath, updatedUser);
-              return createSelfLinkHeaderResponse(
-                  domainUsersPath, updatedUser.getId(), updatedUser, HttpStatus.OK, webLinks);
+              final ResponseEntity<Object> response =
+                  createSelfLinkHeaderResponse(
+                      domainUsersPath, updatedUser.getId(), updatedUser, HttpStatus.OK, webLinks);
+              return withETag(response, versionETag(updatedUser.getVersion()));
             })
         .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
   }
 
+  /** Follows {@code followeeId}; following again changes nothing. */
+  @PutMapping("/{userId}" + FOLLOWING_PATH + "/{followeeId}")
+  public Mono<ResponseEntity<Object>> follow(
+      final @PathVariable("userId") String userId,
+      final @PathVariable("followeeId") String followeeId)
+      throws BeanValidationException {
+    return timelineReactiveService
+        .follow(userId, followeeId)
+        .map(followed -> new ResponseEntity<>(HttpStatus.NO_CONTENT))
+        .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+  }
+
+  @DeleteMapping("/{userId}" + FOLLOWING_PATH + "/{followeeId}")
+  public Mono<ResponseEntity<Object>> unfollow(
+      final @PathVariable("userId") String userId,
+      final @PathVariable("followeeId") String followeeId) {
+    return timelineReactiveService
+        .unfollow(userId, followeeId)
+        .map(unfollowed -> new ResponseEntity<>(HttpStatus.NO_CONTENT))
+        .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+  }
+
+  /** The posts of the accounts the user follows, newest first, paged with cursors only. */
+  @GetMapping("/{userId}" + TIMELINE_PATH)
+  public Mono<ResponseEntity<Object>> timeline(
+      final @PathVariable("userId") String userId,
+      final @RequestParam("per_page") long perPage,
+      final @RequestParam(value = "after", required = false) String after,
+      final @RequestParam(value = "before", required = false) String before,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final String timelinePath = timelinePath(domainUsersPath, userId);
+    return timelineReactiveService
+        .timeline(userId, perPage, after, before)
+        .flatMap(
+            cursorPage ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    listETag(cursorPage.getItems(), cursorPage.getNext(), cursorPage.getPrevious()),
+                    () -> {
+                      final String selfWebLink =
+                          createCursorWebLink(
+                              timelinePath, perPage, after, before, LinkRelation.SELF);
+                      return Mono.just(
+                          createCursorLinkHeaderResponse(
+                              timelinePath, perPage, cursorPage, selfWebLink));
+                    }))
+        .defaultIfEmpty(ResponseEntity.notFound().build());
+  }
+
+  /** The posts written by the user, newest first, paged with cursors only. */
+  @GetMapping("/{userId}" + POSTS_PATH)
+  public Mono<ResponseEntity<Object>> posts(
+      final @PathVariable("userId") String userId,
+      final @RequestParam("per_page") long perPage,
+      final @RequestParam(value = "after", required = false) String after,
+      final @RequestParam(value = "before", required = false) String before,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, Post.class, messageSource);
+    return listingResponse(
+        postReactiveService.findAllByUserIdCursor(userId, perPage, after, before, fieldSet),
+        userPath(domainUsersPath, userId, POSTS_PATH),
+        perPage,
+        after,
+        before,
+        Post.FIELDS_FILTER,
+        fieldSet,
+        ifNoneMatch);
+  }
+
+  /** The comments written by the user on any post, newest first, paged with cursors only. */
+  @GetMapping("/{userId}" + COMMENTS_PATH)
+  public Mono<ResponseEntity<Object>> comments(
+      final @PathVariable("userId") String userId,
+      final @RequestParam("per_page") long perPage,
+      final @RequestParam(value = "after", required = false) String after,
+      final @RequestParam(value = "before", required = false) String before,
+      final @RequestParam(value = "fields", required = false) String fields,
+      final @RequestHeader(value = IF_NONE_MATCH, required = false) String ifNoneMatch)
+      throws BeanValidationException {
+    final SortedSet<String> fieldSet = parseFields(fields, Comment.class, messageSource);
+    return listingResponse(
+        commentReactiveService.findAllByUserIdCursor(userId, perPage, after, before, fieldSet),
+        userPath(domainUsersPath, userId, COMMENTS_PATH),
+        perPage,
+        after,
+        before,
+        Comment.FIELDS_FILTER,
+        fieldSet,
+        ifNoneMatch);
+  }
+
+  private static Mono<ResponseEntity<Object>> listingResponse(
+      final Mono<? extends CursorPage<? extends Versioned>> cursorPageMono,
+      final String path,
+      final long perPage,
+      final String after,
+      final String before,
+      final String fieldsFilter,
+      final SortedSet<String> fields,
+      final String ifNoneMatch) {
+    return cursorPageMono
+        .flatMap(
+            cursorPage ->
+                conditionalResponse(
+                    ifNoneMatch,
+                    listETag(
+                        cursorPage.getItems(),
+                        cursorPage.getNext(),
+                        cursorPage.getPrevious(),
+                        fields),
+                    () -> {
+                      final String selfWebLink =
+                          createCursorWebLink(path, perPage, after, before, LinkRelation.SELF);
+                      return Mono.just(
+                          withFields(
+                              createCursorLinkHeaderResponse(path, perPage, cursorPage, selfWebLink),
+                              fieldsFilter,
+                              fields));
+                    }))
+        .defaultIfEmpty(ResponseEntity.notFound().build());
+  }
+
   @DeleteMapping("/{userId}")
-  public Mono<ResponseEntity<Object>> delete(final @PathVariable String userId) {
+  public Mono<ResponseEntity<Object>> delete(
+      final @PathVariable String userId,
+      final @RequestHeader(value = IF_MATCH, required = false) String ifMatch) {
     return userReactiveService
-        .delete(userId)
+        .delete(userId, ifMatch)
         .map(user -> new ResponseEntity<>(HttpStatus.NO_CONTENT))
         .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
   }
@@ -118,6 +384,36 @@ public class UserController {
   private static String commonWebLinks(final String domainUsersPath, final User user) {
     final String domainUsersPathUserId = concatStrings(EMPTY_STRING, domainUsersPath, user.getId());
     final String usersWebLink = createWebLink(domainUsersPathUserId, LinkRelation.SELF);
-    return concatStrings(COMA, usersWebLink);
+    final String timelineWebLink =
+        createCursorWebLink(
+            timelinePath(domainUsersPath, user.getId()),
+            TIMELINE_PER_PAGE,
+            null,
+            null,
+            LinkRelation.TIMELINE);
+    final String postsWebLink =
+        createCursorWebLink(
+            userPath(domainUsersPath, user.getId(), POSTS_PATH),
+            LISTING_PER_PAGE,
+            null,
+            null,
+            LinkRelation.POSTS);
+    final String commentsWebLink =
+        createCursorWebLink(
+            userPath(domainUsersPath, user.getId(), COMMENTS_PATH),
+            LISTING_PER_PAGE,
+            null,
+            null,
+            LinkRelation.COMMENTS);
+    return concatStrings(COMA, usersWebLink, timelineWebLink, postsWebLink, commentsWebLink);
+  }
+
+  private static String timelinePath(final String domainUsersPath, final String userId) {
+    return userPath(domainUsersPath, userId, TIMELINE_PATH);
+  }
+
+  private static String userPath(
+      final String domainUsersPath, final String userId, final String subPath) {
+    return concatStrings(EMPTY_STRING, domainUsersPath, userId, subPath);
   }
 }
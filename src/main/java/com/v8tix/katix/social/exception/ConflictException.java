@@ -0,0 +1,8 @@
+package com.v8tix.katix.social.exception;
+
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.v8tix.katix.social.exception;
+
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(final String message) {
+        super(message);
+    }
+}
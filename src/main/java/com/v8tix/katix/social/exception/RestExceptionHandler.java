@@ -1,6 +1,7 @@
 package com.v8tix.katix.social.exception;
 
 import com.v8tix.katix.social.util.BeanValidationHelper;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -17,6 +18,12 @@ public class RestExceptionHandler {
 
     private static final String VALIDATION_FAILED = "Validation Failed";
     private static final String INPUT_VALIDATION_FAILED = "Input validation failed";
+    private static final String PRECONDITION_FAILED = "Precondition Failed";
+    private static final String IF_MATCH_FAILED = "If-Match does not match the current ETag";
+    private static final String CONFLICT = "Conflict";
+    private static final String VERSION_CONFLICT = "The document was modified concurrently";
+    private static final String RETRY_AFTER_SECONDS = "5";
+    private static final String WARNING_FORMAT = "199 - \"%s\"";
 
     @ExceptionHandler(BeanValidationException.class)
     public ResponseEntity<ErrorDetail> handleErrorDetailException(
@@ -35,4 +42,43 @@ public class RestExceptionHandler {
         }
         return new ResponseEntity<>(errorDetail, null, HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ErrorDetail> handlePreconditionFailedException(
+            final PreconditionFailedException pfe) {
+        final ErrorDetail errorDetail = new ErrorDetail();
+        final OffsetDateTime now = getOffsetDateTime();
+        errorDetail.setTitle(PRECONDITION_FAILED);
+        errorDetail.setDetail(IF_MATCH_FAILED);
+        errorDetail.setTimeStamp(isoDate(now));
+        errorDetail.setStatus(HttpStatus.PRECONDITION_FAILED.value());
+        errorDetail.setDeveloperMessage(RestExceptionHandler.class.getName());
+        errorDetail.addUserMessage(pfe.getMessage());
+        return new ResponseEntity<>(errorDetail, null, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ErrorDetail> handleConflictException(final ConflictException ce) {
+        final ErrorDetail errorDetail = new ErrorDetail();
+        final OffsetDateTime now = getOffsetDateTime();
+        errorDetail.setTitle(CONFLICT);
+        errorDetail.setDetail(VERSION_CONFLICT);
+        errorDetail.setTimeStamp(isoDate(now));
+        errorDetail.setStatus(HttpStatus.CONFLICT.value());
+        errorDetail.setDeveloperMessage(RestExceptionHandler.class.getName());
+        errorDetail.addUserMessage(ce.getMessage());
+        return new ResponseEntity<>(errorDetail, null, HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Without a body: the feeds only produce text/event-stream, which has no converter for an
+     * {@link ErrorDetail}, so the reason goes in a Warning header.
+     */
+    @ExceptionHandler(TooManyClientsException.class)
+    public ResponseEntity<Void> handleTooManyClientsException(final TooManyClientsException tmce) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        headers.set(HttpHeaders.WARNING, String.format(WARNING_FORMAT, tmce.getMessage()));
+        return new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
 }
@@ -0,0 +1,8 @@
+package com.v8tix.katix.social.exception;
+
+public class TooManyClientsException extends RuntimeException {
+
+    public TooManyClientsException(final String message) {
+        super(message);
+    }
+}
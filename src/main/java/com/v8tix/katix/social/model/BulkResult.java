@@ -0,0 +1,28 @@
+package com.v8tix.katix.social.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/** The outcome of one line of a bulk request, numbered from 1 as sent. */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkResult {
+
+    private long line;
+
+    private String id;
+
+    private int status;
+
+    private String error;
+
+    public BulkResult() {
+    }
+
+    public BulkResult(final long line, final String id, final int status, final String error) {
+        this.line = line;
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+}
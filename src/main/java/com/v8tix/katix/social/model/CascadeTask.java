@@ -0,0 +1,62 @@
+package com.v8tix.katix.social.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * The cleanup left behind by a delete: the comments of a deleted post, or the posts and comments
+ * of a deleted user. Progress is stored after every batch, so a task whose lease ran out is picked
+ * up again by any instance and carries on where it stopped.
+ */
+@Data
+@Document
+@CompoundIndexes({
+        @CompoundIndex(name = "status_createdAtEpoch", def = "{'status': 1, 'createdAtEpoch': 1}")
+})
+public class CascadeTask {
+
+    public enum Type {
+        POST_COMMENTS, USER_CONTENT
+    }
+
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    @Id
+    private String id;
+
+    private Type type;
+
+    private String targetId;
+
+    private Status status;
+
+    private long deletedPosts;
+
+    private long deletedComments;
+
+    private int attempts;
+
+    private String lastError;
+
+    private long createdAtEpoch;
+
+    private long updatedAtEpoch;
+
+    private long leaseUntil;
+
+    public CascadeTask() {
+    }
+
+    public CascadeTask(final Type type, final String targetId, final long createdAtEpoch) {
+        this.type = type;
+        this.targetId = targetId;
+        this.status = Status.PENDING;
+        this.createdAtEpoch = createdAtEpoch;
+        this.updatedAtEpoch = createdAtEpoch;
+    }
+}
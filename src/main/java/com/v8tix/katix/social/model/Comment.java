@@ -1,23 +1,35 @@
 package com.v8tix.katix.social.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotEmpty;
 import java.time.OffsetDateTime;
+import java.util.Objects;
 
 import static com.v8tix.katix.social.util.DateHelper.*;
 import static com.v8tix.katix.social.util.StringHelper.toJson;
 
 @Data
 @Document
-public class Comment {
+@JsonFilter(Comment.FIELDS_FILTER)
+@CompoundIndexes({
+        @CompoundIndex(name = "postId_createdAtEpoch_id", def = "{'postId': 1, 'createdAtEpoch': -1, '_id': -1}"),
+        @CompoundIndex(name = "userId_createdAtEpoch_id", def = "{'userId': 1, 'createdAtEpoch': -1, '_id': -1}")
+})
+public class Comment implements Versioned {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Comment.class);
 
+    public static final String FIELDS_FILTER = "commentFields";
+
     @Id
     private String id;
 
@@ -35,6 +47,11 @@ public class Comment {
 
     private long createdAtEpoch;
 
+    private long version;
+
+    @JsonIgnore
+    private String contentHash;
+
     public Comment() {
     }
 
@@ -56,9 +73,11 @@ public class Comment {
 
     @Override
     public boolean equals(final Object otherObject) {
-        if (getClass() == otherObject.getClass()) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject != null && getClass() == otherObject.getClass()) {
             Comment otherComment = (Comment) otherObject;
-            return id.equals(otherComment.id);
+            return id != null && id.equals(otherComment.id);
         } else {
             return false;
         }
@@ -66,7 +85,7 @@ public class Comment {
 
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        return Objects.hashCode(id);
     }
 
     @Override
@@ -0,0 +1,29 @@
+package com.v8tix.katix.social.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class CursorPage<T> {
+
+    private List<T> items = new ArrayList<>();
+
+    private String next;
+
+    private String previous;
+
+    public CursorPage() {
+    }
+
+    public CursorPage(final List<T> items, final String next, final String previous) {
+        this.items = items;
+        this.next = next;
+        this.previous = previous;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
@@ -0,0 +1,62 @@
+package com.v8tix.katix.social.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/** A successful write, as published on the event bus and sent to the feed subscribers. */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FeedEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    public static final String POST = "post";
+
+    public static final String COMMENT = "comment";
+
+    private long sequence;
+
+    private Type type;
+
+    private String entity;
+
+    private String id;
+
+    private String postId;
+
+    private long version;
+
+    private long occurredAtEpoch;
+
+    private Object data;
+
+    public FeedEvent() {
+    }
+
+    public FeedEvent(final Type type,
+                     final String entity,
+                     final String id,
+                     final String postId,
+                     final long version,
+                     final Object data) {
+        this.type = type;
+        this.entity = entity;
+        this.id = id;
+        this.postId = postId;
+        this.version = version;
+        this.data = data;
+        this.occurredAtEpoch = System.currentTimeMillis();
+    }
+
+    public static FeedEvent of(final Type type, final Post post) {
+        return new FeedEvent(type, POST, post.getId(), post.getId(), post.getVersion(),
+                type == Type.DELETED ? null : post);
+    }
+
+    public static FeedEvent of(final Type type, final Comment comment) {
+        return new FeedEvent(type, COMMENT, comment.getId(), comment.getPostId(),
+                comment.getVersion(), type == Type.DELETED ? null : comment);
+    }
+}
@@ -0,0 +1,33 @@
+package com.v8tix.katix.social.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * One edge of the follow graph. The unique index answers "who does a user follow", the other one
+ * lists the followers of an account for the timeline fan-out.
+ */
+@Data
+@Document
+@CompoundIndexes({
+        @CompoundIndex(name = "followerId_followeeId", def = "{'followerId': 1, 'followeeId': 1}", unique = true),
+        @CompoundIndex(name = "followeeId_followerId", def = "{'followeeId': 1, 'followerId': 1}")
+})
+public class Follow {
+
+    public static final String FOLLOWER_ID = "followerId";
+
+    public static final String FOLLOWEE_ID = "followeeId";
+
+    @Id
+    private String id;
+
+    private String followerId;
+
+    private String followeeId;
+
+    private long createdAtEpoch;
+}
@@ -0,0 +1,23 @@
+package com.v8tix.katix.social.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The answer to a multi-get: the items found, in the order asked for, and the ids not found. */
+@Data
+public class MultiGetResult<T> {
+
+    private List<T> items = new ArrayList<>();
+
+    private List<String> missing = new ArrayList<>();
+
+    public MultiGetResult() {
+    }
+
+    public MultiGetResult(final List<T> items, final List<String> missing) {
+        this.items = items;
+        this.missing = missing;
+    }
+}
@@ -1,30 +1,54 @@
 package com.v8tix.katix.social.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotEmpty;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import static com.v8tix.katix.social.util.DateHelper.*;
 import static com.v8tix.katix.social.util.StringHelper.toJson;
 
 @Data
 @Document
-public class Post {
+@JsonFilter(Post.FIELDS_FILTER)
+@CompoundIndexes({
+        @CompoundIndex(name = "createdAtEpoch_id", def = "{'createdAtEpoch': -1, '_id': -1}"),
+        @CompoundIndex(name = "userId_createdAtEpoch_id", def = "{'userId': 1, 'createdAtEpoch': -1, '_id': -1}")
+})
+public class Post implements Versioned {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Post.class);
 
+    public static final String FIELDS_FILTER = "postFields";
+
+    public static final String COMMENTS = "comments";
+
+    public static final String COMMENT_COUNT = "commentCount";
+
+    public static final String LATEST_COMMENTS = "latestComments";
+
+    public static final String COMMENT_REMOVAL_EPOCH = "commentRemovalEpoch";
+
     @Id
     private String id;
 
     private List<Comment> comments = new ArrayList<>();
 
+    /** The newest comments, newest first, kept up to date by LatestComments. */
+    @JsonIgnore
+    private List<Comment> latestComments = new ArrayList<>();
+
     @NotEmpty(message = "{content.not.empty}")
     private String content;
 
@@ -33,6 +57,18 @@ public class Post {
 
     private long createdAtEpoch;
 
+    private long version;
+
+    /** Kept up to date with $inc by the comment write paths, see CommentCountReconciler. */
+    private long commentCount;
+
+    /** When comments of the post were last about to be removed, see CommentCountReconciler. */
+    @JsonIgnore
+    private long commentRemovalEpoch;
+
+    @JsonIgnore
+    private String contentHash;
+
     @NotEmpty(message = "{userId.not.empty}")
     private String userId;
 
@@ -56,15 +92,34 @@ public class Post {
         this.setCreatedAtISO(post.getCreatedAtISO());
     }
 
+    public Post copy() {
+        final Post copy = new Post();
+        copy.setId(id);
+        copy.setComments(new ArrayList<>(comments));
+        copy.setLatestComments(new ArrayList<>(latestComments));
+        copy.setContent(content);
+        copy.setCreatedAtISO(createdAtISO);
+        copy.setCreatedAtEpoch(createdAtEpoch);
+        copy.setUserId(userId);
+        copy.setProfilePicture(profilePicture);
+        copy.setVersion(version);
+        copy.setCommentCount(commentCount);
+        copy.setCommentRemovalEpoch(commentRemovalEpoch);
+        copy.setContentHash(contentHash);
+        return copy;
+    }
+
     public void addComments(final List<Comment> comments) {
         this.comments = comments;
     }
 
     @Override
     public boolean equals(final Object otherObject) {
-        if (getClass() == otherObject.getClass()) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject != null && getClass() == otherObject.getClass()) {
             Post otherPost = (Post) otherObject;
-            return id.equals(otherPost.id);
+            return id != null && id.equals(otherPost.id);
         } else {
             return false;
         }
@@ -72,7 +127,7 @@ public class Post {
 
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        return Objects.hashCode(id);
     }
 
     @Override
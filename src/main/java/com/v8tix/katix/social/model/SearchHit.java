@@ -0,0 +1,33 @@
+package com.v8tix.katix.social.model;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A post found by a search, with its score and the matching fragments of its content and of its
+ * comments, the matches wrapped in {@code <em>} and the rest HTML escaped.
+ */
+@Data
+public class SearchHit {
+
+    public static final String CONTENT = "content";
+
+    public static final String COMMENTS = "comments";
+
+    private Post post;
+
+    private double score;
+
+    private Map<String, List<String>> highlights = new LinkedHashMap<>();
+
+    public SearchHit() {
+    }
+
+    public SearchHit(final Post post, final double score) {
+        this.post = post;
+        this.score = score;
+    }
+}
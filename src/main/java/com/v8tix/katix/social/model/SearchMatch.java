@@ -0,0 +1,50 @@
+package com.v8tix.katix.social.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/** A post matching a search, through its content, its comments or both. */
+@Data
+public class SearchMatch {
+
+    /** The order of the search results: by score, then the same as the posts cursors. */
+    public static final Comparator<SearchMatch> BEST_FIRST =
+            Comparator.comparingDouble(SearchMatch::getScore)
+                    .thenComparingLong(SearchMatch::getCreatedAtEpoch)
+                    .thenComparing(SearchMatch::getPostId)
+                    .reversed();
+
+    private String postId;
+
+    private long createdAtEpoch;
+
+    /** The score of the content plus the score of the best matching comment. */
+    private double score;
+
+    /** The best matching comments, best first. */
+    private List<String> commentIds = new ArrayList<>();
+
+    public SearchMatch() {
+    }
+
+    public SearchMatch(final String postId, final long createdAtEpoch, final double score) {
+        this.postId = postId;
+        this.createdAtEpoch = createdAtEpoch;
+        this.score = score;
+    }
+
+    /** Adds the comments of the post from the best match down, keeping {@code maxComments}. */
+    public void addComment(final String commentId,
+                           final double commentScore,
+                           final int maxComments) {
+        if (commentIds.isEmpty()) {
+            score += commentScore;
+        }
+        if (commentIds.size() < maxComments) {
+            commentIds.add(commentId);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.v8tix.katix.social.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The home timeline of a user, keyed by the user id: the newest posts of the accounts they follow,
+ * newest first and capped at {@code social.timeline.max_size} entries.
+ */
+@Data
+@Document
+public class Timeline {
+
+    public static final String ENTRIES = "entries";
+
+    @Id
+    private String id;
+
+    private List<TimelineEntry> entries = new ArrayList<>();
+}
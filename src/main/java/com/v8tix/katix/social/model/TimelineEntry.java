@@ -0,0 +1,40 @@
+package com.v8tix.katix.social.model;
+
+import lombok.Data;
+
+import java.util.Comparator;
+
+@Data
+public class TimelineEntry {
+
+    public static final String POST_ID = "postId";
+
+    public static final String USER_ID = "userId";
+
+    public static final String CREATED_AT_EPOCH = "createdAtEpoch";
+
+    /** The order of the timelines, the same as the posts cursors. */
+    public static final Comparator<TimelineEntry> NEWEST_FIRST =
+            Comparator.comparingLong(TimelineEntry::getCreatedAtEpoch)
+                    .thenComparing(TimelineEntry::getPostId)
+                    .reversed();
+
+    private String postId;
+
+    private String userId;
+
+    private long createdAtEpoch;
+
+    public TimelineEntry() {
+    }
+
+    public TimelineEntry(final String postId, final String userId, final long createdAtEpoch) {
+        this.postId = postId;
+        this.userId = userId;
+        this.createdAtEpoch = createdAtEpoch;
+    }
+
+    public static TimelineEntry of(final Post post) {
+        return new TimelineEntry(post.getId(), post.getUserId(), post.getCreatedAtEpoch());
+    }
+}
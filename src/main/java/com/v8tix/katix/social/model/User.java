@@ -1,25 +1,41 @@
 package com.v8tix.katix.social.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Size;
 import java.time.OffsetDateTime;
+import java.util.Objects;
 
 import static com.v8tix.katix.social.util.DateHelper.*;
 import static com.v8tix.katix.social.util.StringHelper.toJson;
 
 @Data
 @Document
-public class User {
+@JsonFilter(User.FIELDS_FILTER)
+@CompoundIndexes({
+        @CompoundIndex(name = "createdAtEpoch_id", def = "{'createdAtEpoch': -1, '_id': -1}"),
+        @CompoundIndex(name = "followerCount", def = "{'followerCount': -1}")
+})
+public class User implements Versioned {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(User.class);
 
+    public static final String FIELDS_FILTER = "userFields";
+
+    public static final String FOLLOWER_COUNT = "followerCount";
+
+    public static final String FOLLOWING_COUNT = "followingCount";
+
     @Id
     private String id;
 
@@ -47,6 +63,16 @@ public class User {
 
     private long createdAtEpoch;
 
+    private long version;
+
+    /** Kept up to date with $inc by follow and unfollow, see TimelineReactiveService. */
+    private long followerCount;
+
+    private long followingCount;
+
+    @JsonIgnore
+    private String contentHash;
+
     public User() {
     }
 
@@ -66,7 +92,6 @@ public class User {
     }
 
     public void makeCopyOf(final User user) {
-        this.setId(user.getId());
         this.setGender(user.getGender());
         this.setFirstName(user.getFirstName());
         this.setLastName(user.getLastName());
@@ -74,11 +99,26 @@ public class User {
         this.setProfilePicture(user.getProfilePicture());
     }
 
+    public User copy() {
+        final User copy = new User();
+        copy.setId(id);
+        copy.makeCopyOf(this);
+        copy.setCreatedAtISO(createdAtISO);
+        copy.setCreatedAtEpoch(createdAtEpoch);
+        copy.setVersion(version);
+        copy.setFollowerCount(followerCount);
+        copy.setFollowingCount(followingCount);
+        copy.setContentHash(contentHash);
+        return copy;
+    }
+
     @Override
     public boolean equals(final Object otherObject) {
-        if (getClass() == otherObject.getClass()) {
+        if (this == otherObject) {
+            return true;
+        } else if (otherObject != null && getClass() == otherObject.getClass()) {
             User otherUser = (User) otherObject;
-            return id.equals(otherUser.id);
+            return id != null && id.equals(otherUser.id);
         } else {
             return false;
         }
@@ -86,7 +126,7 @@ public class User {
 
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        return Objects.hashCode(id);
     }
 
     @Override
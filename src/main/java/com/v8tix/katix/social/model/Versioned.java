@@ -0,0 +1,20 @@
+package com.v8tix.katix.social.model;
+
+/**
+ * A document whose {@code version} is bumped by every write that changes its representation,
+ * including the comments embedded into a post. Documents created through the API start at 1, so
+ * version 0 marks older or seeded data that no write has versioned yet.
+ *
+ * <p>{@code contentHash} digests the fields an update may change, so that an update repeating the
+ * stored content is recognised without writing.
+ */
+public interface Versioned {
+
+    long FIRST_VERSION = 1;
+
+    String getId();
+
+    long getVersion();
+
+    String getContentHash();
+}
@@ -2,8 +2,8 @@ package com.v8tix.katix.social.repository;
 
 import com.v8tix.katix.social.model.Comment;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
-import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface CommentReactiveRepository extends ReactiveMongoRepository<Comment, String> {
-    Flux<Comment> findAllByPostIdOrderByCreatedAtEpochDesc(String postId);
+    Mono<Long> countByPostId(String postId);
 }
@@ -0,0 +1,227 @@
+package com.v8tix.katix.social.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.v8tix.katix.social.model.BulkResult;
+import com.v8tix.katix.social.model.Versioned;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.v8tix.katix.social.util.BatchHelper.batches;
+import static com.v8tix.katix.social.util.JsonHelper.readerFor;
+import static com.v8tix.katix.social.util.MessageSourceHelper.BULK_DUPLICATE_ID_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.BULK_INVALID_JSON_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Inserts an NDJSON stream of new documents. The request body is split into lines as its buffers
+ * arrive, and only as fast as the batches are written; each batch of at most {@code
+ * social.bulk.batch_size} records (or whatever arrived within {@code social.bulk.max_wait_ms}) is
+ * one unordered insertMany, and every line gets a result in the order it was sent.
+ *
+ * <p>A line that is not JSON, fails the bean validation or is rejected by the caller never reaches
+ * the database; a duplicate id fails that record alone.
+ */
+@Service
+public class BulkInsertService {
+
+  private static final String ID = "_id";
+  private static final StringDecoder LINES = StringDecoder.textPlainOnly();
+  private static final ResolvableType LINE_TYPE = ResolvableType.forClass(String.class);
+  private final ReactiveMongoOperations operations;
+  private final Validator validator;
+  private final MessageSource messageSource;
+  private final MeterRegistry meterRegistry;
+  private final int batchSize;
+  private final Duration maxWait;
+  private final int concurrency;
+  private final int checkConcurrency;
+
+  @Autowired
+  public BulkInsertService(
+      final ReactiveMongoOperations operations,
+      final @Qualifier("JSR-380-Validator") Validator validator,
+      final MessageSource messageSource,
+      final MeterRegistry meterRegistry,
+      final @Value("${social.bulk.batch_size}") int batchSize,
+      final @Value("${social.bulk.max_wait_ms}") long maxWaitMs,
+      final @Value("${social.bulk.concurrency}") int concurrency,
+      final @Value("${social.bulk.check_concurrency}") int checkConcurrency) {
+    this.operations = operations;
+    this.validator = validator;
+    this.messageSource = messageSource;
+    this.meterRegistry = meterRegistry;
+    this.batchSize = batchSize;
+    this.maxWait = Duration.ofMillis(maxWaitMs);
+    this.concurrency = concurrency;
+    this.checkConcurrency = checkConcurrency;
+  }
+
+  /**
+   * @param check emits why a valid record can't be inserted, or nothing to accept it
+   * @param prepare completes an accepted record before it is written, e.g. with its version
+   * @param afterInsert sees the records of each batch that were written
+   */
+  public <T extends Versioned> Flux<BulkResult> insert(
+      final Flux<DataBuffer> body,
+      final Class<T> entityClass,
+      final Function<T, Mono<String>> check,
+      final Consumer<T> prepare,
+      final Function<List<T>, Mono<Void>> afterInsert) {
+    final Flux<BulkRecord<T>> records =
+        LINES
+            .decode(body, LINE_TYPE, null, Collections.emptyMap())
+            .index((index, line) -> new BulkRecord<T>(index + 1, line))
+            .filter(record -> !record.line.trim().isEmpty())
+            .flatMapSequential(record -> parse(record, entityClass, check), checkConcurrency);
+    return batches(records, batchSize, maxWait)
+        .flatMapSequential(batch -> write(batch, entityClass, prepare, afterInsert), concurrency)
+        .flatMapIterable(batch -> batch)
+        .map(record -> record.result)
+        .doOnNext(result -> count(entityClass, result));
+  }
+
+  private <T extends Versioned> Mono<BulkRecord<T>> parse(
+      final BulkRecord<T> record,
+      final Class<T> entityClass,
+      final Function<T, Mono<String>> check) {
+    try {
+      record.entity = readerFor(entityClass).readValue(record.line);
+      record.id = record.entity.getId();
+    } catch (JsonProcessingException e) {
+      return Mono.just(invalidJson(record, e.getOriginalMessage()));
+    } catch (IOException e) {
+      return Mono.just(invalidJson(record, e.getMessage()));
+    }
+    final Set<ConstraintViolation<T>> violations = validator.validate(record.entity);
+    if (!violations.isEmpty()) {
+      final String errors =
+          violations.stream().map(ConstraintViolation::getMessage).sorted().collect(joining(","));
+      return Mono.just(record.reject(HttpStatus.BAD_REQUEST, errors));
+    }
+    return check
+        .apply(record.entity)
+        .map(error -> record.reject(HttpStatus.UNPROCESSABLE_ENTITY, error))
+        .defaultIfEmpty(record);
+  }
+
+  private <T extends Versioned> BulkRecord<T> invalidJson(
+      final BulkRecord<T> record, final String error) {
+    final String message = getMessage(messageSource, BULK_INVALID_JSON_ERROR_MSG, null);
+    return record.reject(HttpStatus.BAD_REQUEST, String.format(message, error));
+  }
+
+  private <T extends Versioned> Mono<List<BulkRecord<T>>> write(
+      final List<BulkRecord<T>> batch,
+      final Class<T> entityClass,
+      final Consumer<T> prepare,
+      final Function<List<T>, Mono<Void>> afterInsert) {
+    final List<BulkRecord<T>> accepted = new ArrayList<>();
+    final List<Document> documents = new ArrayList<>();
+    for (BulkRecord<T> record : batch) {
+      if (record.result == null) {
+        prepare.accept(record.entity);
+        final Document document = new Document();
+        operations.getConverter().write(record.entity, document);
+        // Known before the write, so that every result carries its id.
+        if (!document.containsKey(ID)) {
+          document.put(ID, new ObjectId());
+        }
+        record.id = document.get(ID).toString();
+        accepted.add(record);
+        documents.add(document);
+      }
+    }
+    if (documents.isEmpty()) {
+      return Mono.just(batch);
+    }
+    return Mono.from(
+            operations
+                .getCollection(operations.getCollectionName(entityClass))
+                .insertMany(documents, new InsertManyOptions().ordered(false)))
+        .map(success -> Collections.<BulkWriteError>emptyList())
+        .onErrorResume(MongoBulkWriteException.class, e -> Mono.just(e.getWriteErrors()))
+        .flatMap(
+            writeErrors -> {
+              writeErrors.forEach(
+                  writeError -> accepted.get(writeError.getIndex()).fail(writeError));
+              final List<T> inserted =
+                  accepted.stream()
+                      .filter(record -> record.result == null)
+                      .map(BulkRecord::accept)
+                      .collect(toList());
+              return afterInsert.apply(inserted).thenReturn(batch);
+            });
+  }
+
+  private void count(final Class<?> entityClass, final BulkResult result) {
+    Counter.builder("social.bulk.records")
+        .description("Records received by the bulk endpoints, by outcome")
+        .tag("collection", operations.getCollectionName(entityClass))
+        .tag("status", Integer.toString(result.getStatus()))
+        .register(meterRegistry)
+        .increment();
+  }
+
+  private final class BulkRecord<T extends Versioned> {
+
+    private final long number;
+    private final String line;
+    private T entity;
+    private String id;
+    private BulkResult result;
+
+    private BulkRecord(final long number, final String line) {
+      this.number = number;
+      this.line = line;
+    }
+
+    private BulkRecord<T> reject(final HttpStatus status, final String error) {
+      result = new BulkResult(number, id, status.value(), error);
+      return this;
+    }
+
+    private void fail(final BulkWriteError writeError) {
+      if (ErrorCategory.fromErrorCode(writeError.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+        reject(HttpStatus.CONFLICT, getMessage(messageSource, BULK_DUPLICATE_ID_ERROR_MSG, null));
+      } else {
+        reject(HttpStatus.INTERNAL_SERVER_ERROR, writeError.getMessage());
+      }
+    }
+
+    private T accept() {
+      result = new BulkResult(number, id, HttpStatus.CREATED.value(), null);
+      return entity;
+    }
+  }
+}
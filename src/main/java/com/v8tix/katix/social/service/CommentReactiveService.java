@@ -1,55 +1,112 @@
 package com.v8tix.katix.social.service;
 
+import com.v8tix.katix.social.component.EntityCache;
+import com.v8tix.katix.social.component.EventBus;
+import com.v8tix.katix.social.component.LatestComments;
+import com.v8tix.katix.social.component.SearchIndex;
 import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.BulkResult;
 import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.model.FeedEvent;
+import com.v8tix.katix.social.model.MultiGetResult;
 import com.v8tix.katix.social.model.Post;
 import com.v8tix.katix.social.model.User;
 import com.v8tix.katix.social.repository.CommentReactiveRepository;
 import com.v8tix.katix.social.util.BeanValidationHelper;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.v8tix.katix.social.util.FieldsHelper;
+import com.v8tix.katix.social.util.MultiGetHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.function.Tuple2;
 
 import javax.validation.Validator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
+import static com.v8tix.katix.social.model.Versioned.FIRST_VERSION;
+import static com.v8tix.katix.social.model.FeedEvent.Type.CREATED;
+import static com.v8tix.katix.social.model.FeedEvent.Type.DELETED;
+import static com.v8tix.katix.social.model.FeedEvent.Type.UPDATED;
+import static com.v8tix.katix.social.util.MessageSourceHelper.BULK_REFERENCE_ERROR_MSG;
 import static com.v8tix.katix.social.util.MessageSourceHelper.POST_ID_NOT_EQUALS_ERROR_MSG;
 import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+import static com.v8tix.katix.social.service.VersionedUpdateService.VERSION;
+import static com.v8tix.katix.social.util.CursorHelper.CREATED_AT_EPOCH;
+import static com.v8tix.katix.social.util.CursorHelper.ID;
+import static com.v8tix.katix.social.util.CursorHelper.createCursorPage;
+import static com.v8tix.katix.social.util.CursorHelper.encodeCursor;
+import static com.v8tix.katix.social.util.CursorHelper.getCursorQuery;
+import static com.v8tix.katix.social.util.CursorHelper.getPageQuery;
+import static com.v8tix.katix.social.util.HashHelper.md5Hex;
+import static com.v8tix.katix.social.util.MultiGetHelper.inRequestedOrder;
+import static com.v8tix.katix.social.util.MultiGetHelper.parseIds;
+import static com.v8tix.katix.social.util.PaginationValidationHelper.validateCursorParameters;
 import static com.v8tix.katix.social.util.PaginationValidationHelper.validatePaginationParameters;
-import static com.v8tix.katix.social.util.RestHelper.getByIdRequest;
+import static java.util.stream.Collectors.groupingBy;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 @Service
 public class CommentReactiveService implements BeanValidationHelper<Comment> {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(CommentReactiveService.class);
+  private static final String POST_ID = "postId";
+  private static final String USER_ID = "userId";
   private final CommentReactiveRepository commentReactiveRepository;
+  private final ReactiveMongoOperations operations;
   private final MessageSource messageSource;
   private final Validator validator;
-  private final WebClient webClient;
+  private final ExistenceReactiveService existenceReactiveService;
+  private final EntityCache<Post> postCache;
+  private final VersionedUpdateService versionedUpdateService;
+  private final BulkInsertService bulkInsertService;
+  private final ExportService exportService;
+  private final EventBus eventBus;
+  private final LatestComments latestComments;
+  private final SearchIndex searchIndex;
 
-  @Value("${rest.posts.domain_path}")
-  private String domainPostsPath;
+  @Value("${social.listing.max_per_page}")
+  private long maxPerPage;
 
-  @Value("${rest.users.domain_path}")
-  private String domainUsersPath;
+  @Value("${social.multi_get.max_ids}")
+  private int maxIds;
 
   @Autowired
   public CommentReactiveService(
       final CommentReactiveRepository commentReactiveRepository,
+      final ReactiveMongoOperations operations,
       final @Qualifier("JSR-380-Validator") Validator validator,
       final MessageSource messageSource,
-      final WebClient webClient) {
+      final ExistenceReactiveService existenceReactiveService,
+      final EntityCache<Post> postCache,
+      final VersionedUpdateService versionedUpdateService,
+      final BulkInsertService bulkInsertService,
+      final ExportService exportService,
+      final EventBus eventBus,
+      final LatestComments latestComments,
+      final SearchIndex searchIndex) {
     this.commentReactiveRepository = commentReactiveRepository;
+    this.operations = operations;
     this.messageSource = messageSource;
     this.validator = validator;
-    this.webClient = webClient;
+    this.existenceReactiveService = existenceReactiveService;
+    this.postCache = postCache;
+    this.versionedUpdateService = versionedUpdateService;
+    this.bulkInsertService = bulkInsertService;
+    this.exportService = exportService;
+    this.eventBus = eventBus;
+    this.latestComments = latestComments;
+    this.searchIndex = searchIndex;
   }
 
   private Mono<Comment> findCommentById(final String commentId) {
@@ -57,90 +114,260 @@ public class CommentReactiveService implements BeanValidationHelper<Comment> {
   }
 
   public Mono<Comment> findById(final String postId, final String commentId) {
-    return validatePostAndComment(postId, commentId).map(objects -> (Comment) objects.getT2());
+    return validatePostAndComment(postId, commentId);
   }
 
-  public Flux<Comment> findAllByPostId(final long page, final long perPage, final String postId) {
+  /** Reads only {@code fields}, see {@link FieldsHelper}. */
+  public Flux<Comment> findAllByPostId(
+      final long page, final long perPage, final String postId, final Set<String> fields) {
     validatePaginationParameters(page, perPage, messageSource, null);
-    return findAllCommentsByPostIdOrderByCreatedAtEpochDesc(postId)
-        .skip(perPage * (page - 1))
-        .take(perPage);
+    final Query query = getPageQuery(where(POST_ID).is(postId), page, perPage);
+    return operations.find(project(query, fields), Comment.class);
   }
 
-  public Mono<Long> getNumberOfComments(final String postId) {
-    return findAllCommentsByPostIdOrderByCreatedAtEpochDesc(postId)
+  public Mono<CursorPage<Comment>> findAllByPostIdCursor(
+      final long perPage,
+      final String after,
+      final String before,
+      final String postId,
+      final Set<String> fields) {
+    validateCursorParameters(perPage, maxPerPage, after, before, messageSource, null);
+    final Query query =
+        getCursorQuery(where(POST_ID).is(postId), perPage, after, before, messageSource);
+    return operations
+        .find(project(query, fields), Comment.class)
+        .collectList()
+        .map(
+            comments ->
+                createCursorPage(
+                    comments, perPage, after, before, CommentReactiveService::cursorOf));
+  }
+
+  /** The comments of the user on every post, newest first, see {@link PostReactiveService}. */
+  public Mono<CursorPage<Comment>> findAllByUserIdCursor(
+      final String userId,
+      final long perPage,
+      final String after,
+      final String before,
+      final Set<String> fields) {
+    validateCursorParameters(perPage, maxPerPage, after, before, messageSource, null);
+    final Query query =
+        getCursorQuery(where(USER_ID).is(userId), perPage, after, before, messageSource);
+    return existenceReactiveService
+        .exists(User.class, userId)
+        .filter(exists -> exists)
+        .flatMap(exists -> operations.find(project(query, fields), Comment.class).collectList())
+        .map(
+            comments ->
+                createCursorPage(
+                    comments, perPage, after, before, CommentReactiveService::cursorOf));
+  }
+
+  /**
+   * The comments of the post with the ids, in the order asked for, see {@link MultiGetHelper}. The
+   * comments of other posts are reported missing.
+   */
+  public Mono<MultiGetResult<Comment>> findAllByIds(
+      final String postId, final String ids, final Set<String> fields) {
+    final List<String> idList = parseIds(ids, maxIds, messageSource);
+    final Query byIds = query(where(ID).in(idList).and(POST_ID).is(postId));
+    return operations
+        .find(project(byIds, fields), Comment.class)
         .collectList()
-        .map(list -> (long) list.size());
+        .map(comments -> inRequestedOrder(idList, comments));
+  }
+
+  private static Query project(final Query query, final Set<String> fields) {
+    return FieldsHelper.project(query, fields, ID, VERSION, CREATED_AT_EPOCH);
+  }
+
+  private static String cursorOf(final Comment comment) {
+    return encodeCursor(comment.getCreatedAtEpoch(), comment.getId());
   }
 
-  private Flux<Comment> findAllCommentsByPostIdOrderByCreatedAtEpochDesc(String postId) {
-    return commentReactiveRepository.findAllByPostIdOrderByCreatedAtEpochDesc(postId);
+  /** The count kept on the post, read through the post cache rather than counted. */
+  public Mono<Long> getNumberOfComments(final String postId) {
+    return postCache
+        .get(postId, id -> operations.findById(id, Post.class))
+        .map(Post::getCommentCount)
+        .defaultIfEmpty(0L);
   }
 
+  /**
+   * Always creates a comment, like the bulk path: an id in the body is dropped, so a stored comment
+   * is only ever replaced, or moved to another post, through {@link #update}.
+   */
   private Mono<Comment> save(final Comment comment) throws BeanValidationException {
-    return commentReactiveRepository.save(comment);
+    comment.setId(null);
+    prepareNew(comment);
+    return commentReactiveRepository
+        .insert(comment)
+        .flatMap(
+            savedComment ->
+                latestComments
+                    .add(savedComment.getPostId(), Collections.singletonList(savedComment))
+                    .thenReturn(savedComment))
+        .doOnSuccess(
+            savedComment -> {
+              if (savedComment != null) {
+                searchIndex.addComments(Collections.singletonList(savedComment));
+              }
+              publish(CREATED, savedComment);
+            });
   }
 
   public Mono<Comment> save(final String postId, final Comment comment) {
+    return validatePostAndUser(postId, comment).flatMap(this::save);
+  }
+
+  /**
+   * Inserts the new comments of an NDJSON stream, see {@link BulkInsertService}. Like {@link
+   * #save(String, Comment)}, every comment must belong to {@code postId} and to an existing user.
+   */
+  public Flux<BulkResult> bulkSave(final String postId, final Flux<DataBuffer> body) {
+    return bulkInsertService.insert(
+        body,
+        Comment.class,
+        comment -> checkReferences(postId, comment),
+        this::prepareNew,
+        inserted -> {
+          searchIndex.addComments(inserted);
+          return Flux.fromIterable(
+                  inserted.stream().collect(groupingBy(Comment::getPostId)).entrySet())
+              .flatMap(comments -> latestComments.add(comments.getKey(), comments.getValue()))
+              .then();
+        });
+  }
+
+  public Flux<Comment> export(final String postId, final String after) {
+    return exportService.export(Comment.class, where(POST_ID).is(postId), after);
+  }
+
+  private Mono<String> checkReferences(final String postId, final Comment comment) {
+    if (!postId.equals(comment.getPostId())) {
+      return Mono.just(getMessage(messageSource, POST_ID_NOT_EQUALS_ERROR_MSG, null));
+    }
+    return existenceReactiveService
+        .exists(Post.class, postId)
+        .zipWith(existenceReactiveService.exists(User.class, comment.getUserId()))
+        .filter(exists -> !exists.getT1() || !exists.getT2())
+        .map(exists -> getMessage(messageSource, BULK_REFERENCE_ERROR_MSG, null));
+  }
+
+  private void prepareNew(final Comment comment) {
+    comment.setVersion(FIRST_VERSION);
+    comment.setContentHash(contentHashOf(comment));
+  }
+
+  public Mono<Comment> update(
+      final String postId, final String commentId, final Comment comment, final String ifMatch)
+      throws BeanValidationException {
+    final String contentHash = contentHashOf(comment);
+    // A comment moved to the post leaves another one, marked alongside the validation.
     return validatePostAndUser(postId, comment)
+        .zipWith(beforeRemove(commentId, postId).thenReturn(true))
+        .flatMap(
+            validated ->
+                versionedUpdateService.update(
+                    Comment.class,
+                    commentId,
+                    comment.getVersion(),
+                    ifMatch,
+                    contentHash,
+                    mutableFieldsOf(comment)))
         .flatMap(
-            objects -> {
-              final Post post = (Post) objects.getT1();
-              final User user = (User) objects.getT2();
-              LOGGER.info("save Post id: " + post.getId());
-              LOGGER.info("save User id: " + user.getId());
-              return save(comment);
+            storedComment -> {
+              if (contentHash.equals(storedComment.getContentHash())) {
+                return Mono.just(storedComment);
+              }
+              final String previousPostId = storedComment.getPostId();
+              storedComment.makeCopyOf(comment);
+              storedComment.setContentHash(contentHash);
+              storedComment.setVersion(storedComment.getVersion() + 1);
+              searchIndex.addComments(Collections.singletonList(storedComment));
+              publish(UPDATED, storedComment);
+              if (previousPostId.equals(comment.getPostId())) {
+                return latestComments.rebuild(previousPostId, 0).thenReturn(storedComment);
+              }
+              // Gone from the feed of the post it was moved out of.
+              eventBus.publish(
+                  new FeedEvent(
+                      DELETED,
+                      FeedEvent.COMMENT,
+                      commentId,
+                      previousPostId,
+                      storedComment.getVersion(),
+                      null));
+              return latestComments
+                  .rebuild(previousPostId, -1)
+                  .then(latestComments.rebuild(comment.getPostId(), 1))
+                  .thenReturn(storedComment);
             });
   }
 
-  public Mono<Comment> update(final String postId, final String commentId, final Comment comment)
-      throws BeanValidationException {
-    final Mono<Tuple2<Object, Object>> tuplePostUserMono = validatePostAndUser(postId, comment);
-    final Mono<Comment> commentMono = commentReactiveRepository.findById(commentId);
-    return tuplePostUserMono
-        .zipWith(commentMono)
+  private static String contentHashOf(final Comment comment) {
+    return md5Hex(
+        comment.getUserId(), comment.getPostId(), comment.getContent(), comment.getCreatedAtISO());
+  }
+
+  // The fields copied by Comment.makeCopyOf.
+  private static Update mutableFieldsOf(final Comment comment) {
+    return new Update()
+        .set("userId", comment.getUserId())
+        .set(POST_ID, comment.getPostId())
+        .set("content", comment.getContent())
+        .set("createdAtISO", comment.getCreatedAtISO());
+  }
+
+  public Mono<Comment> delete(final String id, final String ifMatch) {
+    return beforeRemove(id, null)
+        .then(versionedUpdateService.delete(Comment.class, id, ifMatch))
         .flatMap(
-            objects -> {
-              final Comment existingComment = objects.getT2();
-              existingComment.makeCopyOf(comment);
-              return commentReactiveRepository.save(existingComment);
+            comment -> {
+              searchIndex.removeComments(Collections.singletonList(id));
+              publish(DELETED, comment);
+              return latestComments.rebuild(comment.getPostId(), -1).thenReturn(comment);
             });
   }
 
-  public Mono<Comment> delete(final String id) {
-    return commentReactiveRepository
-        .findById(id)
-        .map(
-            user -> {
-              commentReactiveRepository.delete(user).subscribe();
-              return user;
-            });
+  /** Marks the post the comment is about to leave, unless that is {@code keptPostId}. */
+  private Mono<Void> beforeRemove(final String commentId, final String keptPostId) {
+    final Query comment = query(where(ID).is(commentId));
+    comment.fields().include(POST_ID);
+    return operations
+        .findOne(comment, Comment.class)
+        .map(Comment::getPostId)
+        .filter(postId -> !postId.equals(keptPostId))
+        .flatMap(postId -> latestComments.beforeRemove(Collections.singletonList(postId)));
+  }
+
+  private void publish(final FeedEvent.Type type, final Comment comment) {
+    if (comment != null) {
+      eventBus.publish(FeedEvent.of(type, comment));
+    }
   }
 
-  private Mono<Tuple2<Object, Object>> validatePostAndUser(
-      final String postId, final Comment comment) {
+  private Mono<Comment> validatePostAndUser(final String postId, final Comment comment) {
     validate(validator, comment);
     if (!postId.equals(comment.getPostId())) {
       throw new BeanValidationException(
           getMessage(messageSource, POST_ID_NOT_EQUALS_ERROR_MSG, null));
     }
-    final Mono<Object> postMono = fetchPostById(postId);
-    final Mono<Object> userMono = fetchUserById(comment.getUserId());
-    return postMono.zipWith(userMono);
+    final Mono<Boolean> postExistsMono = existenceReactiveService.exists(Post.class, postId);
+    final Mono<Boolean> userExistsMono =
+        existenceReactiveService.exists(User.class, comment.getUserId());
+    return postExistsMono
+        .zipWith(userExistsMono)
+        .filter(exists -> exists.getT1() && exists.getT2())
+        .map(exists -> comment);
   }
 
-  private Mono<Tuple2<Object, Object>> validatePostAndComment(
-      final String postId, final String commentId) {
-    final Mono<Object> postMono = fetchPostById(postId);
+  private Mono<Comment> validatePostAndComment(final String postId, final String commentId) {
+    final Mono<Boolean> postExistsMono = existenceReactiveService.exists(Post.class, postId);
     final Mono<Comment> commentMono = findCommentById(commentId);
-    return postMono.zipWith(commentMono);
-  }
-
-  private Mono<Object> fetchPostById(final String postId) {
-    return getByIdRequest(webClient, domainPostsPath, postId, Post.class);
-  }
-
-  private Mono<Object> fetchUserById(final String userId) {
-    return getByIdRequest(webClient, domainUsersPath, userId, User.class);
+    return postExistsMono
+        .zipWith(commentMono)
+        .filter(Tuple2::getT1)
+        .map(Tuple2::getT2);
   }
 }
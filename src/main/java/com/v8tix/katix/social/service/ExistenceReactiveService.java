@@ -0,0 +1,83 @@
+package com.v8tix.katix.social.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.v8tix.katix.social.util.StringHelper.COLON;
+import static com.v8tix.katix.social.util.StringHelper.concatStrings;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Referential checks for the write paths. Ids found by an {@code _id}-only lookup are remembered
+ * for {@code social.existence.ttl_ms}; missing ids are never cached so a document created in the
+ * meantime is seen straight away.
+ *
+ * <p>An evicted id is also remembered as deleted for {@code social.existence.ttl_ms}, so that a
+ * lookup still in flight when the document is deleted does not cache it as existing again.
+ */
+@Service
+public class ExistenceReactiveService {
+
+  private static final String ID = "id";
+  private final ReactiveMongoOperations operations;
+  private final Cache<String, Boolean> existingIds;
+  private final Cache<String, Boolean> deletedIds;
+
+  @Autowired
+  public ExistenceReactiveService(
+      final ReactiveMongoOperations operations,
+      final @Value("${social.existence.ttl_ms}") long ttlMs,
+      final @Value("${social.existence.max_size}") long maxSize) {
+    this.operations = operations;
+    this.existingIds =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+            .build();
+    this.deletedIds =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
+  public Mono<Boolean> exists(final Class<?> entityClass, final String id) {
+    if (id == null) {
+      return Mono.just(false);
+    }
+    final String key = key(entityClass, id);
+    if (existingIds.getIfPresent(key) != null) {
+      return Mono.just(true);
+    }
+    return operations
+        .exists(query(where(ID).is(id)), entityClass)
+        .doOnNext(
+            exists -> {
+              if (exists) {
+                existingIds.put(key, true);
+                // Checked after the put, as evict marks before it invalidates.
+                if (deletedIds.getIfPresent(key) != null) {
+                  existingIds.invalidate(key);
+                }
+              }
+            });
+  }
+
+  public void evict(final Class<?> entityClass, final String id) {
+    final String key = key(entityClass, id);
+    deletedIds.put(key, true);
+    existingIds.invalidate(key);
+  }
+
+  private String key(final Class<?> entityClass, final String id) {
+    return concatStrings(COLON, operations.getCollectionName(entityClass), id);
+  }
+}
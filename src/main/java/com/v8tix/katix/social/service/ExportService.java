@@ -0,0 +1,58 @@
+package com.v8tix.katix.social.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import static com.v8tix.katix.social.util.CursorHelper.CREATED_AT_EPOCH;
+import static com.v8tix.katix.social.util.CursorHelper.ID;
+import static com.v8tix.katix.social.util.CursorHelper.OLDEST_FIRST;
+import static com.v8tix.katix.social.util.CursorHelper.parsePosition;
+import static com.v8tix.katix.social.util.StoredIdHelper.storedId;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Streams a whole collection, oldest first, from a single cursor that fetches {@code
+ * social.export.batch_size} documents per round trip and only as fast as they are written out, so
+ * an export holds at most a batch in memory whatever the size of the collection.
+ *
+ * <p>The order follows the {@code createdAtEpoch, _id} indexes. An interrupted export continues
+ * with {@code after=createdAtEpoch:id} of the last document received; documents created meanwhile
+ * come after it.
+ */
+@Service
+public class ExportService {
+
+  private final ReactiveMongoOperations operations;
+  private final MessageSource messageSource;
+  private final int batchSize;
+
+  @Autowired
+  public ExportService(
+      final ReactiveMongoOperations operations,
+      final MessageSource messageSource,
+      final @Value("${social.export.batch_size}") int batchSize) {
+    this.operations = operations;
+    this.messageSource = messageSource;
+    this.batchSize = batchSize;
+  }
+
+  /** The position is checked before anything is streamed, so a bad one is still a 400. */
+  public <T> Flux<T> export(final Class<T> entityClass, final Criteria filter, final String after) {
+    final Criteria criteria = filter != null ? filter : new Criteria();
+    if (after != null) {
+      final String[] position = parsePosition(after, messageSource, null);
+      final long createdAtEpoch = Long.parseLong(position[0]);
+      criteria.orOperator(
+          where(CREATED_AT_EPOCH).gt(createdAtEpoch),
+          where(CREATED_AT_EPOCH).is(createdAtEpoch).and(ID).gt(storedId(position[1])));
+    }
+    return operations.find(
+        query(criteria).with(OLDEST_FIRST).cursorBatchSize(batchSize), entityClass);
+  }
+}
@@ -0,0 +1,86 @@
+package com.v8tix.katix.social.service;
+
+import com.v8tix.katix.social.component.EventBus;
+import com.v8tix.katix.social.exception.TooManyClientsException;
+import com.v8tix.katix.social.model.FeedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static com.v8tix.katix.social.model.FeedEvent.COMMENT;
+import static com.v8tix.katix.social.model.FeedEvent.POST;
+import static com.v8tix.katix.social.util.MessageSourceHelper.FEED_CLIENTS_LIMIT_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+
+/**
+ * The live feeds, as Server-Sent Events named after the entity and the change, e.g. {@code
+ * post.created}, with the bus sequence as their id. A keep-alive comment is sent every {@code
+ * social.feed.heartbeat_ms} so that idle connections are not closed by proxies.
+ */
+@Service
+public class FeedReactiveService {
+
+  private static final String HEARTBEAT = "heartbeat";
+  private final EventBus eventBus;
+  private final MessageSource messageSource;
+  private final int maxClients;
+  private final Duration heartbeat;
+  private final AtomicInteger clients = new AtomicInteger();
+
+  @Autowired
+  public FeedReactiveService(
+      final EventBus eventBus,
+      final MessageSource messageSource,
+      final MeterRegistry meterRegistry,
+      final @Value("${social.feed.max_clients}") int maxClients,
+      final @Value("${social.feed.heartbeat_ms}") long heartbeatMs) {
+    this.eventBus = eventBus;
+    this.messageSource = messageSource;
+    this.maxClients = maxClients;
+    this.heartbeat = Duration.ofMillis(heartbeatMs);
+    Gauge.builder("social.feed.clients", clients, AtomicInteger::get)
+        .description("Open live feed connections")
+        .register(meterRegistry);
+  }
+
+  public Flux<ServerSentEvent<FeedEvent>> posts() {
+    return feed(event -> POST.equals(event.getEntity()));
+  }
+
+  public Flux<ServerSentEvent<FeedEvent>> comments(final String postId) {
+    return feed(event -> COMMENT.equals(event.getEntity()) && postId.equals(event.getPostId()));
+  }
+
+  // The slot is taken before the response is committed, so that a refused client gets a 503.
+  private Flux<ServerSentEvent<FeedEvent>> feed(final Predicate<FeedEvent> filter) {
+    if (clients.incrementAndGet() > maxClients) {
+      clients.decrementAndGet();
+      throw new TooManyClientsException(
+          getMessage(messageSource, FEED_CLIENTS_LIMIT_ERROR_MSG, null));
+    }
+    final Flux<ServerSentEvent<FeedEvent>> events =
+        eventBus.events(filter).map(FeedReactiveService::toServerSentEvent);
+    final Flux<ServerSentEvent<FeedEvent>> heartbeats =
+        Flux.interval(heartbeat)
+            .onBackpressureDrop()
+            .map(tick -> ServerSentEvent.<FeedEvent>builder().comment(HEARTBEAT).build());
+    return Flux.merge(events, heartbeats).doFinally(signal -> clients.decrementAndGet());
+  }
+
+  private static ServerSentEvent<FeedEvent> toServerSentEvent(final FeedEvent event) {
+    return ServerSentEvent.builder(event)
+        .id(Long.toString(event.getSequence()))
+        .event(event.getEntity() + "." + event.getType().name().toLowerCase(Locale.ROOT))
+        .build();
+  }
+}
@@ -1,14 +1,30 @@
 package com.v8tix.katix.social.service;
 
+import com.v8tix.katix.social.component.CascadeDeleteJob;
+import com.v8tix.katix.social.component.CounterCache;
+import com.v8tix.katix.social.component.EntityCache;
+import com.v8tix.katix.social.component.EventBus;
+import com.v8tix.katix.social.component.SearchIndex;
 import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.BulkResult;
 import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.model.FeedEvent;
+import com.v8tix.katix.social.model.MultiGetResult;
 import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.User;
 import com.v8tix.katix.social.repository.PostReactiveRepository;
 import com.v8tix.katix.social.util.BeanValidationHelper;
+import com.v8tix.katix.social.util.FieldsHelper;
+import com.v8tix.katix.social.util.MultiGetHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -17,100 +33,307 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
 import javax.validation.Validator;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
+import static com.v8tix.katix.social.configuration.MetricsConfig.WEB_CLIENT_OPERATION;
+import static com.v8tix.katix.social.model.CascadeTask.Type.POST_COMMENTS;
+import static com.v8tix.katix.social.model.FeedEvent.Type.CREATED;
+import static com.v8tix.katix.social.model.FeedEvent.Type.DELETED;
+import static com.v8tix.katix.social.model.FeedEvent.Type.UPDATED;
+import static com.v8tix.katix.social.model.Post.LATEST_COMMENTS;
+import static com.v8tix.katix.social.model.Versioned.FIRST_VERSION;
+import static com.v8tix.katix.social.service.VersionedUpdateService.VERSION;
+import static com.v8tix.katix.social.util.CursorHelper.CREATED_AT_EPOCH;
+import static com.v8tix.katix.social.util.CursorHelper.ID;
+import static com.v8tix.katix.social.util.CursorHelper.createCursorPage;
+import static com.v8tix.katix.social.util.CursorHelper.encodeCursor;
+import static com.v8tix.katix.social.util.CursorHelper.getCursorQuery;
+import static com.v8tix.katix.social.util.CursorHelper.getPageQuery;
+import static com.v8tix.katix.social.util.HashHelper.md5Hex;
+import static com.v8tix.katix.social.util.MultiGetHelper.inRequestedOrder;
+import static com.v8tix.katix.social.util.MultiGetHelper.parseIds;
+import static com.v8tix.katix.social.util.PaginationValidationHelper.validateCursorParameters;
 import static com.v8tix.katix.social.util.PaginationValidationHelper.validatePaginationParameters;
 import static com.v8tix.katix.social.util.RestHelper.EMBED_COMMENTS;
 import static com.v8tix.katix.social.util.RestHelper.createPageablePath;
 import static java.lang.String.format;
-import static java.util.Comparator.comparing;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
 
 @Service
 public class PostReactiveService implements BeanValidationHelper<Post> {
 
   private static final int COMMENTS_PAGE = 1;
-  private static final int COMMENTS_PER_PAGE = 5;
+  private static final String HTTP_EMBED_MODE = "http";
+  private static final String USER_ID = "userId";
   private final PostReactiveRepository postReactiveRepository;
+  private final ReactiveMongoOperations operations;
+  private final CommentReactiveService commentReactiveService;
   private final MessageSource messageSource;
   private final WebClient webClient;
   private final Validator validator;
+  private final CounterCache counterCache;
+  private final ExistenceReactiveService existenceReactiveService;
+  private final EntityCache<Post> postCache;
+  private final VersionedUpdateService versionedUpdateService;
+  private final CascadeDeleteJob cascadeDeleteJob;
+  private final BulkInsertService bulkInsertService;
+  private final ExportService exportService;
+  private final EventBus eventBus;
+  private final TimelineReactiveService timelineReactiveService;
+  private final SearchIndex searchIndex;
 
   @Value("${rest.comments.domain_path}")
   private String domainCommentsPath;
 
+  @Value("${social.embed.mode}")
+  private String embedMode;
+
+  @Value("${social.embed.preview_size}")
+  private int previewSize;
+
+  @Value("${social.listing.max_per_page}")
+  private long maxPerPage;
+
+  @Value("${social.multi_get.max_ids}")
+  private int maxIds;
+
   @Autowired
   public PostReactiveService(
       final PostReactiveRepository postReactiveRepository,
+      final ReactiveMongoOperations operations,
+      final CommentReactiveService commentReactiveService,
       final @Qualifier("JSR-380-Validator") Validator validator,
       final MessageSource messageSource,
-      final WebClient webClient) {
+      final WebClient webClient,
+      final CounterCache counterCache,
+      final ExistenceReactiveService existenceReactiveService,
+      final EntityCache<Post> postCache,
+      final VersionedUpdateService versionedUpdateService,
+      final CascadeDeleteJob cascadeDeleteJob,
+      final BulkInsertService bulkInsertService,
+      final ExportService exportService,
+      final EventBus eventBus,
+      final TimelineReactiveService timelineReactiveService,
+      final SearchIndex searchIndex) {
     this.postReactiveRepository = postReactiveRepository;
+    this.operations = operations;
+    this.commentReactiveService = commentReactiveService;
     this.messageSource = messageSource;
     this.validator = validator;
     this.webClient = webClient;
+    this.counterCache = counterCache;
+    this.existenceReactiveService = existenceReactiveService;
+    this.postCache = postCache;
+    this.versionedUpdateService = versionedUpdateService;
+    this.cascadeDeleteJob = cascadeDeleteJob;
+    this.bulkInsertService = bulkInsertService;
+    this.exportService = exportService;
+    this.eventBus = eventBus;
+    this.timelineReactiveService = timelineReactiveService;
+    this.searchIndex = searchIndex;
   }
 
   public Mono<Long> getNumberOfPosts() {
-    return postReactiveRepository.findAll().collectList().map(list -> (long) list.size());
+    return counterCache.getCollectionCount(Post.class);
   }
 
+  /** Reads only {@code fields}, plus the preview when it is embedded, see {@link FieldsHelper}. */
   public Flux<Post> findAllPageable(
-      final long page, final long perPage, final String embedParameter) {
+      final long page, final long perPage, final Set<String> fields, final String embed) {
     validatePaginationParameters(page, perPage, messageSource, null);
-    return embedComments(embedParameter, page, perPage);
+    return operations.find(project(getPageQuery(null, page, perPage), fields, embed), Post.class);
   }
 
-  private Flux<Post> getPageablePosts(long page, long perPage) {
-    return postReactiveRepository
-        .findByOrderByCreatedAtEpochDesc()
-        .skip(perPage * (page - 1))
-        .take(perPage);
-  }
-
-  private Flux<Post> embedComments(
-      final String embedParameter, final long page, final long perPage) {
-    if (embedParameter != null && embedParameter.equals(EMBED_COMMENTS)) {
-      return getPageablePosts(page, perPage)
-          .flatMap(
-              post ->
-                  Mono.just(post).flatMap(this::zipPostComments).subscribeOn(Schedulers.parallel()))
-          .sort(comparing(Post::getCreatedAtEpoch).reversed());
-    } else {
-      return getPageablePosts(page, perPage).sort(comparing(Post::getCreatedAtEpoch).reversed());
+  public Mono<CursorPage<Post>> findAllByCursor(
+      final long perPage,
+      final String after,
+      final String before,
+      final Set<String> fields,
+      final String embed) {
+    validateCursorParameters(perPage, maxPerPage, after, before, messageSource, null);
+    final Query query = getCursorQuery(null, perPage, after, before, messageSource);
+    return operations
+        .find(project(query, fields, embed), Post.class)
+        .collectList()
+        .map(posts -> createCursorPage(posts, perPage, after, before, PostReactiveService::cursorOf));
+  }
+
+  /**
+   * The posts of the user, newest first, or nothing when the user does not exist. Cursor only and
+   * capped at {@code social.listing.max_per_page}, so every page is one range scan of the userId
+   * index whatever the length of the history.
+   */
+  public Mono<CursorPage<Post>> findAllByUserIdCursor(
+      final String userId,
+      final long perPage,
+      final String after,
+      final String before,
+      final Set<String> fields) {
+    validateCursorParameters(perPage, maxPerPage, after, before, messageSource, null);
+    final Query query =
+        getCursorQuery(where(USER_ID).is(userId), perPage, after, before, messageSource);
+    return existenceReactiveService
+        .exists(User.class, userId)
+        .filter(exists -> exists)
+        .flatMap(exists -> operations.find(project(query, fields, null), Post.class).collectList())
+        .map(posts -> createCursorPage(posts, perPage, after, before, PostReactiveService::cursorOf));
+  }
+
+  /** The posts with the ids, in the order asked for, see {@link MultiGetHelper}. */
+  public Mono<MultiGetResult<Post>> findAllByIds(final String ids, final Set<String> fields) {
+    final List<String> idList = parseIds(ids, maxIds, messageSource);
+    return operations
+        .find(project(query(where(ID).in(idList)), fields, null), Post.class)
+        .collectList()
+        .map(posts -> inRequestedOrder(idList, posts));
+  }
+
+  private Query project(final Query query, final Set<String> fields, final String embedParameter) {
+    if (EMBED_COMMENTS.equals(embedParameter) && !HTTP_EMBED_MODE.equals(embedMode)) {
+      return FieldsHelper.project(query, fields, ID, VERSION, CREATED_AT_EPOCH, LATEST_COMMENTS);
     }
+    return FieldsHelper.project(query, fields, ID, VERSION, CREATED_AT_EPOCH);
   }
 
-  public Mono<Post> findByPostId(final String postId) {
-    return postReactiveRepository.findById(postId).flatMap(this::zipPostComments);
+  public Mono<List<Post>> embedComments(final String embedParameter, final List<Post> posts) {
+    return embedComments(embedParameter, Flux.fromIterable(posts)).collectList();
   }
 
-  public Mono<Post> save(final Post post) {
-    validate(validator, post);
-    return postReactiveRepository.save(post);
+  public Mono<CursorPage<Post>> embedComments(
+      final String embedParameter, final CursorPage<Post> cursorPage) {
+    return embedComments(embedParameter, cursorPage.getItems())
+        .map(posts -> new CursorPage<>(posts, cursorPage.getNext(), cursorPage.getPrevious()));
+  }
+
+  public Mono<Post> embedComments(final Post post) {
+    return embedComments(EMBED_COMMENTS, Flux.just(post)).next();
+  }
+
+  private static String cursorOf(final Post post) {
+    return encodeCursor(post.getCreatedAtEpoch(), post.getId());
+  }
+
+  private Flux<Post> embedComments(final String embedParameter, final Flux<Post> posts) {
+    if (embedParameter == null || !embedParameter.equals(EMBED_COMMENTS)) {
+      return posts;
+    } else if (HTTP_EMBED_MODE.equals(embedMode)) {
+      return posts.flatMapSequential(
+          post -> Mono.just(post).flatMap(this::zipPostComments).subscribeOn(Schedulers.parallel()));
+    } else {
+      // The preview stored on the post, see LatestComments.
+      return posts.map(
+          post -> {
+            post.addComments(post.getLatestComments());
+            return post;
+          });
+    }
+  }
+
+  /** The post as stored, without its comments. */
+  public Mono<Post> findPostById(final String postId) {
+    return postCache.get(postId, postReactiveRepository::findById);
   }
 
-  public Mono<Post> update(final String id, final Post post) throws BeanValidationException {
+  /**
+   * Always creates a post: an id in the body is dropped, as are the version and the counts, so a
+   * stored post is only ever replaced through {@link #update}.
+   */
+  public Mono<Post> save(final Post post) {
     validate(validator, post);
+    post.setId(null);
+    prepareNew(post);
     return postReactiveRepository
-        .findById(id)
+        .insert(post)
+        .doOnSuccess(
+            savedPost -> {
+              counterCache.increment(counterCache.collectionKey(Post.class));
+              searchIndex.addPosts(Collections.singletonList(savedPost));
+              eventBus.publish(FeedEvent.of(CREATED, savedPost));
+            })
         .flatMap(
-            existingPost -> {
-              existingPost.makeCopyOf(post);
-              return postReactiveRepository.save(existingPost);
-            });
+            savedPost ->
+                timelineReactiveService
+                    .fanOut(Collections.singletonList(savedPost))
+                    .thenReturn(savedPost));
   }
 
-  public Mono<Post> delete(final String id) {
-    return postReactiveRepository
-        .findById(id)
+  /** Inserts the new posts of an NDJSON stream, see {@link BulkInsertService}. */
+  public Flux<BulkResult> bulkSave(final Flux<DataBuffer> body) {
+    return bulkInsertService.insert(
+        body,
+        Post.class,
+        post -> Mono.empty(),
+        this::prepareNew,
+        inserted -> {
+          counterCache.add(counterCache.collectionKey(Post.class), inserted.size());
+          searchIndex.addPosts(inserted);
+          return timelineReactiveService.fanOut(inserted);
+        });
+  }
+
+  public Flux<Post> export(final String after) {
+    return exportService.export(Post.class, null, after);
+  }
+
+  private void prepareNew(final Post post) {
+    post.setVersion(FIRST_VERSION);
+    post.setCommentCount(0);
+    post.setContentHash(contentHashOf(post));
+  }
+
+  public Mono<Post> update(final String id, final Post post, final String ifMatch)
+      throws BeanValidationException {
+    validate(validator, post);
+    final String contentHash = contentHashOf(post);
+    return versionedUpdateService
+        .update(Post.class, id, post.getVersion(), ifMatch, contentHash, mutableFieldsOf(post))
         .map(
-            user -> {
-              postReactiveRepository.delete(user).subscribe();
-              return user;
+            storedPost -> {
+              if (!contentHash.equals(storedPost.getContentHash())) {
+                storedPost.makeCopyOf(post);
+                storedPost.setContentHash(contentHash);
+                storedPost.setVersion(storedPost.getVersion() + 1);
+                postCache.invalidate(id);
+                searchIndex.addPosts(Collections.singletonList(storedPost));
+                eventBus.publish(FeedEvent.of(UPDATED, storedPost));
+              }
+              return storedPost;
             });
   }
 
+  private static String contentHashOf(final Post post) {
+    return md5Hex(post.getUserId(), post.getContent(), post.getCreatedAtISO());
+  }
+
+  // The fields copied by Post.makeCopyOf.
+  private static Update mutableFieldsOf(final Post post) {
+    return new Update()
+        .set("userId", post.getUserId())
+        .set("content", post.getContent())
+        .set("createdAtISO", post.getCreatedAtISO());
+  }
+
+  /** Deletes the post and leaves the removal of its comments to the cascade job. */
+  public Mono<Post> delete(final String id, final String ifMatch) {
+    return versionedUpdateService
+        .delete(Post.class, id, ifMatch)
+        .doOnSuccess(
+            deletedPost -> {
+              if (deletedPost != null) {
+                counterCache.decrement(counterCache.collectionKey(Post.class));
+                existenceReactiveService.evict(Post.class, id);
+                searchIndex.removePosts(Collections.singletonList(id));
+                eventBus.publish(FeedEvent.of(DELETED, deletedPost));
+              }
+            })
+        .doFinally(signal -> postCache.invalidate(id))
+        .flatMap(post -> cascadeDeleteJob.enqueue(POST_COMMENTS, id).thenReturn(post));
+  }
+
   private Mono<Post> zipPostComments(final Post post) {
     final Mono<Post> monoPost = Mono.just(post);
     final Mono<List<Comment>> monoComments = fetchCommentsByPostIdAsMono(webClient, post.getId());
@@ -129,10 +352,11 @@ public class PostReactiveService implements BeanValidationHelper<Post> {
       final WebClient webClient, final String postId) {
     final String domainCommentsPathPostId = format(domainCommentsPath, postId);
     final String pageableCommentsPath =
-        createPageablePath(domainCommentsPathPostId, COMMENTS_PAGE, COMMENTS_PER_PAGE);
+        createPageablePath(domainCommentsPathPostId, COMMENTS_PAGE, previewSize);
     return webClient
         .get()
         .uri(pageableCommentsPath)
+        .attribute(WEB_CLIENT_OPERATION, "fetchCommentsByPostIdAsMono")
         .accept(APPLICATION_JSON_UTF8)
         .exchange()
         .flatMap(
@@ -0,0 +1,312 @@
+package com.v8tix.katix.social.service;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.v8tix.katix.social.component.SearchIndex;
+import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.SearchHit;
+import com.v8tix.katix.social.model.SearchMatch;
+import com.v8tix.katix.social.util.SearchHelper;
+import com.v8tix.katix.social.util.StoredIdHelper;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.v8tix.katix.social.model.Post.LATEST_COMMENTS;
+import static com.v8tix.katix.social.service.VersionedUpdateService.ID;
+import static com.v8tix.katix.social.util.CursorHelper.CREATED_AT_EPOCH;
+import static com.v8tix.katix.social.util.CursorHelper.createCursorPage;
+import static com.v8tix.katix.social.util.MessageSourceHelper.SEARCH_MODE_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.SEARCH_QUERY_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+import static com.v8tix.katix.social.util.PaginationValidationHelper.validateCursorParameters;
+import static com.v8tix.katix.social.util.SearchHelper.decodeSearchCursor;
+import static com.v8tix.katix.social.util.SearchHelper.highlight;
+import static com.v8tix.katix.social.util.SearchHelper.terms;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Full-text search of the posts, through their content and the content of their comments.
+ *
+ * <p>In the {@code mongo} mode the query goes to the text indexes of both collections, so it gets
+ * their stemming, stop words and phrase syntax. In the {@code memory} mode it goes to the {@link
+ * SearchIndex}, where every term is a prefix. Either way a post scores its own match plus its best
+ * comment, results are ranked by score and then newest first, and only the best {@code
+ * social.search.max_results} posts can be paged through.
+ *
+ * <p>The memory mode falls back to the text indexes while the index is loading. Posts deleted
+ * since the search are dropped from the page.
+ */
+@Service
+public class SearchReactiveService {
+
+  public static final String MONGO_MODE = "mongo";
+  public static final String MEMORY_MODE = "memory";
+  private static final String POST_ID = "postId";
+  private static final String SCORE = "score";
+  private static final String STORED_ID = "_id";
+
+  private final ReactiveMongoOperations operations;
+  private final SearchIndex searchIndex;
+  private final MessageSource messageSource;
+  private final String defaultMode;
+  private final int maxResults;
+  private final long maxPerPage;
+  private final int commentsPerHit;
+  private final int fragmentSize;
+
+  @Autowired
+  public SearchReactiveService(
+      final ReactiveMongoOperations operations,
+      final SearchIndex searchIndex,
+      final MessageSource messageSource,
+      final @Value("${social.search.mode}") String defaultMode,
+      final @Value("${social.search.max_results}") int maxResults,
+      final @Value("${social.listing.max_per_page}") long maxPerPage,
+      final @Value("${social.search.comments_per_hit}") int commentsPerHit,
+      final @Value("${social.search.fragment_size}") int fragmentSize) {
+    this.operations = operations;
+    this.searchIndex = searchIndex;
+    this.messageSource = messageSource;
+    this.defaultMode = defaultMode;
+    this.maxResults = maxResults;
+    this.maxPerPage = maxPerPage;
+    this.commentsPerHit = commentsPerHit;
+    this.fragmentSize = fragmentSize;
+  }
+
+  public Mono<CursorPage<SearchHit>> search(
+      final String q,
+      final String mode,
+      final long perPage,
+      final String after,
+      final String before)
+      throws BeanValidationException {
+    validateCursorParameters(perPage, maxPerPage, after, before, messageSource, null);
+    final Set<String> terms = terms(q);
+    if (terms.isEmpty()) {
+      final String searchErrorMessage = getMessage(messageSource, SEARCH_QUERY_ERROR_MSG, null);
+      throw new BeanValidationException(String.format(searchErrorMessage, q));
+    }
+    final boolean inMemory = isMemoryMode(mode != null ? mode : defaultMode);
+    final boolean backward = before != null;
+    final String cursor = backward ? before : after;
+    final SearchMatch position = cursor != null ? decodeSearchCursor(cursor, messageSource) : null;
+    final Mono<List<SearchMatch>> matches =
+        inMemory && searchIndex.isReady()
+            ? Mono.fromCallable(() -> searchIndex.match(terms, maxResults, commentsPerHit))
+            : findMatches(q);
+    return matches
+        .map(
+            found ->
+                createCursorPage(
+                    pageOf(found, perPage, position, backward),
+                    perPage,
+                    after,
+                    before,
+                    SearchHelper::encodeSearchCursor))
+        .flatMap(page -> hitsOf(page, terms));
+  }
+
+  private boolean isMemoryMode(final String mode) {
+    if (MEMORY_MODE.equals(mode) && searchIndex.isEnabled()) {
+      return true;
+    }
+    if (MONGO_MODE.equals(mode)) {
+      return false;
+    }
+    final String modes =
+        searchIndex.isEnabled() ? String.join(",", MONGO_MODE, MEMORY_MODE) : MONGO_MODE;
+    final String modeErrorMessage = getMessage(messageSource, SEARCH_MODE_ERROR_MSG, null);
+    throw new BeanValidationException(String.format(modeErrorMessage, mode, modes));
+  }
+
+  /** The best posts for the query according to the text indexes, see {@link SearchMatch}. */
+  private Mono<List<SearchMatch>> findMatches(final String q) {
+    final Mono<List<Document>> postDocuments = textSearch(Post.class, q, CREATED_AT_EPOCH);
+    final Mono<List<Document>> commentDocuments = textSearch(Comment.class, q, POST_ID);
+    return Mono.zip(postDocuments, commentDocuments)
+        .flatMap(
+            found -> {
+              final Map<String, SearchMatch> matches = new HashMap<>();
+              for (Document post : found.getT1()) {
+                final String postId = idOf(post);
+                matches.put(
+                    postId, new SearchMatch(postId, createdAtEpochOf(post), scoreOf(post)));
+              }
+              final List<Document> comments = found.getT2();
+              final Set<String> otherPostIds =
+                  comments.stream()
+                      .map(comment -> comment.getString(POST_ID))
+                      .filter(postId -> !matches.containsKey(postId))
+                      .collect(toSet());
+              return createdAtEpochsOf(otherPostIds)
+                  .map(
+                      createdAtEpochs -> {
+                        for (Document comment : comments) {
+                          final String postId = comment.getString(POST_ID);
+                          final Long createdAtEpoch = createdAtEpochs.get(postId);
+                          if (matches.containsKey(postId) || createdAtEpoch != null) {
+                            matches
+                                .computeIfAbsent(
+                                    postId, id -> new SearchMatch(id, createdAtEpoch, 0))
+                                .addComment(idOf(comment), scoreOf(comment), commentsPerHit);
+                          }
+                        }
+                        return best(matches.values());
+                      });
+            });
+  }
+
+  /** The best {@code social.search.max_results} matches of the collection, best first. */
+  private Mono<List<Document>> textSearch(
+      final Class<?> entityClass, final String q, final String field) {
+    return Flux.from(
+            operations
+                .getCollection(operations.getCollectionName(entityClass))
+                .find(Filters.text(q))
+                .projection(
+                    Projections.fields(
+                        Projections.include(field), Projections.metaTextScore(SCORE)))
+                .sort(Sorts.metaTextScore(SCORE))
+                .limit(maxResults))
+        .collectList();
+  }
+
+  // Also drops the comments of deleted posts.
+  private Mono<Map<String, Long>> createdAtEpochsOf(final Collection<String> postIds) {
+    if (postIds.isEmpty()) {
+      return Mono.just(Collections.emptyMap());
+    }
+    final List<Object> storedIds =
+        postIds.stream().map(StoredIdHelper::storedId).collect(toList());
+    return Flux.from(
+            operations
+                .getCollection(operations.getCollectionName(Post.class))
+                .find(Filters.in(STORED_ID, storedIds))
+                .projection(Projections.include(CREATED_AT_EPOCH)))
+        .collectMap(SearchReactiveService::idOf, SearchReactiveService::createdAtEpochOf);
+  }
+
+  private List<SearchMatch> best(final Collection<SearchMatch> matches) {
+    final List<SearchMatch> best = new ArrayList<>(matches);
+    best.sort(SearchMatch.BEST_FIRST);
+    return best.size() > maxResults ? new ArrayList<>(best.subList(0, maxResults)) : best;
+  }
+
+  /**
+   * The matches past the position, plus one to tell whether there are more. A backward page is
+   * returned worst first, as {@code createCursorPage} expects.
+   */
+  private static List<SearchMatch> pageOf(
+      final List<SearchMatch> matches,
+      final long perPage,
+      final SearchMatch position,
+      final boolean backward) {
+    final List<SearchMatch> fetched = new ArrayList<>();
+    if (!backward) {
+      for (SearchMatch match : matches) {
+        if (position == null || SearchMatch.BEST_FIRST.compare(match, position) > 0) {
+          fetched.add(match);
+          if (fetched.size() > perPage) {
+            break;
+          }
+        }
+      }
+    } else {
+      for (int i = matches.size() - 1; i >= 0 && fetched.size() <= perPage; i--) {
+        if (SearchMatch.BEST_FIRST.compare(matches.get(i), position) < 0) {
+          fetched.add(matches.get(i));
+        }
+      }
+    }
+    return fetched;
+  }
+
+  /** Loads the posts of a page and the comments to highlight with one $in each, in order. */
+  private Mono<CursorPage<SearchHit>> hitsOf(
+      final CursorPage<SearchMatch> page, final Set<String> terms) {
+    final List<String> postIds =
+        page.getItems().stream().map(SearchMatch::getPostId).collect(toList());
+    if (postIds.isEmpty()) {
+      return Mono.just(new CursorPage<>(new ArrayList<>(), page.getNext(), page.getPrevious()));
+    }
+    final List<String> commentIds =
+        page.getItems().stream()
+            .flatMap(match -> match.getCommentIds().stream())
+            .collect(toList());
+    final Query posts = query(where(ID).in(postIds));
+    posts.fields().exclude(LATEST_COMMENTS);
+    final Mono<Map<String, Comment>> commentsById =
+        commentIds.isEmpty()
+            ? Mono.just(Collections.emptyMap())
+            : operations
+                .find(query(where(ID).in(commentIds)), Comment.class)
+                .collectMap(Comment::getId);
+    return operations
+        .find(posts, Post.class)
+        .collectMap(Post::getId)
+        .zipWith(commentsById)
+        .map(
+            found -> {
+              final List<SearchHit> hits = new ArrayList<>();
+              for (SearchMatch match : page.getItems()) {
+                final Post post = found.getT1().get(match.getPostId());
+                if (post != null) {
+                  final SearchHit hit = new SearchHit(post, match.getScore());
+                  addHighlight(hit, SearchHit.CONTENT, post.getContent(), terms);
+                  for (String commentId : match.getCommentIds()) {
+                    final Comment comment = found.getT2().get(commentId);
+                    if (comment != null) {
+                      addHighlight(hit, SearchHit.COMMENTS, comment.getContent(), terms);
+                    }
+                  }
+                  hits.add(hit);
+                }
+              }
+              return new CursorPage<>(hits, page.getNext(), page.getPrevious());
+            });
+  }
+
+  // A match of the text indexes through a stem the terms are not a prefix of is not highlighted.
+  private void addHighlight(
+      final SearchHit hit, final String field, final String text, final Set<String> terms) {
+    final String fragment = highlight(text, terms, fragmentSize);
+    if (fragment != null) {
+      hit.getHighlights().computeIfAbsent(field, key -> new ArrayList<>()).add(fragment);
+    }
+  }
+
+  private static String idOf(final Document document) {
+    return document.get(STORED_ID).toString();
+  }
+
+  private static long createdAtEpochOf(final Document post) {
+    return ((Number) post.get(CREATED_AT_EPOCH)).longValue();
+  }
+
+  private static double scoreOf(final Document document) {
+    return ((Number) document.get(SCORE)).doubleValue();
+  }
+}
@@ -0,0 +1,306 @@
+package com.v8tix.katix.social.service;
+
+import com.v8tix.katix.social.component.EntityCache;
+import com.v8tix.katix.social.component.RecentPosts;
+import com.v8tix.katix.social.component.TimelineFanOut;
+import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.model.Follow;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.Timeline;
+import com.v8tix.katix.social.model.TimelineEntry;
+import com.v8tix.katix.social.model.User;
+import com.v8tix.katix.social.util.TimelineHelper;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static com.v8tix.katix.social.model.Follow.FOLLOWEE_ID;
+import static com.v8tix.katix.social.model.Follow.FOLLOWER_ID;
+import static com.v8tix.katix.social.model.Timeline.ENTRIES;
+import static com.v8tix.katix.social.model.TimelineEntry.USER_ID;
+import static com.v8tix.katix.social.model.User.FOLLOWER_COUNT;
+import static com.v8tix.katix.social.model.User.FOLLOWING_COUNT;
+import static com.v8tix.katix.social.service.VersionedUpdateService.ID;
+import static com.v8tix.katix.social.service.VersionedUpdateService.VERSION;
+import static com.v8tix.katix.social.util.CursorHelper.CREATED_AT_EPOCH;
+import static com.v8tix.katix.social.util.CursorHelper.NEWEST_FIRST;
+import static com.v8tix.katix.social.util.CursorHelper.createCursorPage;
+import static com.v8tix.katix.social.util.CursorHelper.decodeCursor;
+import static com.v8tix.katix.social.util.CursorHelper.encodeCursor;
+import static com.v8tix.katix.social.util.MessageSourceHelper.FOLLOW_SELF_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+import static com.v8tix.katix.social.util.PaginationValidationHelper.validateCursorParameters;
+import static com.v8tix.katix.social.util.TimelineHelper.pageOf;
+import static java.util.stream.Collectors.toList;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * The follow graph and the home timelines built from it by fan-out on write: a new post is pushed
+ * to the timeline of every follower of its author (and of the author), so that reading a timeline
+ * is one lookup by key whatever the number of accounts followed. The posts of accounts with too
+ * many followers to push to are pulled in when a timeline is read instead, see {@link
+ * RecentPosts}.
+ *
+ * <p>Timelines only hold references. Deleted posts are dropped when a page is read, and a new
+ * follow copies the newest posts of the account into the timeline of the follower.
+ */
+@Service
+public class TimelineReactiveService {
+
+  private final ReactiveMongoOperations operations;
+  private final ExistenceReactiveService existenceReactiveService;
+  private final EntityCache<User> userCache;
+  private final MessageSource messageSource;
+  private final TimelineFanOut timelineFanOut;
+  private final RecentPosts recentPosts;
+  private final int maxSize;
+  private final int batchSize;
+  private final long maxPerPage;
+
+  @Autowired
+  public TimelineReactiveService(
+      final ReactiveMongoOperations operations,
+      final ExistenceReactiveService existenceReactiveService,
+      final EntityCache<User> userCache,
+      final MessageSource messageSource,
+      final TimelineFanOut timelineFanOut,
+      final RecentPosts recentPosts,
+      final @Value("${social.timeline.max_size}") int maxSize,
+      final @Value("${social.timeline.batch_size}") int batchSize,
+      final @Value("${social.listing.max_per_page}") long maxPerPage) {
+    this.operations = operations;
+    this.existenceReactiveService = existenceReactiveService;
+    this.userCache = userCache;
+    this.messageSource = messageSource;
+    this.timelineFanOut = timelineFanOut;
+    this.recentPosts = recentPosts;
+    this.maxSize = maxSize;
+    this.batchSize = batchSize;
+    this.maxPerPage = maxPerPage;
+  }
+
+  /** Emits whether the follow is new, or nothing when either user does not exist. */
+  public Mono<Boolean> follow(final String userId, final String followeeId)
+      throws BeanValidationException {
+    validateNotSelf(userId, followeeId);
+    final Update onInsert = new Update().setOnInsert(CREATED_AT_EPOCH, System.currentTimeMillis());
+    return bothExist(userId, followeeId)
+        .flatMap(
+            exists -> operations.upsert(followQuery(userId, followeeId), onInsert, Follow.class))
+        .flatMap(
+            updateResult -> {
+              if (updateResult.getUpsertedId() == null) {
+                return Mono.just(false);
+              }
+              return countFollow(userId, followeeId, 1)
+                  .then(backfill(userId, followeeId))
+                  .thenReturn(true);
+            })
+        .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+  }
+
+  /** Emits true once the follow is removed, or nothing when there was none. */
+  public Mono<Boolean> unfollow(final String userId, final String followeeId) {
+    return operations
+        .remove(followQuery(userId, followeeId), Follow.class)
+        .filter(deleteResult -> deleteResult.getDeletedCount() > 0)
+        .flatMap(
+            deleteResult ->
+                countFollow(userId, followeeId, -1)
+                    .then(
+                        operations.updateFirst(
+                            query(where(ID).is(userId)),
+                            new Update().pull(ENTRIES, new Document(USER_ID, followeeId)),
+                            Timeline.class))
+                    .thenReturn(true));
+  }
+
+  /** Pushes new posts to the timelines, in the background, see {@link TimelineFanOut}. */
+  public Mono<Void> fanOut(final List<Post> posts) {
+    return timelineFanOut.submit(posts);
+  }
+
+  /** A page of the timeline of the user, or nothing when the user does not exist. */
+  public Mono<CursorPage<Post>> timeline(
+      final String userId, final long perPage, final String after, final String before)
+      throws BeanValidationException {
+    validateCursorParameters(perPage, maxPerPage, after, before, messageSource, null);
+    final boolean backward = before != null;
+    final String cursor = backward ? before : after;
+    final String[] position = cursor != null ? decodeCursor(cursor, messageSource, null) : null;
+    return existenceReactiveService
+        .exists(User.class, userId)
+        .filter(exists -> exists)
+        .flatMap(
+            exists ->
+                Mono.zip(
+                    storedEntriesOf(userId),
+                    pulledEntriesOf(userId),
+                    TimelineReactiveService::merge))
+        .map(entries -> pageOf(entries, perPage, position, backward))
+        .map(
+            fetched ->
+                createCursorPage(
+                    fetched, perPage, after, before, TimelineReactiveService::cursorOf))
+        .flatMap(this::withPosts);
+  }
+
+  /** Removes the follows of a deleted user in both directions, and their timeline. */
+  public Mono<Void> removeUser(final String userId) {
+    final Mono<Void> followers =
+        removeFollows(where(FOLLOWEE_ID).is(userId), Follow::getFollowerId, FOLLOWING_COUNT);
+    final Mono<Void> following =
+        removeFollows(where(FOLLOWER_ID).is(userId), Follow::getFolloweeId, FOLLOWER_COUNT);
+    return followers
+        .then(following)
+        .then(operations.remove(query(where(ID).is(userId)), Timeline.class))
+        .then();
+  }
+
+  private Mono<Void> removeFollows(
+      final Criteria criteria,
+      final Function<Follow, String> otherUserOf,
+      final String otherCountField) {
+    return operations
+        .find(query(criteria), Follow.class)
+        .buffer(batchSize)
+        .concatMap(
+            batch -> {
+              final List<String> otherUserIds = batch.stream().map(otherUserOf).collect(toList());
+              final List<String> followIds = batch.stream().map(Follow::getId).collect(toList());
+              return operations
+                  .updateMulti(
+                      query(where(ID).in(otherUserIds)),
+                      new Update().inc(otherCountField, -1).inc(VERSION, 1),
+                      User.class)
+                  .then(operations.remove(query(where(ID).in(followIds)), Follow.class))
+                  .doOnSuccess(deleteResult -> otherUserIds.forEach(userCache::invalidate));
+            })
+        .then();
+  }
+
+  private void validateNotSelf(final String userId, final String followeeId)
+      throws BeanValidationException {
+    if (userId.equals(followeeId)) {
+      final String followSelfErrorMessage = getMessage(messageSource, FOLLOW_SELF_ERROR_MSG, null);
+      throw new BeanValidationException(String.format(followSelfErrorMessage, userId));
+    }
+  }
+
+  private Mono<Boolean> bothExist(final String userId, final String followeeId) {
+    return existenceReactiveService
+        .exists(User.class, userId)
+        .zipWith(existenceReactiveService.exists(User.class, followeeId), Boolean::logicalAnd)
+        .filter(exists -> exists);
+  }
+
+  private static Query followQuery(final String userId, final String followeeId) {
+    return query(where(FOLLOWER_ID).is(userId).and(FOLLOWEE_ID).is(followeeId));
+  }
+
+  // Both counts change the users, so both versions move on.
+  private Mono<Void> countFollow(final String userId, final String followeeId, final long delta) {
+    final Mono<Void> following =
+        operations
+            .updateFirst(
+                query(where(ID).is(userId)),
+                new Update().inc(FOLLOWING_COUNT, delta).inc(VERSION, 1),
+                User.class)
+            .then();
+    final Mono<Void> followers =
+        operations
+            .updateFirst(
+                query(where(ID).is(followeeId)),
+                new Update().inc(FOLLOWER_COUNT, delta).inc(VERSION, 1),
+                User.class)
+            .then();
+    return Mono.when(following, followers)
+        .doFinally(
+            signal -> {
+              userCache.invalidate(userId);
+              userCache.invalidate(followeeId);
+            });
+  }
+
+  private Mono<Void> backfill(final String userId, final String followeeId) {
+    final Query newestPosts =
+        query(where(USER_ID).is(followeeId)).with(NEWEST_FIRST).limit(maxSize);
+    newestPosts.fields().include(ID).include(USER_ID).include(CREATED_AT_EPOCH);
+    return operations
+        .find(newestPosts, Post.class)
+        .map(TimelineEntry::of)
+        .collectList()
+        .filter(entries -> !entries.isEmpty())
+        .flatMap(entries -> timelineFanOut.push(Collections.singletonList(userId), entries));
+  }
+
+  private Mono<List<TimelineEntry>> storedEntriesOf(final String userId) {
+    return operations
+        .findById(userId, Timeline.class)
+        .map(Timeline::getEntries)
+        .defaultIfEmpty(Collections.emptyList());
+  }
+
+  /** The recent posts of the pulled accounts the user follows, see {@link RecentPosts}. */
+  private Mono<List<TimelineEntry>> pulledEntriesOf(final String userId) {
+    return recentPosts
+        .pulledAuthorIds()
+        .flatMap(
+            pulledAuthorIds -> {
+              if (pulledAuthorIds.isEmpty()) {
+                return Mono.just(Collections.<TimelineEntry>emptyList());
+              }
+              final Query followed =
+                  query(where(FOLLOWER_ID).is(userId).and(FOLLOWEE_ID).in(pulledAuthorIds));
+              followed.fields().include(FOLLOWEE_ID);
+              return operations
+                  .find(followed, Follow.class)
+                  .concatMap(follow -> recentPosts.of(follow.getFolloweeId()))
+                  .flatMapIterable(entries -> entries)
+                  .collectList();
+            });
+  }
+
+  private static List<TimelineEntry> merge(
+      final List<TimelineEntry> stored, final List<TimelineEntry> pulled) {
+    return pulled.isEmpty() ? stored : TimelineHelper.merge(stored, pulled, Long.MAX_VALUE);
+  }
+
+  private static String cursorOf(final TimelineEntry entry) {
+    return encodeCursor(entry.getCreatedAtEpoch(), entry.getPostId());
+  }
+
+  /** Loads the posts of a page with one $in, in the order of the timeline. */
+  private Mono<CursorPage<Post>> withPosts(final CursorPage<TimelineEntry> page) {
+    final List<String> postIds =
+        page.getItems().stream().map(TimelineEntry::getPostId).collect(toList());
+    if (postIds.isEmpty()) {
+      return Mono.just(new CursorPage<>(new ArrayList<>(), page.getNext(), page.getPrevious()));
+    }
+    return operations
+        .find(query(where(ID).in(postIds)), Post.class)
+        .collectMap(Post::getId)
+        .map(
+            posts ->
+                new CursorPage<>(
+                    postIds.stream().map(posts::get).filter(Objects::nonNull).collect(toList()),
+                    page.getNext(),
+                    page.getPrevious()));
+  }
+}
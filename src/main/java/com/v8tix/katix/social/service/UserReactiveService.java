@@ -1,81 +1,225 @@
 package com.v8tix.katix.social.service;
 
+import com.v8tix.katix.social.component.CascadeDeleteJob;
+import com.v8tix.katix.social.component.CounterCache;
+import com.v8tix.katix.social.component.EntityCache;
 import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.BulkResult;
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.model.MultiGetResult;
 import com.v8tix.katix.social.model.User;
 import com.v8tix.katix.social.repository.UserReactiveRepository;
 import com.v8tix.katix.social.util.BeanValidationHelper;
+import com.v8tix.katix.social.util.FieldsHelper;
+import com.v8tix.katix.social.util.MultiGetHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Validator;
+import java.util.List;
+import java.util.Set;
 
+import static com.v8tix.katix.social.model.CascadeTask.Type.USER_CONTENT;
+import static com.v8tix.katix.social.model.Versioned.FIRST_VERSION;
+import static com.v8tix.katix.social.service.VersionedUpdateService.VERSION;
+import static com.v8tix.katix.social.util.CursorHelper.CREATED_AT_EPOCH;
+import static com.v8tix.katix.social.util.CursorHelper.ID;
+import static com.v8tix.katix.social.util.CursorHelper.createCursorPage;
+import static com.v8tix.katix.social.util.CursorHelper.encodeCursor;
+import static com.v8tix.katix.social.util.CursorHelper.getCursorQuery;
+import static com.v8tix.katix.social.util.CursorHelper.getPageQuery;
+import static com.v8tix.katix.social.util.HashHelper.md5Hex;
+import static com.v8tix.katix.social.util.MultiGetHelper.inRequestedOrder;
+import static com.v8tix.katix.social.util.MultiGetHelper.parseIds;
+import static com.v8tix.katix.social.util.PaginationValidationHelper.validateCursorParameters;
 import static com.v8tix.katix.social.util.PaginationValidationHelper.validatePaginationParameters;
-import static java.util.Comparator.comparing;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 @Service
 public class UserReactiveService implements BeanValidationHelper<User> {
 
   private final UserReactiveRepository userReactiveRepository;
+  private final ReactiveMongoOperations operations;
   private final MessageSource messageSource;
   private final Validator validator;
+  private final CounterCache counterCache;
+  private final ExistenceReactiveService existenceReactiveService;
+  private final EntityCache<User> userCache;
+  private final VersionedUpdateService versionedUpdateService;
+  private final CascadeDeleteJob cascadeDeleteJob;
+  private final BulkInsertService bulkInsertService;
+  private final ExportService exportService;
+
+  @Value("${social.listing.max_per_page}")
+  private long maxPerPage;
+
+  @Value("${social.multi_get.max_ids}")
+  private int maxIds;
 
   @Autowired
   public UserReactiveService(
       final UserReactiveRepository userReactiveRepository,
+      final ReactiveMongoOperations operations,
       final @Qualifier("JSR-380-Validator") Validator validator,
-      final MessageSource messageSource) {
+      final MessageSource messageSource,
+      final CounterCache counterCache,
+      final ExistenceReactiveService existenceReactiveService,
+      final EntityCache<User> userCache,
+      final VersionedUpdateService versionedUpdateService,
+      final CascadeDeleteJob cascadeDeleteJob,
+      final BulkInsertService bulkInsertService,
+      final ExportService exportService) {
     this.userReactiveRepository = userReactiveRepository;
+    this.operations = operations;
     this.messageSource = messageSource;
     this.validator = validator;
+    this.counterCache = counterCache;
+    this.existenceReactiveService = existenceReactiveService;
+    this.userCache = userCache;
+    this.versionedUpdateService = versionedUpdateService;
+    this.cascadeDeleteJob = cascadeDeleteJob;
+    this.bulkInsertService = bulkInsertService;
+    this.exportService = exportService;
   }
 
-  public Flux<User> findAllPageable(final long page, final long perPage) {
+  /** Reads only {@code fields}, see {@link FieldsHelper}. */
+  public Flux<User> findAllPageable(final long page, final long perPage, final Set<String> fields) {
     validatePaginationParameters(page, perPage, messageSource, null);
-    return getPageablePosts(page, perPage).sort(comparing(User::getCreatedAtEpoch).reversed());
+    return operations.find(project(getPageQuery(null, page, perPage), fields), User.class);
   }
 
-  private Flux<User> getPageablePosts(long page, long perPage) {
-    return userReactiveRepository
-        .findByOrderByCreatedAtEpochDesc()
-        .skip(perPage * (page - 1))
-        .take(perPage);
+  public Mono<CursorPage<User>> findAllByCursor(
+      final long perPage, final String after, final String before, final Set<String> fields) {
+    validateCursorParameters(perPage, maxPerPage, after, before, messageSource, null);
+    final Query query = getCursorQuery(null, perPage, after, before, messageSource);
+    return operations
+        .find(project(query, fields), User.class)
+        .collectList()
+        .map(users -> createCursorPage(users, perPage, after, before, UserReactiveService::cursorOf));
+  }
+
+  /** The users with the ids, in the order asked for, see {@link MultiGetHelper}. */
+  public Mono<MultiGetResult<User>> findAllByIds(final String ids, final Set<String> fields) {
+    final List<String> idList = parseIds(ids, maxIds, messageSource);
+    return operations
+        .find(project(query(where(ID).in(idList)), fields), User.class)
+        .collectList()
+        .map(users -> inRequestedOrder(idList, users));
+  }
+
+  private static Query project(final Query query, final Set<String> fields) {
+    return FieldsHelper.project(query, fields, ID, VERSION, CREATED_AT_EPOCH);
+  }
+
+  private static String cursorOf(final User user) {
+    return encodeCursor(user.getCreatedAtEpoch(), user.getId());
   }
 
   public Mono<Long> getNumberOfUsers() {
-    return userReactiveRepository.findAll().collectList().map(list -> (long) list.size());
+    return counterCache.getCollectionCount(User.class);
   }
 
   public Mono<User> findById(final String id) {
-    return userReactiveRepository.findById(id);
+    return userCache.get(id, userReactiveRepository::findById);
   }
 
+  /**
+   * Always creates a user: an id in the body is dropped, as are the version and the follow counts,
+   * so a stored user is only ever replaced through {@link #update}.
+   */
   public Mono<User> save(final User user) throws BeanValidationException {
     validate(validator, user);
-    return userReactiveRepository.save(user);
+    user.setId(null);
+    prepareNew(user);
+    return userReactiveRepository
+        .insert(user)
+        .doOnSuccess(
+            savedUser -> counterCache.increment(counterCache.collectionKey(User.class)));
   }
 
-  public Mono<User> update(final String id, final User user) throws BeanValidationException {
-    validate(validator, user);
-    return userReactiveRepository
-        .findById(id)
-        .flatMap(
-            existingUser -> {
-              existingUser.makeCopyOf(user);
-              return userReactiveRepository.save(existingUser);
-            });
+  /** Inserts the new users of an NDJSON stream, see {@link BulkInsertService}. */
+  public Flux<BulkResult> bulkSave(final Flux<DataBuffer> body) {
+    return bulkInsertService.insert(
+        body,
+        User.class,
+        user -> Mono.empty(),
+        this::prepareNew,
+        inserted -> {
+          counterCache.add(counterCache.collectionKey(User.class), inserted.size());
+          return Mono.empty();
+        });
   }
 
-  public Mono<User> delete(final String id) {
-    return userReactiveRepository
-        .findById(id)
+  public Flux<User> export(final String after) {
+    return exportService.export(User.class, null, after);
+  }
+
+  private void prepareNew(final User user) {
+    user.setVersion(FIRST_VERSION);
+    user.setFollowerCount(0);
+    user.setFollowingCount(0);
+    user.setContentHash(contentHashOf(user));
+  }
+
+  public Mono<User> update(final String id, final User user, final String ifMatch)
+      throws BeanValidationException {
+    validate(validator, user);
+    final String contentHash = contentHashOf(user);
+    return versionedUpdateService
+        .update(User.class, id, user.getVersion(), ifMatch, contentHash, mutableFieldsOf(user))
         .map(
-            user -> {
-              userReactiveRepository.delete(user).subscribe();
-              return user;
+            storedUser -> {
+              if (!contentHash.equals(storedUser.getContentHash())) {
+                storedUser.makeCopyOf(user);
+                storedUser.setContentHash(contentHash);
+                storedUser.setVersion(storedUser.getVersion() + 1);
+                userCache.invalidate(id);
+              }
+              return storedUser;
             });
   }
+
+  private static String contentHashOf(final User user) {
+    return md5Hex(
+        user.getGender(),
+        user.getFirstName(),
+        user.getLastName(),
+        user.getEmail(),
+        user.getProfilePicture());
+  }
+
+  // The fields copied by User.makeCopyOf.
+  private static Update mutableFieldsOf(final User user) {
+    return new Update()
+        .set("gender", user.getGender())
+        .set("firstName", user.getFirstName())
+        .set("lastName", user.getLastName())
+        .set("email", user.getEmail())
+        .set("profilePicture", user.getProfilePicture());
+  }
+
+  /** Deletes the user and leaves the removal of their posts and comments to the cascade job. */
+  public Mono<User> delete(final String id, final String ifMatch) {
+    return versionedUpdateService
+        .delete(User.class, id, ifMatch)
+        .doOnSuccess(
+            deletedUser -> {
+              if (deletedUser != null) {
+                counterCache.decrement(counterCache.collectionKey(User.class));
+                existenceReactiveService.evict(User.class, id);
+              }
+            })
+        .doFinally(signal -> userCache.invalidate(id))
+        .flatMap(user -> cascadeDeleteJob.enqueue(USER_CONTENT, id).thenReturn(user));
+  }
 }
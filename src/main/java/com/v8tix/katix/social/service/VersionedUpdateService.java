@@ -0,0 +1,141 @@
+package com.v8tix.katix.social.service;
+
+import com.v8tix.katix.social.exception.ConflictException;
+import com.v8tix.katix.social.exception.PreconditionFailedException;
+import com.v8tix.katix.social.model.Versioned;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.MessageSource;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.v8tix.katix.social.util.ETagHelper.isPreconditionFailed;
+import static com.v8tix.katix.social.util.ETagHelper.versionETag;
+import static com.v8tix.katix.social.util.ETagHelper.versionsOf;
+import static com.v8tix.katix.social.util.MessageSourceHelper.PRECONDITION_FAILED_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.VERSION_CONFLICT_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Updates a document with a single findAndModify that sets the mutable fields, stores their hash
+ * and bumps the version. The write is guarded by the version the client read, taken from If-Match
+ * and from the {@code version} of the body when it is not 0, and skipped when the stored hash
+ * already equals the new one.
+ *
+ * <p>Only a skipped write costs a second lookup, to tell a missing document, a stale version and a
+ * no-op apart. Deletes are guarded the same way.
+ */
+@Service
+public class VersionedUpdateService {
+
+  public static final String ID = "id";
+  public static final String VERSION = "version";
+  public static final String CONTENT_HASH = "contentHash";
+  private final ReactiveMongoOperations operations;
+  private final MessageSource messageSource;
+
+  @Autowired
+  public VersionedUpdateService(
+      final ReactiveMongoOperations operations, final MessageSource messageSource) {
+    this.operations = operations;
+    this.messageSource = messageSource;
+  }
+
+  /**
+   * Emits the document as stored before this update. Its content hash equals {@code contentHash}
+   * when the update was a no-op and nothing was written.
+   */
+  public <T extends Versioned> Mono<T> update(
+      final Class<T> entityClass,
+      final String id,
+      final long version,
+      final String ifMatch,
+      final String contentHash,
+      final Update mutableFields) {
+    final Update update = mutableFields.set(CONTENT_HASH, contentHash).inc(VERSION, 1);
+    return operations
+        .findAndModify(guardedQuery(id, version, ifMatch, contentHash), update, entityClass)
+        .switchIfEmpty(
+            Mono.defer(() -> explainSkippedUpdate(entityClass, id, version, ifMatch, contentHash)));
+  }
+
+  /**
+   * Removes the document in one findAndRemove, guarded by the If-Match versions, and emits it. A
+   * guarded miss costs a second lookup to answer 412 rather than 404.
+   */
+  public <T extends Versioned> Mono<T> delete(
+      final Class<T> entityClass, final String id, final String ifMatch) {
+    final Criteria criteria = where(ID).is(id);
+    final List<Long> ifMatchVersions = versionsOf(ifMatch);
+    if (ifMatchVersions != null) {
+      criteria.and(VERSION).in(ifMatchVersions);
+    }
+    return operations
+        .findAndRemove(query(criteria), entityClass)
+        .switchIfEmpty(
+            Mono.defer(
+                () ->
+                    ifMatchVersions == null
+                        ? Mono.empty()
+                        : explainSkippedDelete(entityClass, id)));
+  }
+
+  private static Query guardedQuery(
+      final String id, final long version, final String ifMatch, final String contentHash) {
+    final List<Criteria> criteria = new ArrayList<>();
+    criteria.add(where(ID).is(id));
+    criteria.add(where(CONTENT_HASH).ne(contentHash));
+    if (version > 0) {
+      criteria.add(where(VERSION).is(version));
+    }
+    final List<Long> ifMatchVersions = versionsOf(ifMatch);
+    if (ifMatchVersions != null) {
+      criteria.add(where(VERSION).in(ifMatchVersions));
+    }
+    return query(new Criteria().andOperator(criteria.toArray(new Criteria[0])));
+  }
+
+  private <T extends Versioned> Mono<T> explainSkippedDelete(
+      final Class<T> entityClass, final String id) {
+    return operations
+        .exists(query(where(ID).is(id)), entityClass)
+        .filter(exists -> exists)
+        .flatMap(
+            exists ->
+                Mono.error(
+                    new PreconditionFailedException(
+                        getMessage(messageSource, PRECONDITION_FAILED_ERROR_MSG, null))));
+  }
+
+  private <T extends Versioned> Mono<T> explainSkippedUpdate(
+      final Class<T> entityClass,
+      final String id,
+      final long version,
+      final String ifMatch,
+      final String contentHash) {
+    return operations
+        .findById(id, entityClass)
+        .map(
+            storedEntity -> {
+              if (isPreconditionFailed(ifMatch, versionETag(storedEntity.getVersion()))) {
+                throw new PreconditionFailedException(
+                    getMessage(messageSource, PRECONDITION_FAILED_ERROR_MSG, null));
+              }
+              // A stale body version, or an edit that landed between the two lookups.
+              if ((version > 0 && version != storedEntity.getVersion())
+                  || !contentHash.equals(storedEntity.getContentHash())) {
+                throw new ConflictException(
+                    getMessage(messageSource, VERSION_CONFLICT_ERROR_MSG, null));
+              }
+              return storedEntity;
+            });
+  }
+}
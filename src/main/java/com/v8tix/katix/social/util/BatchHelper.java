@@ -0,0 +1,54 @@
+package com.v8tix.katix.social.util;
+
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+public interface BatchHelper {
+
+  /**
+   * Groups {@code items} into lists of at most {@code maxSize}, closing a partial list once {@code
+   * maxWait} passes without it filling up.
+   *
+   * <p>Unlike {@link Flux#bufferTimeout(int, Duration)} this never emits without demand: the flush
+   * ticks are dropped while downstream is busy, so upstream is only read as fast as the batches are
+   * consumed.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Flux<List<T>> batches(
+      final Flux<T> items, final int maxSize, final Duration maxWait) {
+    final Object flush = new Object();
+    return Flux.defer(
+        () -> {
+          final int[] size = {0};
+          return items
+              .map(item -> (Object) item)
+              .publish(
+                  shared ->
+                      Flux.merge(
+                          shared,
+                          Flux.interval(maxWait)
+                              .onBackpressureDrop()
+                              .map(tick -> flush)
+                              .takeUntilOther(shared.then())))
+              .bufferUntil(
+                  item -> {
+                    if (item == flush || ++size[0] >= maxSize) {
+                      size[0] = 0;
+                      return true;
+                    }
+                    return false;
+                  })
+              .map(
+                  batch ->
+                      batch.stream()
+                          .filter(item -> item != flush)
+                          .map(item -> (T) item)
+                          .collect(toList()))
+              .filter(batch -> !batch.isEmpty());
+        });
+  }
+}
@@ -0,0 +1,128 @@
+package com.v8tix.katix.social.util;
+
+import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.CursorPage;
+import org.springframework.context.MessageSource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import static com.v8tix.katix.social.util.MessageSourceHelper.CURSOR_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+import static com.v8tix.katix.social.util.StoredIdHelper.storedId;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public interface CursorHelper {
+
+    String CREATED_AT_EPOCH = "createdAtEpoch";
+    String ID = "id";
+    Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, CREATED_AT_EPOCH, ID);
+    Sort OLDEST_FIRST = Sort.by(Sort.Direction.ASC, CREATED_AT_EPOCH, ID);
+
+    static String encodeCursor(final long createdAtEpoch, final String id) {
+        final String cursor = StringHelper.concatStrings(StringHelper.COLON, String.valueOf(createdAtEpoch), id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeCursor(final String cursor,
+                                 final MessageSource messageSource,
+                                 final Locale locale) throws BeanValidationException {
+        try {
+            final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return parsePosition(decoded, messageSource, locale);
+        } catch (IllegalArgumentException | BeanValidationException e) {
+            final String cursorErrorMessage = getMessage(messageSource, CURSOR_ERROR_MSG, locale);
+            throw new BeanValidationException(String.format(cursorErrorMessage, cursor));
+        }
+    }
+
+    /**
+     * Splits a {@code createdAtEpoch:id} position, the plain form of a cursor that an export client
+     * builds from the last document it received.
+     */
+    static String[] parsePosition(final String position,
+                                  final MessageSource messageSource,
+                                  final Locale locale) throws BeanValidationException {
+        final String[] parts = position.split(StringHelper.COLON, 2);
+        try {
+            Long.parseLong(parts[0]);
+            if (parts.length == 2 && !parts[1].isEmpty()) {
+                return parts;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below together with the positions without an id.
+        }
+        final String cursorErrorMessage = getMessage(messageSource, CURSOR_ERROR_MSG, locale);
+        throw new BeanValidationException(String.format(cursorErrorMessage, position));
+    }
+
+    /** One more than {@code perPage}, which the caller has capped with {@code validateCursorParameters}. */
+    static Pageable getCursorPageable(final long perPage, final boolean backward) {
+        return PageRequest.of(0, Math.toIntExact(perPage + 1), backward ? OLDEST_FIRST : NEWEST_FIRST);
+    }
+
+    /** The {@code page}th page of {@code filter}, newest first, skipped and limited by the database. */
+    static Query getPageQuery(final Criteria filter, final long page, final long perPage) {
+        return query(filter != null ? filter : new Criteria())
+                .with(NEWEST_FIRST)
+                .skip(perPage * (page - 1))
+                .limit((int) perPage);
+    }
+
+    /** The documents of {@code filter} past a cursor, plus one to tell whether there are more. */
+    static Query getCursorQuery(final Criteria filter,
+                                final long perPage,
+                                final String after,
+                                final String before,
+                                final MessageSource messageSource) throws BeanValidationException {
+        final Criteria criteria = filter != null ? filter : new Criteria();
+        final boolean backward = before != null;
+        final String cursor = backward ? before : after;
+        if (cursor != null) {
+            final String[] position = decodeCursor(cursor, messageSource, null);
+            final long createdAtEpoch = Long.parseLong(position[0]);
+            if (backward) {
+                criteria.orOperator(
+                        where(CREATED_AT_EPOCH).gt(createdAtEpoch),
+                        where(CREATED_AT_EPOCH).is(createdAtEpoch).and(ID).gt(storedId(position[1])));
+            } else {
+                criteria.orOperator(
+                        where(CREATED_AT_EPOCH).lt(createdAtEpoch),
+                        where(CREATED_AT_EPOCH).is(createdAtEpoch).and(ID).lt(storedId(position[1])));
+            }
+        }
+        return query(criteria).with(getCursorPageable(perPage, backward));
+    }
+
+    static <T> CursorPage<T> createCursorPage(final List<T> fetched,
+                                              final long perPage,
+                                              final String after,
+                                              final String before,
+                                              final Function<T, String> cursorOf) {
+        final boolean backward = before != null;
+        final boolean hasMore = fetched.size() > perPage;
+        final List<T> items = new ArrayList<>(fetched.subList(0, (int) Math.min(perPage, fetched.size())));
+        if (backward) {
+            Collections.reverse(items);
+        }
+        if (items.isEmpty()) {
+            return new CursorPage<>(items, null, null);
+        }
+        final String first = cursorOf.apply(items.get(0));
+        final String last = cursorOf.apply(items.get(items.size() - 1));
+        final String next = backward || hasMore ? last : null;
+        final String previous = backward ? (hasMore ? first : null) : (after != null ? first : null);
+        return new CursorPage<>(items, next, previous);
+    }
+}
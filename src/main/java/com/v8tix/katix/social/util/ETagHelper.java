@@ -0,0 +1,135 @@
+package com.v8tix.katix.social.util;
+
+import com.v8tix.katix.social.model.Versioned;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Strong entity tags built from the document versions, so that a conditional request is answered
+ * from the lookup alone, before comments are embedded or anything is serialized.
+ */
+public interface ETagHelper {
+
+  String ANY = "*";
+  String WEAK_PREFIX = "W/";
+  char QUOTE = '"';
+  char SEPARATOR = ':';
+
+  static String versionETag(final long version) {
+    return QUOTE + Long.toString(version) + QUOTE;
+  }
+
+  /** The tag of a listing: its items by id and version plus whatever else shapes the response. */
+  static String listETag(final Collection<? extends Versioned> items, final Object... qualifiers) {
+    final StringBuilder state = new StringBuilder(items.size() * 32);
+    for (Versioned item : items) {
+      state.append(item.getId()).append(SEPARATOR).append(item.getVersion()).append(',');
+    }
+    for (Object qualifier : qualifiers) {
+      state.append(SEPARATOR).append(qualifier);
+    }
+    return QUOTE + DigestUtils.md5DigestAsHex(state.toString().getBytes(UTF_8)) + QUOTE;
+  }
+
+  /**
+   * The tag of another representation of the same state, such as a sparse fieldset; null stands
+   * for the full representation, which keeps {@code eTag}.
+   */
+  static String variantETag(final String eTag, final Object variant) {
+    if (variant == null) {
+      return eTag;
+    }
+    final String state = eTag + SEPARATOR + variant;
+    return QUOTE + DigestUtils.md5DigestAsHex(state.getBytes(UTF_8)) + QUOTE;
+  }
+
+  /** If-None-Match uses the weak comparison, so {@code W/"1"} matches {@code "1"}. */
+  static boolean isNotModified(final String ifNoneMatch, final String eTag) {
+    return ifNoneMatch != null && matches(ifNoneMatch, eTag, true);
+  }
+
+  /** If-Match uses the strong comparison; a missing header is no precondition at all. */
+  static boolean isPreconditionFailed(final String ifMatch, final String eTag) {
+    return ifMatch != null && !matches(ifMatch, eTag, false);
+  }
+
+  /**
+   * The versions an If-Match header accepts, or null when it accepts any version. Weak tags never
+   * match strongly, so they are left out.
+   */
+  static List<Long> versionsOf(final String ifMatch) {
+    if (ifMatch == null) {
+      return null;
+    }
+    final List<Long> versions = new ArrayList<>();
+    for (String candidate : ifMatch.split(",")) {
+      final String tag = candidate.trim();
+      if (tag.equals(ANY)) {
+        return null;
+      }
+      if (tag.length() > 2 && tag.charAt(0) == QUOTE && tag.charAt(tag.length() - 1) == QUOTE) {
+        try {
+          versions.add(Long.parseLong(tag.substring(1, tag.length() - 1)));
+        } catch (NumberFormatException e) {
+          // Not one of our tags, so it matches no version.
+        }
+      }
+    }
+    return versions;
+  }
+
+  static boolean matches(final String header, final String eTag, final boolean weakComparison) {
+    for (String candidate : header.split(",")) {
+      String tag = candidate.trim();
+      if (tag.equals(ANY)) {
+        return true;
+      }
+      if (tag.startsWith(WEAK_PREFIX)) {
+        if (!weakComparison) {
+          continue;
+        }
+        tag = tag.substring(WEAK_PREFIX.length());
+      }
+      if (tag.equals(eTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Answers 304 when the client already holds {@code eTag}, otherwise builds the response and tags
+   * it.
+   */
+  static Mono<ResponseEntity<Object>> conditionalResponse(
+      final String ifNoneMatch,
+      final String eTag,
+      final Supplier<Mono<ResponseEntity<Object>>> response) {
+    if (isNotModified(ifNoneMatch, eTag)) {
+      return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build());
+    }
+    return response.get().map(responseEntity -> withETag(responseEntity, eTag));
+  }
+
+  static ResponseEntity<Object> withETag(
+      final ResponseEntity<Object> responseEntity, final String eTag) {
+    if (!responseEntity.getStatusCode().is2xxSuccessful()) {
+      return responseEntity;
+    }
+    final HttpHeaders responseHeaders = new HttpHeaders();
+    responseHeaders.putAll(responseEntity.getHeaders());
+    responseHeaders.setETag(eTag);
+    return new ResponseEntity<>(
+        responseEntity.getBody(), responseHeaders, responseEntity.getStatusCode());
+  }
+}
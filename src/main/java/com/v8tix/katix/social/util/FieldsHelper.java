@@ -0,0 +1,102 @@
+package com.v8tix.katix.social.util;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.v8tix.katix.social.exception.BeanValidationException;
+import org.springframework.context.MessageSource;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.v8tix.katix.social.util.JsonHelper.MAPPER;
+import static com.v8tix.katix.social.util.MessageSourceHelper.FIELDS_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * Sparse fieldsets: {@code fields=id,content} is checked against the JSON properties of the model,
+ * becomes the projection of the query, and filters the serialized response. The fields a response
+ * needs for itself, such as the version behind its ETag, are read but not written out.
+ *
+ * <p>A null set stands for all of the fields throughout.
+ */
+public interface FieldsHelper {
+
+  Map<Class<?>, Set<String>> PROPERTIES = new ConcurrentHashMap<>();
+
+  static SortedSet<String> parseFields(
+      final String fields, final Class<?> entityClass, final MessageSource messageSource)
+      throws BeanValidationException {
+    if (fields == null) {
+      return null;
+    }
+    final SortedSet<String> parsed =
+        Arrays.stream(fields.split(","))
+            .map(String::trim)
+            .filter(field -> !field.isEmpty())
+            .collect(toCollection(TreeSet::new));
+    final Set<String> properties = propertiesOf(entityClass);
+    if (parsed.isEmpty() || !properties.containsAll(parsed)) {
+      final String fieldsErrorMessage = getMessage(messageSource, FIELDS_ERROR_MSG, null);
+      throw new BeanValidationException(
+          String.format(fieldsErrorMessage, fields, String.join(",", properties)));
+    }
+    return parsed;
+  }
+
+  /** The properties Jackson writes for {@code entityClass}, without the ignored ones. */
+  static Set<String> propertiesOf(final Class<?> entityClass) {
+    return PROPERTIES.computeIfAbsent(
+        entityClass,
+        type -> {
+          final BeanDescription description =
+              MAPPER.getSerializationConfig().introspect(MAPPER.constructType(type));
+          final Set<String> properties = new TreeSet<>();
+          for (BeanPropertyDefinition property : description.findProperties()) {
+            if (property.couldSerialize()) {
+              properties.add(property.getName());
+            }
+          }
+          return Collections.unmodifiableSet(properties);
+        });
+  }
+
+  static boolean wants(final Set<String> fields, final String field) {
+    return fields == null || fields.contains(field);
+  }
+
+  static Query project(final Query query, final Set<String> fields, final String... required) {
+    if (fields != null) {
+      fields.forEach(query.fields()::include);
+      Arrays.stream(required).forEach(query.fields()::include);
+    }
+    return query;
+  }
+
+  /** Leaves out of the body every property of the {@code filterId} models but {@code fields}. */
+  static ResponseEntity<Object> withFields(
+      final ResponseEntity<Object> responseEntity, final String filterId, final Set<String> fields) {
+    if (fields == null || responseEntity.getBody() == null) {
+      return responseEntity;
+    }
+    final MappingJacksonValue body = new MappingJacksonValue(responseEntity.getBody());
+    body.setFilters(
+        new SimpleFilterProvider()
+            .setFailOnUnknownId(false)
+            .addFilter(filterId, SimpleBeanPropertyFilter.filterOutAllExcept(fields)));
+    final HttpHeaders responseHeaders = new HttpHeaders();
+    responseHeaders.putAll(responseEntity.getHeaders());
+    return new ResponseEntity<>(body, responseHeaders, responseEntity.getStatusCode());
+  }
+}
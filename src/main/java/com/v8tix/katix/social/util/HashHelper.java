@@ -0,0 +1,19 @@
+package com.v8tix.katix.social.util;
+
+import org.springframework.util.DigestUtils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public interface HashHelper {
+
+  char SEPARATOR = '\u0000';
+
+  /** The MD5 of the values, separated so that {@code ("ab", "c")} and {@code ("a", "bc")} differ. */
+  static String md5Hex(final Object... values) {
+    final StringBuilder content = new StringBuilder(256);
+    for (Object value : values) {
+      content.append(value).append(SEPARATOR);
+    }
+    return DigestUtils.md5DigestAsHex(content.toString().getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,49 @@
+package com.v8tix.katix.social.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.v8tix.katix.social.util.StringHelper.EMPTY_STRING;
+
+/**
+ * The one {@link ObjectMapper} of the application. It is also exposed as the primary bean, so the
+ * MVC message converters and the WebClient codecs serialize exactly like {@link #toJson(Object)}.
+ */
+public interface JsonHelper {
+
+  ObjectMapper MAPPER =
+      Jackson2ObjectMapperBuilder.json()
+          .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+          // Everything is written unless a response sets its own filters, see FieldsHelper.
+          .filters(new SimpleFilterProvider().setFailOnUnknownId(false))
+          .build();
+
+  Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+  Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+  static ObjectWriter writerFor(final Class<?> type) {
+    return WRITERS.computeIfAbsent(type, MAPPER::writerFor);
+  }
+
+  static ObjectReader readerFor(final Class<?> type) {
+    return READERS.computeIfAbsent(type, MAPPER::readerFor);
+  }
+
+  static String toJson(final Object value) {
+    final ObjectWriter writer = value == null ? MAPPER.writer() : writerFor(value.getClass());
+    try {
+      return writer.writeValueAsString(value);
+    } catch (JsonProcessingException e) {
+      return EMPTY_STRING;
+    }
+  }
+}
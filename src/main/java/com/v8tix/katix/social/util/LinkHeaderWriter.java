@@ -0,0 +1,142 @@
+package com.v8tix.katix.social.util;
+
+import com.v8tix.katix.social.model.CursorPage;
+
+/**
+ * Writes the comma separated value of a {@code Link} header into a per-thread {@link StringBuilder}
+ * that is reused across requests. Each link is the target URI framed by the precomputed {@link
+ * LinkRelation#getLinkSuffix()}, so nothing is formatted or copied more than once.
+ *
+ * <p>A writer must be turned into a String before the thread starts another one.
+ */
+public final class LinkHeaderWriter {
+
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+  private static final ThreadLocal<StringBuilder> BUFFER =
+      ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+  private static final String PAGE_PARAMETER = "?page=";
+  private static final String PER_PAGE_PARAMETER = "&per_page=";
+  private static final String CURSOR_PARAMETER = "?per_page=";
+  private static final String AFTER_PARAMETER = "&after=";
+  private static final String BEFORE_PARAMETER = "&before=";
+
+  private final StringBuilder buffer;
+  private boolean empty = true;
+
+  private LinkHeaderWriter(final StringBuilder buffer) {
+    this.buffer = buffer;
+  }
+
+  public static LinkHeaderWriter start() {
+    StringBuilder buffer = BUFFER.get();
+    if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+      buffer = new StringBuilder(INITIAL_CAPACITY);
+      BUFFER.set(buffer);
+    }
+    buffer.setLength(0);
+    return new LinkHeaderWriter(buffer);
+  }
+
+  public LinkHeaderWriter link(final String path, final LinkRelation linkRelation) {
+    return link(path, null, linkRelation);
+  }
+
+  public LinkHeaderWriter link(
+      final String path, final String id, final LinkRelation linkRelation) {
+    openLink().append(path);
+    if (id != null) {
+      buffer.append(id);
+    }
+    return closeLink(linkRelation);
+  }
+
+  public LinkHeaderWriter pageableLink(
+      final String path, final long page, final long perPage, final LinkRelation linkRelation) {
+    openLink()
+        .append(path)
+        .append(PAGE_PARAMETER)
+        .append(page)
+        .append(PER_PAGE_PARAMETER)
+        .append(perPage);
+    return closeLink(linkRelation);
+  }
+
+  /** The path may carry a query string of its own, such as the one of a search. */
+  public LinkHeaderWriter cursorLink(
+      final String path,
+      final long perPage,
+      final String after,
+      final String before,
+      final LinkRelation linkRelation) {
+    openLink()
+        .append(path)
+        .append(path.indexOf('?') < 0 ? CURSOR_PARAMETER : PER_PAGE_PARAMETER)
+        .append(perPage);
+    if (after != null) {
+      buffer.append(AFTER_PARAMETER).append(after);
+    } else if (before != null) {
+      buffer.append(BEFORE_PARAMETER).append(before);
+    }
+    return closeLink(linkRelation);
+  }
+
+  public LinkHeaderWriter pageableLinks(
+      final String path, final long page, final long perPage, final long numberOfElements) {
+    final long numberOfPages = RestHelper.getNumberOfPages(numberOfElements, perPage);
+    pageableLink(path, RestHelper.FIRST_PAGE, perPage, LinkRelation.FIRST);
+    pageableLink(path, numberOfPages, perPage, LinkRelation.LAST);
+    if (RestHelper.hasNextPage(numberOfElements, page, perPage)) {
+      pageableLink(path, page + 1, perPage, LinkRelation.NEXT);
+    }
+    if (RestHelper.hasPreviousPage(numberOfElements, page, perPage)) {
+      pageableLink(path, page - 1, perPage, LinkRelation.PREV);
+    }
+    return this;
+  }
+
+  public LinkHeaderWriter cursorLinks(
+      final String path, final long perPage, final CursorPage<?> cursorPage) {
+    cursorLink(path, perPage, null, null, LinkRelation.FIRST);
+    if (cursorPage.getNext() != null) {
+      cursorLink(path, perPage, cursorPage.getNext(), null, LinkRelation.NEXT);
+    }
+    if (cursorPage.getPrevious() != null) {
+      cursorLink(path, perPage, null, cursorPage.getPrevious(), LinkRelation.PREV);
+    }
+    return this;
+  }
+
+  /** Appends already rendered links, skipping empty ones. */
+  public LinkHeaderWriter links(final String... webLinks) {
+    for (String webLink : webLinks) {
+      if (webLink != null && !webLink.isEmpty()) {
+        separate().append(webLink);
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return buffer.toString();
+  }
+
+  private StringBuilder openLink() {
+    return separate().append('<');
+  }
+
+  private LinkHeaderWriter closeLink(final LinkRelation linkRelation) {
+    buffer.append(linkRelation.getLinkSuffix());
+    return this;
+  }
+
+  private StringBuilder separate() {
+    if (empty) {
+      empty = false;
+    } else {
+      buffer.append(StringHelper.COMA);
+    }
+    return buffer;
+  }
+}
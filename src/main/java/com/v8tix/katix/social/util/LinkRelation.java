@@ -11,16 +11,20 @@ public enum LinkRelation {
     NEXT("next", "next page", MediaType.APPLICATION_JSON_UTF8.toString()),
     PREV("prev", "previous page", MediaType.APPLICATION_JSON_UTF8.toString()),
     COMMENTS("comments", "fetch comments", MediaType.APPLICATION_JSON_UTF8.toString()),
-    USER("user", "fetch user", MediaType.APPLICATION_JSON_UTF8.toString());
+    USER("user", "fetch user", MediaType.APPLICATION_JSON_UTF8.toString()),
+    POSTS("posts", "fetch posts", MediaType.APPLICATION_JSON_UTF8.toString()),
+    TIMELINE("timeline", "fetch home timeline", MediaType.APPLICATION_JSON_UTF8.toString());
 
     private final String rel;
     private final String title;
     private final String type;
+    private final String linkSuffix;
 
     LinkRelation(final String rel, final String title, final String type) {
         this.rel = rel;
         this.title = title;
         this.type = type;
+        this.linkSuffix = ">;rel=\"" + rel + "\";title=\"" + title + "\";type=\"" + type + "\"";
     }
 
     public String getRel() {
@@ -34,4 +38,11 @@ public enum LinkRelation {
     public String getType() {
         return type;
     }
+
+    /**
+     * Everything of an RFC 5988 link after the target URI, so a link is {@code '<' + uri + suffix}.
+     */
+    public String getLinkSuffix() {
+        return linkSuffix;
+    }
 }
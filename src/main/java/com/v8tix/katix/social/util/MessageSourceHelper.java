@@ -23,10 +23,24 @@ public interface MessageSourceHelper {
     String POST_ID_NOT_EQUALS_ERROR_MSG = "post.id.not.equals";
     String PAGE_ERROR_MSG = "page.not.valid";
     String PER_PAGE_ERROR_MSG = "per_page.not.valid";
+    String PER_PAGE_MAX_ERROR_MSG = "per_page.too.large";
+    String CURSOR_ERROR_MSG = "cursor.not.valid";
+    String CURSOR_EXCLUSIVE_ERROR_MSG = "cursor.not.exclusive";
     String UPSERT_INVALID_PARAMS_TITLE="invalid.post.comment.id.title";
     String UPSERT_INVALID_PARAMS_DETAIL="invalid.post.comment.id.detail";
     String UPSERT_INVALID_PARAMS_DEVELOPER="invalid.post.comment.id.developer.message";
     String UPSERT_INVALID_PARAMS_USER="invalid.post.comment.id.user.message";
+    String PRECONDITION_FAILED_ERROR_MSG = "precondition.failed";
+    String VERSION_CONFLICT_ERROR_MSG = "version.conflict";
+    String BULK_INVALID_JSON_ERROR_MSG = "bulk.invalid.json";
+    String BULK_DUPLICATE_ID_ERROR_MSG = "bulk.duplicate.id";
+    String BULK_REFERENCE_ERROR_MSG = "bulk.reference.not.found";
+    String FEED_CLIENTS_LIMIT_ERROR_MSG = "feed.clients.limit";
+    String FIELDS_ERROR_MSG = "fields.not.valid";
+    String FOLLOW_SELF_ERROR_MSG = "follow.self.not.valid";
+    String SEARCH_QUERY_ERROR_MSG = "search.query.not.valid";
+    String SEARCH_MODE_ERROR_MSG = "search.mode.not.valid";
+    String IDS_ERROR_MSG = "ids.not.valid";
 
     static String getMessage(MessageSource messageSource,
                              String errorMessage, Locale locale, Object... objects) {
@@ -0,0 +1,60 @@
+package com.v8tix.katix.social.util;
+
+import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.MultiGetResult;
+import com.v8tix.katix.social.model.Versioned;
+import org.springframework.context.MessageSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.v8tix.katix.social.util.MessageSourceHelper.IDS_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * Multi-gets: {@code ids=a,b,c} is read with one {@code $in} query and answered in the order of
+ * the ids, with the ids that were not found listed apart rather than failing the request.
+ */
+public interface MultiGetHelper {
+
+  /** The distinct ids, in order; from 1 to {@code maxIds} of them. */
+  static List<String> parseIds(
+      final String ids, final int maxIds, final MessageSource messageSource)
+      throws BeanValidationException {
+    final List<String> parsed =
+        new ArrayList<>(
+            Arrays.stream(ids.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .collect(toCollection(LinkedHashSet::new)));
+    if (parsed.isEmpty() || parsed.size() > maxIds) {
+      final String idsErrorMessage = getMessage(messageSource, IDS_ERROR_MSG, null);
+      throw new BeanValidationException(String.format(idsErrorMessage, ids, maxIds));
+    }
+    return parsed;
+  }
+
+  /** The items found, in the order of {@code ids}, and the ids none of them has. */
+  static <T extends Versioned> MultiGetResult<T> inRequestedOrder(
+      final List<String> ids, final Collection<T> found) {
+    final Map<String, T> byId = new HashMap<>();
+    found.forEach(item -> byId.put(item.getId(), item));
+    final List<T> items = new ArrayList<>(found.size());
+    final List<String> missing = new ArrayList<>();
+    for (String id : ids) {
+      final T item = byId.get(id);
+      if (item != null) {
+        items.add(item);
+      } else {
+        missing.add(id);
+      }
+    }
+    return new MultiGetResult<>(items, missing);
+  }
+}
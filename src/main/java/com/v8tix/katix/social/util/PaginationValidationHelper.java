@@ -5,12 +5,16 @@ import org.springframework.context.MessageSource;
 
 import java.util.Locale;
 
+import static com.v8tix.katix.social.util.MessageSourceHelper.CURSOR_EXCLUSIVE_ERROR_MSG;
 import static com.v8tix.katix.social.util.MessageSourceHelper.PAGE_ERROR_MSG;
 import static com.v8tix.katix.social.util.MessageSourceHelper.PER_PAGE_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.PER_PAGE_MAX_ERROR_MSG;
 import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
 
 public interface PaginationValidationHelper {
 
+    long FIRST_PAGE = 1;
+
     static void validatePaginationParameters(final long page,
                                              final long perPage,
                                              final MessageSource messageSource,
@@ -24,4 +28,28 @@ public interface PaginationValidationHelper {
             throw new BeanValidationException(String.format(perPageErrorMessage, perPage));
         }
     }
+
+    /** Cursor pages are capped at {@code maxPerPage}, so that every page costs the same bounded scan. */
+    static void validateCursorParameters(final long perPage,
+                                         final long maxPerPage,
+                                         final String after,
+                                         final String before,
+                                         final MessageSource messageSource,
+                                         final Locale locale) throws BeanValidationException {
+        validatePaginationParameters(FIRST_PAGE, perPage, messageSource, locale);
+        validateMaxPerPage(perPage, maxPerPage, messageSource, locale);
+        if (after != null && before != null) {
+            throw new BeanValidationException(getMessage(messageSource, CURSOR_EXCLUSIVE_ERROR_MSG, locale));
+        }
+    }
+
+    static void validateMaxPerPage(final long perPage,
+                                   final long maxPerPage,
+                                   final MessageSource messageSource,
+                                   final Locale locale) throws BeanValidationException {
+        if (perPage > maxPerPage) {
+            final String perPageErrorMessage = getMessage(messageSource, PER_PAGE_MAX_ERROR_MSG, locale);
+            throw new BeanValidationException(String.format(perPageErrorMessage, perPage, maxPerPage));
+        }
+    }
 }
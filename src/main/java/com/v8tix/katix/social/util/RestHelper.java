@@ -1,37 +1,49 @@
 package com.v8tix.katix.social.util;
 
+import com.v8tix.katix.social.component.HostName;
 import com.v8tix.katix.social.exception.ErrorDetail;
+import com.v8tix.katix.social.model.CursorPage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
+import org.springframework.web.util.UriUtils;
 
-import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.Collections;
 import java.util.Locale;
 
 import static java.lang.String.format;
-import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
 
 public interface RestHelper {
 
     Logger LOGGER = LoggerFactory.getLogger(RestHelper.class);
     String RFC_5988_LINK_FORMAT = "<%s>;rel=\"%s\";title=\"%s\";type=\"%s\"";
     String LOCATION_EXCEPTION = "Location exception: %s";
-    String UNKOWN_EXCEPTION = "Unknown Host exception: %s";
     String PAGEABLE_PART = "?page=%d&per_page=%d";
+    String CURSOR_PART = "?per_page=%d";
+    String AFTER_PART = "&after=";
+    String BEFORE_PART = "&before=";
     String EMBED_COMMENTS = "comments";
     String EMBED_PART = "&embed=";
+    String IDS_PARAM = "ids";
+    String IDS_PART = "?ids=";
     String LINK_HEADER = "Link";
     String HOST_HEADER = "Host";
+    String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    String BULK_PATH = "/_bulk";
+    String EXPORT_PATH = "/_export";
+    String FEED_PATH = "/_feed";
+    String SEARCH_PATH = "/_search";
+    String TIMELINE_PATH = "/timeline";
+    String FOLLOWING_PATH = "/following";
+    String POSTS_PATH = "/posts";
+    String COMMENTS_PATH = "/comments";
     int FIRST_PAGE = 1;
 
     static ResponseEntity<Object> createLocationAndLinkHeadersResponse(final String path,
@@ -47,7 +59,7 @@ public interface RestHelper {
         }
         responseHeaders.setLocation(newUserPath);
         responseHeaders.set(HOST_HEADER, getHostName());
-        final String concatenatedLinks = StringHelper.concatStrings(StringHelper.COMA, null, webLinks);
+        final String concatenatedLinks = LinkHeaderWriter.start().links(webLinks).toString();
         responseHeaders.set(LINK_HEADER, concatenatedLinks);
         return new ResponseEntity<>(null, responseHeaders, HttpStatus.CREATED);
     }
@@ -55,7 +67,7 @@ public interface RestHelper {
     static ResponseEntity<Object> LinkHeaderResponse(final Object body,
                                                      final HttpStatus httpStatus,
                                                      final String... WebLinks) {
-        final String concatenatedLinks = StringHelper.concatStrings(StringHelper.COMA, null, WebLinks);
+        final String concatenatedLinks = LinkHeaderWriter.start().links(WebLinks).toString();
         return buildLinkResponseEntity(body, httpStatus, concatenatedLinks);
     }
 
@@ -63,16 +75,12 @@ public interface RestHelper {
                                         final long page,
                                         final long perPage,
                                         final LinkRelation linkRelation) {
-        final String pageablePath = createPageablePath(path, page, perPage);
-        return createWebLink(pageablePath, linkRelation);
+        return LinkHeaderWriter.start().pageableLink(path, page, perPage, linkRelation).toString();
     }
 
     static String createWebLink(final String path,
                                 final LinkRelation linkRelation) {
-        final String rel = linkRelation.getRel();
-        final String title = linkRelation.getTitle();
-        final String type = linkRelation.getType();
-        return format(RFC_5988_LINK_FORMAT, path, rel, title, type);
+        return LinkHeaderWriter.start().link(path, linkRelation).toString();
     }
 
     static String createFirstWebLink(final String path, final long perPage) {
@@ -115,9 +123,10 @@ public interface RestHelper {
                                                                final Object body,
                                                                final HttpStatus httpStatus,
                                                                final String... webLinks) {
-        final String selfPath = createSelfPath(path, id);
-        final String selfPathWebLink = createWebLink(selfPath, LinkRelation.SELF);
-        final String selfAndWebLinks = StringHelper.concatStrings(StringHelper.COMA, selfPathWebLink, webLinks);
+        final String selfAndWebLinks = LinkHeaderWriter.start()
+                .link(path, id, LinkRelation.SELF)
+                .links(webLinks)
+                .toString();
         return buildLinkResponseEntity(body, httpStatus, selfAndWebLinks);
     }
 
@@ -135,10 +144,11 @@ public interface RestHelper {
                                                                    final Object body,
                                                                    final String... webLinks) {
         if (numberOfElements > 0) {
-            final String pageableWebLinks = createPageableWebLinks(path,
-                    page, perPage, numberOfElements);
-            final String selfAndPageableAndWebLinks = StringHelper.concatStrings(StringHelper.COMA, pageableWebLinks, webLinks);
-            return LinkHeaderResponse(body, HttpStatus.OK, selfAndPageableAndWebLinks);
+            final String selfAndPageableAndWebLinks = LinkHeaderWriter.start()
+                    .pageableLinks(path, page, perPage, numberOfElements)
+                    .links(webLinks)
+                    .toString();
+            return buildLinkResponseEntity(body, HttpStatus.OK, selfAndPageableAndWebLinks);
         } else {
             return ResponseEntity.notFound().build();
         }
@@ -148,11 +158,62 @@ public interface RestHelper {
                                          final long page,
                                          final long perPage,
                                          final long numberOfElements) {
-        final String firstWebLink = createFirstWebLink(path, perPage);
-        final String lastWebLink = createLastWebLink(path, numberOfElements, perPage);
-        final String nextWebLink = createNextWebLink(path, numberOfElements, page, perPage);
-        final String previousWebLink = createPreviousWebLink(path, numberOfElements, page, perPage);
-        return StringHelper.concatStrings(StringHelper.COMA, firstWebLink, lastWebLink, nextWebLink, previousWebLink);
+        return LinkHeaderWriter.start()
+                .pageableLinks(path, page, perPage, numberOfElements)
+                .toString();
+    }
+
+    static ResponseEntity<Object> createCursorLinkHeaderResponse(final String path,
+                                                                 final long perPage,
+                                                                 final CursorPage<?> cursorPage,
+                                                                 final String... webLinks) {
+        if (!cursorPage.isEmpty()) {
+            final String selfAndPageableAndWebLinks = LinkHeaderWriter.start()
+                    .cursorLinks(path, perPage, cursorPage)
+                    .links(webLinks)
+                    .toString();
+            return buildLinkResponseEntity(cursorPage.getItems(), HttpStatus.OK, selfAndPageableAndWebLinks);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    static String createPageableWebLinks(final String path,
+                                         final long perPage,
+                                         final CursorPage<?> cursorPage) {
+        return LinkHeaderWriter.start().cursorLinks(path, perPage, cursorPage).toString();
+    }
+
+    static String createCursorWebLink(final String path,
+                                      final long perPage,
+                                      final String after,
+                                      final String before,
+                                      final LinkRelation linkRelation) {
+        return LinkHeaderWriter.start()
+                .cursorLink(path, perPage, after, before, linkRelation)
+                .toString();
+    }
+
+    static String createCursorPath(final String path,
+                                   final long perPage,
+                                   final String after,
+                                   final String before) {
+        final String cursorPathPart = format(CURSOR_PART, perPage);
+        if (after != null) {
+            return StringHelper.concatStrings(StringHelper.EMPTY_STRING, path, cursorPathPart, AFTER_PART, after);
+        } else if (before != null) {
+            return StringHelper.concatStrings(StringHelper.EMPTY_STRING, path, cursorPathPart, BEFORE_PART, before);
+        } else {
+            return StringHelper.concatStrings(StringHelper.EMPTY_STRING, path, cursorPathPart);
+        }
+    }
+
+    static ResponseEntity<Object> createMultiGetResponse(final String path,
+                                                         final String ids,
+                                                         final Object body) {
+        final String encodedIds = UriUtils.encodeQueryParam(ids, StandardCharsets.UTF_8);
+        final String selfPath = StringHelper.concatStrings(StringHelper.EMPTY_STRING, path, IDS_PART, encodedIds);
+        return LinkHeaderResponse(body, HttpStatus.OK, createWebLink(selfPath, LinkRelation.SELF));
     }
 
     static String createSelfPath(final String path, final String id) {
@@ -188,24 +249,6 @@ public interface RestHelper {
         return MathHelper.doubleToLong(numberOfPages);
     }
 
-    @SuppressWarnings("unchecked")
-    static Mono<Object> getByIdRequest(final WebClient webClient,
-                                       final String path,
-                                       final String id,
-                                       final Class clazz) {
-        final String pathWithId = StringHelper.concatStrings(StringHelper.EMPTY_STRING, path, id);
-        return webClient.get().uri(pathWithId)
-                .accept(APPLICATION_JSON_UTF8)
-                .exchange()
-                .flatMap(clientResponse -> {
-                    if (clientResponse.statusCode().equals(HttpStatus.OK)) {
-                        return clientResponse.bodyToMono(clazz);
-                    } else {
-                        return Mono.empty();
-                    }
-                });
-    }
-
     static ErrorDetail getUpsertErrorDetail(MessageSource messageSource, Locale locale) {
         final String title = MessageSourceHelper.getMessage(messageSource, MessageSourceHelper.UPSERT_INVALID_PARAMS_TITLE, locale);
         final String detail = MessageSourceHelper.getMessage(messageSource, MessageSourceHelper.UPSERT_INVALID_PARAMS_DETAIL, locale);
@@ -223,14 +266,6 @@ public interface RestHelper {
     }
 
     static String getHostName() {
-        final InetAddress localhost;
-        String hostname = null;
-        try {
-            localhost = InetAddress.getLocalHost();
-            hostname = localhost.getHostName();
-        } catch (UnknownHostException e) {
-            LOGGER.info(format(UNKOWN_EXCEPTION, e.getMessage()));
-        }
-        return hostname;
+        return HostName.get();
     }
 }
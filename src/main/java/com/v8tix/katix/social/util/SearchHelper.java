@@ -0,0 +1,189 @@
+package com.v8tix.katix.social.util;
+
+import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.SearchMatch;
+import org.springframework.context.MessageSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static com.v8tix.katix.social.util.MessageSourceHelper.CURSOR_ERROR_MSG;
+import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
+
+/**
+ * The text handling shared by the search modes. A token is a run of letters and digits, lower
+ * cased, and a term of the query matches the tokens it is a prefix of.
+ */
+public interface SearchHelper {
+
+  String HIGHLIGHT_START = "<em>";
+  String HIGHLIGHT_END = "</em>";
+  String ELLIPSIS = "...";
+
+  static List<String> tokenize(final String text) {
+    final List<String> tokens = new ArrayList<>();
+    for (int[] bounds : tokenBounds(text)) {
+      tokens.add(text.substring(bounds[0], bounds[1]).toLowerCase(Locale.ROOT));
+    }
+    return tokens;
+  }
+
+  /** The start and end of each token of the text. */
+  static List<int[]> tokenBounds(final String text) {
+    final List<int[]> bounds = new ArrayList<>();
+    if (text == null) {
+      return bounds;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      final boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (inToken && start < 0) {
+        start = i;
+      } else if (!inToken && start >= 0) {
+        bounds.add(new int[] {start, i});
+        start = -1;
+      }
+    }
+    return bounds;
+  }
+
+  /** The distinct tokens of the query, in order. */
+  static Set<String> terms(final String query) {
+    return new LinkedHashSet<>(tokenize(query));
+  }
+
+  /** How many times each token occurs in the text. */
+  static Map<String, Integer> countTokens(final String text) {
+    final Map<String, Integer> counts = new HashMap<>();
+    for (String token : tokenize(text)) {
+      counts.merge(token, 1, Integer::sum);
+    }
+    return counts;
+  }
+
+  /**
+   * The fragment of about {@code fragmentSize} characters starting around the first token that a
+   * term is a prefix of, with the matching tokens highlighted, or null when nothing matches.
+   */
+  static String highlight(
+      final String text, final Collection<String> terms, final int fragmentSize) {
+    final List<int[]> matches = new ArrayList<>();
+    for (int[] bounds : tokenBounds(text)) {
+      if (matchesAny(text.substring(bounds[0], bounds[1]).toLowerCase(Locale.ROOT), terms)) {
+        matches.add(bounds);
+      }
+    }
+    if (matches.isEmpty()) {
+      return null;
+    }
+    int from = Math.max(0, matches.get(0)[0] - fragmentSize / 4);
+    while (from > 0 && Character.isLetterOrDigit(text.charAt(from - 1))) {
+      from--;
+    }
+    int to = Math.min(text.length(), from + fragmentSize);
+    final int firstMatchEnd = matches.get(0)[1];
+    while (to < text.length()
+        && to > firstMatchEnd
+        && Character.isLetterOrDigit(text.charAt(to - 1))
+        && Character.isLetterOrDigit(text.charAt(to))) {
+      to--;
+    }
+    while (to < text.length()
+        && to > firstMatchEnd
+        && Character.isWhitespace(text.charAt(to - 1))) {
+      to--;
+    }
+    final StringBuilder fragment = new StringBuilder(to - from + 32);
+    if (from > 0) {
+      fragment.append(ELLIPSIS);
+    }
+    int position = from;
+    for (int[] match : matches) {
+      if (match[0] >= to) {
+        break;
+      }
+      to = Math.max(to, match[1]);
+      escape(text, position, match[0], fragment);
+      fragment.append(HIGHLIGHT_START);
+      escape(text, match[0], match[1], fragment);
+      fragment.append(HIGHLIGHT_END);
+      position = match[1];
+    }
+    escape(text, position, to, fragment);
+    if (to < text.length()) {
+      fragment.append(ELLIPSIS);
+    }
+    return fragment.toString();
+  }
+
+  static boolean matchesAny(final String token, final Collection<String> terms) {
+    for (String term : terms) {
+      if (token.startsWith(term)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** The position of a search result: its score, then the position of the post. */
+  static String encodeSearchCursor(final SearchMatch match) {
+    final String cursor =
+        StringHelper.concatStrings(
+            StringHelper.COLON,
+            Double.toString(match.getScore()),
+            String.valueOf(match.getCreatedAtEpoch()),
+            match.getPostId());
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static SearchMatch decodeSearchCursor(final String cursor, final MessageSource messageSource)
+      throws BeanValidationException {
+    try {
+      final String decoded =
+          new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      final String[] parts = decoded.split(StringHelper.COLON, 3);
+      if (parts.length == 3 && !parts[2].isEmpty()) {
+        return new SearchMatch(parts[2], Long.parseLong(parts[1]), Double.parseDouble(parts[0]));
+      }
+    } catch (IllegalArgumentException e) {
+      // Reported below together with the cursors of the wrong shape.
+    }
+    final String cursorErrorMessage = getMessage(messageSource, CURSOR_ERROR_MSG, null);
+    throw new BeanValidationException(String.format(cursorErrorMessage, cursor));
+  }
+
+  static void escape(final String text, final int from, final int to, final StringBuilder out) {
+    for (int i = from; i < to; i++) {
+      final char c = text.charAt(i);
+      switch (c) {
+        case '<':
+          out.append("&lt;");
+          break;
+        case '>':
+          out.append("&gt;");
+          break;
+        case '&':
+          out.append("&amp;");
+          break;
+        case '"':
+          out.append("&quot;");
+          break;
+        case '\'':
+          out.append("&#39;");
+          break;
+        default:
+          out.append(c);
+      }
+    }
+  }
+}
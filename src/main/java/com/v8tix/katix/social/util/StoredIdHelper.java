@@ -0,0 +1,14 @@
+package com.v8tix.katix.social.util;
+
+import org.bson.types.ObjectId;
+
+public interface StoredIdHelper {
+
+  /**
+   * The {@code _id} the mapping layer stores for a String id, an ObjectId when the id is a valid
+   * one, for the queries that go to the driver directly.
+   */
+  static Object storedId(final String id) {
+    return ObjectId.isValid(id) ? new ObjectId(id) : id;
+  }
+}
@@ -1,7 +1,5 @@
 package com.v8tix.katix.social.util;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,10 +36,6 @@ public interface StringHelper {
   }
 
   static String toJson(final Object value) {
-    try {
-      return new ObjectMapper().writeValueAsString(value);
-    } catch (JsonProcessingException e) {
-      return EMPTY_STRING;
-    }
+    return JsonHelper.toJson(value);
   }
 }
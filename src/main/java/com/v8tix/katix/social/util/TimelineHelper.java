@@ -0,0 +1,67 @@
+package com.v8tix.katix.social.util;
+
+import com.v8tix.katix.social.model.TimelineEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The timeline entries in memory: merging the stored and the pulled ones, and paging through them
+ * with the same cursors as the posts, a position being the createdAtEpoch and the post id.
+ */
+public interface TimelineHelper {
+
+  /**
+   * The entries of both lists with each post once, newest first, at most {@code limit} of them. An
+   * account that crossed the pull threshold has the same posts on both sides.
+   */
+  static List<TimelineEntry> merge(
+      final List<TimelineEntry> first, final List<TimelineEntry> second, final long limit) {
+    final Map<String, TimelineEntry> byPostId = new LinkedHashMap<>();
+    first.forEach(entry -> byPostId.put(entry.getPostId(), entry));
+    second.forEach(entry -> byPostId.putIfAbsent(entry.getPostId(), entry));
+    final List<TimelineEntry> merged = new ArrayList<>(byPostId.values());
+    merged.sort(TimelineEntry.NEWEST_FIRST);
+    return merged.size() > limit ? merged.stream().limit(limit).collect(toList()) : merged;
+  }
+
+  /**
+   * The entries past the position, plus one to tell whether there are more. Entries are kept
+   * newest first; a backward page is returned oldest first, as {@code createCursorPage} expects.
+   */
+  static List<TimelineEntry> pageOf(
+      final List<TimelineEntry> entries,
+      final long perPage,
+      final String[] position,
+      final boolean backward) {
+    final List<TimelineEntry> fetched = new ArrayList<>();
+    if (!backward) {
+      for (TimelineEntry entry : entries) {
+        if (position == null || compare(entry, position) < 0) {
+          fetched.add(entry);
+          if (fetched.size() > perPage) {
+            break;
+          }
+        }
+      }
+    } else {
+      for (int i = entries.size() - 1; i >= 0 && fetched.size() <= perPage; i--) {
+        if (compare(entries.get(i), position) > 0) {
+          fetched.add(entries.get(i));
+        }
+      }
+    }
+    return fetched;
+  }
+
+  /** Compares the entry with a decoded cursor, older entries being smaller. */
+  static int compare(final TimelineEntry entry, final String[] position) {
+    final int byCreatedAtEpoch =
+        Long.compare(entry.getCreatedAtEpoch(), Long.parseLong(position[0]));
+    return byCreatedAtEpoch != 0 ? byCreatedAtEpoch : entry.getPostId().compareTo(position[1]);
+  }
+}
@@ -0,0 +1,55 @@
+package com.v8tix.katix.social;
+
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.v8tix.katix.social.util.BatchHelper.batches;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchHelperTests {
+
+  private static final Duration LONG_WAIT = Duration.ofSeconds(10);
+
+  @Test
+  public void shouldCloseFullBatches() {
+    final List<List<Integer>> batches =
+        batches(Flux.range(1, 5), 2, LONG_WAIT).collectList().block();
+    assertEquals(
+        Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Collections.singletonList(5)),
+        batches);
+  }
+
+  @Test
+  public void shouldClosePartialBatchesAfterWaiting() {
+    final Flux<Integer> slowItems =
+        Flux.concat(Flux.just(1, 2), Mono.delay(Duration.ofMillis(500)).thenReturn(3));
+    final List<List<Integer>> batches =
+        batches(slowItems, 10, Duration.ofMillis(50)).collectList().block();
+    assertEquals(Arrays.asList(Arrays.asList(1, 2), Collections.singletonList(3)), batches);
+  }
+
+  @Test
+  public void shouldOnlyReadWhatIsConsumed() {
+    final int[] emitted = {0};
+    final List<List<Integer>> firstBatches =
+        batches(Flux.range(1, 100_000).doOnNext(item -> emitted[0]++), 10, LONG_WAIT)
+            .take(2)
+            .collectList()
+            .block();
+    assertEquals(2, firstBatches.size());
+    assertTrue(emitted[0] < 100_000);
+  }
+
+  @Test
+  public void shouldEmitNothingForNoItems() {
+    assertEquals(
+        Collections.emptyList(), batches(Flux.empty(), 10, LONG_WAIT).collectList().block());
+  }
+}
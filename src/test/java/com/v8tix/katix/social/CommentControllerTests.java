@@ -33,6 +33,8 @@ import static com.v8tix.katix.social.util.StringHelper.concatStrings;
 import static java.lang.String.format;
 import static java.lang.String.valueOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.DEFINED_PORT;
 
 @RunWith(SpringRunner.class)
@@ -56,6 +58,12 @@ public class CommentControllerTests
   @Value("${rest.comments.path}")
   private String commentsPath;
 
+  @Value("${rest.users.path}")
+  private String usersPath;
+
+  @Value("${social.embed.preview_size}")
+  private int previewSize;
+
   private Post post;
   private Comment comment;
   private Comment newComment;
@@ -100,6 +108,13 @@ public class CommentControllerTests
         this::equalsByHashCode);
   }
 
+  @Test
+  public void shouldNotModifyComment() {
+    final String postId = post.getId();
+    final Comment comment = getRandomCommentByPostId(postId, operations);
+    getByIdNotModified(webTestClient, format(commentsPath, postId), comment.getId());
+  }
+
   private Comment getRandomCommentByPostId(String postId, MongoOperations operations) {
     final List<Comment> tempComments = getCommentsByPostId(postId, operations);
     return (Comment) MathHelper.getRandomObject(tempComments);
@@ -158,6 +173,45 @@ public class CommentControllerTests
         webTestClient, format(commentsPath, newComment.getPostId()), Comment.class, newComment);
   }
 
+  @Test
+  public void shouldSaveCommentNewPostVersion() {
+    final long version = operations.findById(newComment.getPostId(), Post.class).getVersion();
+    postValidType(
+        webTestClient, format(commentsPath, newComment.getPostId()), Comment.class, newComment);
+    final Post savedPost = operations.findById(newComment.getPostId(), Post.class);
+    assertEquals(version + 1, savedPost.getVersion());
+  }
+
+  @Test
+  public void shouldSaveCommentIncrementCommentCount() {
+    final String postId = newComment.getPostId();
+    final long commentCount = operations.findById(postId, Post.class).getCommentCount();
+    postValidType(webTestClient, format(commentsPath, postId), Comment.class, newComment);
+    assertEquals(commentCount + 1, operations.findById(postId, Post.class).getCommentCount());
+  }
+
+  @Test
+  public void shouldNotMoveCommentOnSave() {
+    final String postId = newComment.getPostId();
+    final long commentCount = operations.findById(postId, Post.class).getCommentCount();
+    newComment.setId(comment.getId());
+    postValidType(webTestClient, format(commentsPath, postId), Comment.class, newComment);
+    final Comment unchanged = operations.findById(comment.getId(), Comment.class);
+    assertEquals(comment.getPostId(), unchanged.getPostId());
+    assertEquals(comment.getContent(), unchanged.getContent());
+    assertEquals(commentCount + 1, operations.findById(postId, Post.class).getCommentCount());
+  }
+
+  @Test
+  public void shouldSaveCommentIntoLatestComments() {
+    final String postId = newComment.getPostId();
+    postValidType(webTestClient, format(commentsPath, postId), Comment.class, newComment);
+    final List<Comment> latestComments =
+        operations.findById(postId, Post.class).getLatestComments();
+    assertTrue(latestComments.size() <= previewSize);
+    assertEquals(newComment.getContent(), latestComments.get(0).getContent());
+  }
+
   @Test
   public void shouldNotSaveCommentBadPostIdParameter() {
     final String commentsUriWithPostId = format(commentsPath, FAKE_STRING);
@@ -193,6 +247,23 @@ public class CommentControllerTests
         getMessage(messageSource, UPSERT_INVALID_PARAMS_USER, null));
   }
 
+  @Test
+  public void shouldNotSaveCommentUserIdDeleted() {
+    final User user =
+        operations.insert(
+            new User(FAKE_STRING, FAKE_STRING, FAKE_MAIL, FAKE_STRING, FAKE_STRING));
+    final String commentsUriWithPostId = format(commentsPath, post.getId());
+    final Comment userComment = new Comment(FAKE_CONTENT, user.getId(), post.getId());
+    postValidType(webTestClient, commentsUriWithPostId, Comment.class, userComment);
+    deleteById(webTestClient, usersPath, user.getId());
+    postSingleError(
+        webTestClient,
+        commentsUriWithPostId,
+        Comment.class,
+        new Comment(FAKE_CONTENT, user.getId(), post.getId()),
+        getMessage(messageSource, UPSERT_INVALID_PARAMS_USER, null));
+  }
+
   @Test
   public void shouldNotUpdateCommentInvalidContent() {
     final String postId = post.getId();
@@ -278,6 +349,28 @@ public class CommentControllerTests
     deleteById(webTestClient, format(commentsPath, postId), comment.getId());
   }
 
+  @Test
+  public void shouldDeleteCommentDecrementCommentCount() {
+    final String postId = post.getId();
+    final long commentCount = operations.findById(postId, Post.class).getCommentCount();
+    final Comment comment = getRandomCommentByPostId(postId, operations);
+    deleteById(webTestClient, format(commentsPath, postId), comment.getId());
+    assertEquals(commentCount - 1, operations.findById(postId, Post.class).getCommentCount());
+  }
+
+  @Test
+  public void shouldDeleteCommentFromLatestComments() {
+    final String postId = post.getId();
+    final Comment comment = getRandomCommentByPostId(postId, operations);
+    deleteById(webTestClient, format(commentsPath, postId), comment.getId());
+    final List<Comment> latestComments =
+        operations.findById(postId, Post.class).getLatestComments();
+    assertFalse(latestComments.contains(comment));
+    assertEquals(
+        Math.min(previewSize, getCommentsByPostId(postId, operations).size()),
+        latestComments.size());
+  }
+
   @Test
   public void shouldNotDeleteComment() {
     final String postId = post.getId();
@@ -0,0 +1,60 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.component.CommentCountReconciler;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Post;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+
+import static com.v8tix.katix.social.model.Post.COMMENT_COUNT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.DEFINED_PORT;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Runs with batches much smaller than the posts, so that a pass has to walk past the first one,
+ * and without a grace period, as the seeded comments are only as old as the context. The other
+ * settings differ from the shared test context, hence its own port.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+    webEnvironment = DEFINED_PORT,
+    properties = {
+      "server.port=0",
+      "social.comment_count.batch_size=" + CommentCountReconcilerTests.BATCH_SIZE,
+      "social.comment_count.batch_delay_ms=1",
+      "social.comment_count.grace_ms=0"
+    })
+@ActiveProfiles("dev")
+public class CommentCountReconcilerTests {
+
+  static final int BATCH_SIZE = 3;
+
+  @Autowired private MongoOperations operations;
+
+  @Autowired private CommentCountReconciler commentCountReconciler;
+
+  @Test
+  public void shouldRepairDriftedCountsPastFirstBatch() {
+    operations.updateMulti(new Query(), new Update().inc(COMMENT_COUNT, 10), Post.class);
+    final long drifted = operations.count(new Query(), Post.class);
+    assertTrue(drifted > BATCH_SIZE);
+    assertEquals(Long.valueOf(drifted), commentCountReconciler.reconcile().block());
+    final List<Post> posts = operations.findAll(Post.class);
+    for (Post post : posts) {
+      final Query comments = query(where("postId").is(post.getId()));
+      assertEquals(operations.count(comments, Comment.class), post.getCommentCount());
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.model.Post;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.v8tix.katix.social.util.ETagHelper.conditionalResponse;
+import static com.v8tix.katix.social.util.ETagHelper.isNotModified;
+import static com.v8tix.katix.social.util.ETagHelper.isPreconditionFailed;
+import static com.v8tix.katix.social.util.ETagHelper.listETag;
+import static com.v8tix.katix.social.util.ETagHelper.versionETag;
+import static com.v8tix.katix.social.util.ETagHelper.versionsOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ETagHelperTests {
+
+  private static final String ETAG = versionETag(3);
+
+  @Test
+  public void shouldCompareIfNoneMatchWeakly() {
+    assertTrue(isNotModified("\"3\"", ETAG));
+    assertTrue(isNotModified("W/\"3\"", ETAG));
+    assertTrue(isNotModified("\"1\", \"3\"", ETAG));
+    assertTrue(isNotModified("*", ETAG));
+    assertFalse(isNotModified("\"4\"", ETAG));
+    assertFalse(isNotModified(null, ETAG));
+  }
+
+  @Test
+  public void shouldCompareIfMatchStrongly() {
+    assertFalse(isPreconditionFailed(null, ETAG));
+    assertFalse(isPreconditionFailed("\"3\"", ETAG));
+    assertFalse(isPreconditionFailed("*", ETAG));
+    assertTrue(isPreconditionFailed("W/\"3\"", ETAG));
+    assertTrue(isPreconditionFailed("\"2\"", ETAG));
+  }
+
+  @Test
+  public void shouldReadVersionsFromIfMatch() {
+    assertNull(versionsOf(null));
+    assertNull(versionsOf("\"1\", *"));
+    assertEquals(Arrays.asList(1L, 7L), versionsOf("\"1\", W/\"5\", \"7\""));
+    assertTrue(versionsOf("\"abc\"").isEmpty());
+  }
+
+  @Test
+  public void shouldTagListsByIdsVersionsAndQualifiers() {
+    final List<Post> posts = Arrays.asList(post("a", 1), post("b", 1));
+    final String eTag = listETag(posts, 2L, null);
+    assertEquals(eTag, listETag(Arrays.asList(post("a", 1), post("b", 1)), 2L, null));
+    assertNotEquals(eTag, listETag(Arrays.asList(post("a", 1), post("b", 2)), 2L, null));
+    assertNotEquals(eTag, listETag(Arrays.asList(post("b", 1), post("a", 1)), 2L, null));
+    assertNotEquals(eTag, listETag(posts, 3L, null));
+    assertNotEquals(eTag, listETag(posts, 2L, "comments"));
+  }
+
+  @Test
+  public void shouldNotBuildResponseWhenNotModified() {
+    final AtomicInteger builds = new AtomicInteger();
+    final ResponseEntity<Object> response =
+        conditionalResponse(
+                ETAG,
+                ETAG,
+                () -> {
+                  builds.incrementAndGet();
+                  return Mono.just(ResponseEntity.ok().build());
+                })
+            .block();
+    assertEquals(0, builds.get());
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    assertEquals(ETAG, response.getHeaders().getETag());
+  }
+
+  @Test
+  public void shouldTagModifiedResponses() {
+    final HttpHeaders headers = new HttpHeaders();
+    headers.set("Link", "<self>");
+    final ResponseEntity<Object> response =
+        conditionalResponse(
+                versionETag(2), ETAG, () -> Mono.just(new ResponseEntity<>(headers, HttpStatus.OK)))
+            .block();
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(ETAG, response.getHeaders().getETag());
+    assertEquals("<self>", response.getHeaders().getFirst("Link"));
+  }
+
+  private static Post post(final String id, final long version) {
+    final Post post = new Post();
+    post.setId(id);
+    post.setVersion(version);
+    return post;
+  }
+}
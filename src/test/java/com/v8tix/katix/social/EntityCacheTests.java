@@ -0,0 +1,104 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.component.EntityCache;
+import com.v8tix.katix.social.model.Post;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EntityCacheTests {
+
+  private static final String ID = "5b85bc5610dfea5143d83d75";
+  private static final long TTL_MS = 60000;
+  private static final long MAX_SIZE = 100;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  public void shouldLoadOncePerKeyUnderConcurrentMisses() {
+    final EntityCache<Post> postCache = createPostCache(true);
+    final List<Post> posts =
+        Flux.range(0, 50)
+            .flatMap(i -> postCache.get(ID, id -> slowLoad(id)))
+            .collectList()
+            .block();
+    assertEquals(50, posts.size());
+    assertEquals(1, loads.get());
+    final double hits =
+        meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count();
+    assertEquals(49.0, hits, 0);
+  }
+
+  @Test
+  public void shouldReturnCopies() {
+    final EntityCache<Post> postCache = createPostCache(true);
+    final Post post = postCache.get(ID, this::load).block();
+    post.addComments(Collections.emptyList());
+    post.setContent("changed");
+    final Post cachedPost = postCache.get(ID, this::load).block();
+    assertNotSame(post, cachedPost);
+    assertEquals("content", cachedPost.getContent());
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void shouldLoadAgainAfterInvalidate() {
+    final EntityCache<Post> postCache = createPostCache(true);
+    postCache.get(ID, this::load).block();
+    postCache.invalidate(ID);
+    postCache.get(ID, this::load).block();
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void shouldNotCacheMissingEntities() {
+    final EntityCache<Post> postCache = createPostCache(true);
+    assertNull(postCache.get(ID, id -> countedEmpty()).block());
+    assertNull(postCache.get(ID, id -> countedEmpty()).block());
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void shouldPassThroughWhenDisabled() {
+    final EntityCache<Post> postCache = createPostCache(false);
+    postCache.get(ID, this::load).block();
+    postCache.get(ID, this::load).block();
+    assertFalse(postCache.isEnabled());
+    assertEquals(2, loads.get());
+    assertTrue(meterRegistry.find("cache.gets").functionCounters().isEmpty());
+  }
+
+  private EntityCache<Post> createPostCache(final boolean enabled) {
+    return EntityCache.create("posts", enabled, TTL_MS, MAX_SIZE, Post::copy, meterRegistry);
+  }
+
+  private Mono<Post> load(final String id) {
+    loads.incrementAndGet();
+    final Post post = new Post("content", "userId");
+    post.setId(id);
+    return Mono.just(post);
+  }
+
+  private Mono<Post> slowLoad(final String id) {
+    return load(id).delayElement(Duration.ofMillis(100));
+  }
+
+  private Mono<Post> countedEmpty() {
+    loads.incrementAndGet();
+    return Mono.empty();
+  }
+}
@@ -0,0 +1,86 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.component.EventBus;
+import com.v8tix.katix.social.model.FeedEvent;
+import com.v8tix.katix.social.model.Post;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.v8tix.katix.social.model.FeedEvent.Type.CREATED;
+import static com.v8tix.katix.social.model.FeedEvent.Type.DELETED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventBusTests {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  @Test
+  public void shouldDeliverMatchingEventsInOrder() {
+    final EventBus eventBus = new EventBus(new SimpleMeterRegistry(), 16);
+    StepVerifier.create(eventBus.events(event -> event.getType() == CREATED))
+        .then(
+            () -> {
+              eventBus.publish(FeedEvent.of(CREATED, post("1")));
+              eventBus.publish(FeedEvent.of(DELETED, post("1")));
+              eventBus.publish(FeedEvent.of(CREATED, post("2")));
+            })
+        .assertNext(event -> assertEquals("1", event.getId()))
+        .assertNext(
+            event -> {
+              assertEquals("2", event.getId());
+              assertEquals(3, event.getSequence());
+            })
+        .thenCancel()
+        .verify(TIMEOUT);
+  }
+
+  @Test
+  public void shouldDropOldestEventsOfSlowSubscribers() throws InterruptedException {
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final EventBus eventBus = new EventBus(meterRegistry, 3);
+    final List<String> received = new CopyOnWriteArrayList<>();
+    final CountDownLatch last = new CountDownLatch(1);
+    final BaseSubscriber<FeedEvent> slowSubscriber =
+        new BaseSubscriber<FeedEvent>() {
+          @Override
+          protected void hookOnSubscribe(final Subscription subscription) {}
+
+          @Override
+          protected void hookOnNext(final FeedEvent event) {
+            received.add(event.getId());
+            if ("10".equals(event.getId())) {
+              last.countDown();
+            }
+          }
+        };
+    eventBus.events(event -> true).subscribe(slowSubscriber);
+    for (int i = 1; i <= 10; i++) {
+      eventBus.publish(FeedEvent.of(CREATED, post(Integer.toString(i))));
+    }
+    slowSubscriber.request(Long.MAX_VALUE);
+    assertTrue(last.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+    slowSubscriber.dispose();
+    // One event may already have been on its way to the subscriber, the rest are the newest.
+    assertTrue(received.size() <= 4);
+    assertEquals(
+        Arrays.asList("8", "9", "10"), received.subList(received.size() - 3, received.size()));
+    assertTrue(meterRegistry.get("social.feed.dropped").counter().count() >= 6);
+  }
+
+  private static Post post(final String id) {
+    final Post post = new Post();
+    post.setId(id);
+    return post;
+  }
+}
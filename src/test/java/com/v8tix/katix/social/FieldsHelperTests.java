@@ -0,0 +1,98 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.Post;
+import org.bson.Document;
+import org.junit.Test;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.v8tix.katix.social.util.FieldsHelper.parseFields;
+import static com.v8tix.katix.social.util.FieldsHelper.project;
+import static com.v8tix.katix.social.util.FieldsHelper.propertiesOf;
+import static com.v8tix.katix.social.util.FieldsHelper.wants;
+import static com.v8tix.katix.social.util.FieldsHelper.withFields;
+import static com.v8tix.katix.social.util.JsonHelper.MAPPER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FieldsHelperTests {
+
+  private final ResourceBundleMessageSource messageSource = messageSource();
+
+  @Test
+  public void shouldParseFields() {
+    assertNull(parseFields(null, Post.class, messageSource));
+    assertEquals(
+        new TreeSet<>(Arrays.asList("content", "id")),
+        parseFields(" id,content,,id ", Post.class, messageSource));
+  }
+
+  @Test(expected = BeanValidationException.class)
+  public void shouldRejectUnknownFields() {
+    parseFields("id,nope", Post.class, messageSource);
+  }
+
+  @Test(expected = BeanValidationException.class)
+  public void shouldRejectIgnoredFields() {
+    parseFields("contentHash", Post.class, messageSource);
+  }
+
+  @Test(expected = BeanValidationException.class)
+  public void shouldRejectNoFields() {
+    parseFields(",", Post.class, messageSource);
+  }
+
+  @Test
+  public void shouldListSerializedProperties() {
+    final Set<String> properties = propertiesOf(Post.class);
+    assertTrue(properties.contains("content"));
+    assertTrue(properties.contains("comments"));
+    assertFalse(properties.contains("contentHash"));
+    assertFalse(properties.contains("latestComments"));
+  }
+
+  @Test
+  public void shouldProjectFieldsAndRequiredFields() {
+    final Document projection =
+        project(new Query(), Collections.singleton("content"), "id", "version").getFieldsObject();
+    assertEquals(new TreeSet<>(Arrays.asList("content", "id", "version")), projection.keySet());
+    assertTrue(project(new Query(), null, "id").getFieldsObject().isEmpty());
+    assertTrue(wants(null, "comments"));
+    assertFalse(wants(Collections.singleton("content"), "comments"));
+  }
+
+  @Test
+  public void shouldWriteOnlyTheFields() throws Exception {
+    final Post post = new Post("content", "user");
+    post.setId("post");
+    post.setVersion(3);
+    final ResponseEntity<Object> full = new ResponseEntity<>(post, HttpStatus.OK);
+    assertSame(full, withFields(full, Post.FIELDS_FILTER, null));
+    assertTrue(MAPPER.writeValueAsString(post).contains("\"version\":3"));
+
+    final MappingJacksonValue body =
+        (MappingJacksonValue)
+            withFields(full, Post.FIELDS_FILTER, new TreeSet<>(Arrays.asList("id", "content")))
+                .getBody();
+    final String json = MAPPER.writer(body.getFilters()).writeValueAsString(body.getValue());
+    assertEquals("{\"id\":\"post\",\"content\":\"content\"}", json);
+  }
+
+  private static ResourceBundleMessageSource messageSource() {
+    final ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+    messageSource.setBasename("messages");
+    return messageSource;
+  }
+}
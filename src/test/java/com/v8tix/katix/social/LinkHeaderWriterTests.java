@@ -0,0 +1,156 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.util.LinkRelation;
+import com.v8tix.katix.social.utils.LegacyLinkHelper;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static com.v8tix.katix.social.util.CursorHelper.encodeCursor;
+import static com.v8tix.katix.social.util.RestHelper.LINK_HEADER;
+import static com.v8tix.katix.social.util.RestHelper.createCursorLinkHeaderResponse;
+import static com.v8tix.katix.social.util.RestHelper.createCursorWebLink;
+import static com.v8tix.katix.social.util.RestHelper.createLocationAndLinkHeadersResponse;
+import static com.v8tix.katix.social.util.RestHelper.createPageableLinkHeaderResponse;
+import static com.v8tix.katix.social.util.RestHelper.createPageableWebLink;
+import static com.v8tix.katix.social.util.RestHelper.createPageableWebLinks;
+import static com.v8tix.katix.social.util.RestHelper.createSelfLinkHeaderResponse;
+import static com.v8tix.katix.social.util.RestHelper.createWebLink;
+import static com.v8tix.katix.social.util.StringHelper.EMPTY_STRING;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class LinkHeaderWriterTests {
+
+  private static final String POSTS_PATH = "localhost:8080/katix/social/api/v1/posts/";
+  private static final String USERS_PATH = "localhost:8080/katix/social/api/v1/users/";
+  private static final String ID = "5b85bc5610dfea5143d83d75";
+  private static final long[] PER_PAGES = {1, 5, 7, 100};
+  private static final long[] NUMBER_OF_ELEMENTS = {1, 5, 21, 100, 1001};
+
+  @Test
+  public void shouldWriteSameWebLinks() {
+    for (LinkRelation linkRelation : LinkRelation.values()) {
+      assertSameBytes(
+          LegacyLinkHelper.createWebLink(POSTS_PATH, linkRelation),
+          createWebLink(POSTS_PATH, linkRelation));
+      assertSameBytes(
+          LegacyLinkHelper.createPageableWebLink(POSTS_PATH, 3, 5, linkRelation),
+          createPageableWebLink(POSTS_PATH, 3, 5, linkRelation));
+      assertSameBytes(
+          LegacyLinkHelper.createCursorWebLink(POSTS_PATH, 5, cursor(), null, linkRelation),
+          createCursorWebLink(POSTS_PATH, 5, cursor(), null, linkRelation));
+      assertSameBytes(
+          LegacyLinkHelper.createCursorWebLink(POSTS_PATH, 5, null, cursor(), linkRelation),
+          createCursorWebLink(POSTS_PATH, 5, null, cursor(), linkRelation));
+    }
+  }
+
+  @Test
+  public void shouldWriteSamePageableWebLinks() {
+    for (long perPage : PER_PAGES) {
+      for (long numberOfElements : NUMBER_OF_ELEMENTS) {
+        for (long page = 0; page <= numberOfElements / perPage + 2; page++) {
+          assertSameBytes(
+              LegacyLinkHelper.createPageableWebLinks(POSTS_PATH, page, perPage, numberOfElements),
+              createPageableWebLinks(POSTS_PATH, page, perPage, numberOfElements));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldWriteSamePageableHeader() {
+    final String selfWebLink = createPageableWebLink(POSTS_PATH, 2, 5, LinkRelation.SELF);
+    final ResponseEntity<Object> response =
+        createPageableLinkHeaderResponse(
+            POSTS_PATH, 2, 5, 21, Collections.emptyList(), selfWebLink);
+    assertSameBytes(
+        LegacyLinkHelper.createPageableHeader(POSTS_PATH, 2, 5, 21, selfWebLink),
+        response.getHeaders().getFirst(LINK_HEADER));
+  }
+
+  @Test
+  public void shouldWriteSameCursorHeader() {
+    final String[][] cursors = {
+      {null, null}, {cursor(), null}, {null, cursor()}, {cursor(), cursor()}
+    };
+    for (String[] cursor : cursors) {
+      final CursorPage<Long> cursorPage =
+          new CursorPage<>(Collections.singletonList(1L), cursor[0], cursor[1]);
+      final String selfWebLink = createCursorWebLink(POSTS_PATH, 5, null, null, LinkRelation.SELF);
+      final ResponseEntity<Object> response =
+          createCursorLinkHeaderResponse(POSTS_PATH, 5, cursorPage, selfWebLink);
+      assertSameBytes(
+          LegacyLinkHelper.createCursorHeader(POSTS_PATH, 5, cursorPage, selfWebLink),
+          response.getHeaders().getFirst(LINK_HEADER));
+    }
+  }
+
+  @Test
+  public void shouldWriteSameSelfAndLocationHeaders() {
+    final String userWebLink = createWebLink(USERS_PATH + ID, LinkRelation.USER);
+    final String commentsWebLink =
+        createPageableWebLink(POSTS_PATH + ID + "/comments/", 1, 5, LinkRelation.COMMENTS);
+    final ResponseEntity<Object> selfResponse =
+        createSelfLinkHeaderResponse(
+            POSTS_PATH, ID, null, HttpStatus.OK, commentsWebLink, EMPTY_STRING, userWebLink);
+    assertSameBytes(
+        LegacyLinkHelper.createSelfWebLinks(
+            POSTS_PATH, ID, commentsWebLink, EMPTY_STRING, userWebLink),
+        selfResponse.getHeaders().getFirst(LINK_HEADER));
+    final ResponseEntity<Object> locationResponse =
+        createLocationAndLinkHeadersResponse(POSTS_PATH, ID, userWebLink, commentsWebLink);
+    assertSameBytes(
+        userWebLink + "," + commentsWebLink,
+        locationResponse.getHeaders().getFirst(LINK_HEADER));
+  }
+
+  @Test
+  public void shouldNotLeakPreviousHeaderIntoNextOne() {
+    final String longHeader = createPageableWebLinks(POSTS_PATH, 2, 1, 1000);
+    final String shortHeader = createWebLink(USERS_PATH, LinkRelation.SELF);
+    assertNotEquals(longHeader, shortHeader);
+    assertSameBytes(LegacyLinkHelper.createWebLink(USERS_PATH, LinkRelation.SELF), shortHeader);
+  }
+
+  @Test
+  public void shouldWriteSameLinksWithOversizedHeader() {
+    final ArrayList<String> webLinks = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      webLinks.add(createWebLink(POSTS_PATH + i, LinkRelation.SELF));
+    }
+    final String[] webLinksArray = webLinks.toArray(new String[0]);
+    final ResponseEntity<Object> response =
+        createSelfLinkHeaderResponse(POSTS_PATH, ID, null, HttpStatus.OK, webLinksArray);
+    assertSameBytes(
+        LegacyLinkHelper.createSelfWebLinks(POSTS_PATH, ID, webLinksArray),
+        response.getHeaders().getFirst(LINK_HEADER));
+    assertSameBytes(
+        LegacyLinkHelper.createWebLink(USERS_PATH, LinkRelation.USER),
+        createWebLink(USERS_PATH, LinkRelation.USER));
+  }
+
+  @Test
+  public void shouldAppendCursorToSearchPath() {
+    final String searchPath = "localhost:8080/katix/social/api/v1/posts/_search?q=rock";
+    assertEquals(
+        "<" + searchPath + "&per_page=5&after=" + cursor() + LinkRelation.NEXT.getLinkSuffix(),
+        createCursorWebLink(searchPath, 5, cursor(), null, LinkRelation.NEXT));
+  }
+
+  private static String cursor() {
+    return encodeCursor(1535491159707L, ID);
+  }
+
+  private static void assertSameBytes(final String expected, final String actual) {
+    assertEquals(expected, actual);
+    assertArrayEquals(expected.getBytes(UTF_8), actual.getBytes(UTF_8));
+  }
+}
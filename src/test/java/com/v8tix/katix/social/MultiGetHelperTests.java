@@ -0,0 +1,58 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.MultiGetResult;
+import com.v8tix.katix.social.model.Post;
+import org.junit.Test;
+import org.springframework.context.support.ResourceBundleMessageSource;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.v8tix.katix.social.util.MultiGetHelper.inRequestedOrder;
+import static com.v8tix.katix.social.util.MultiGetHelper.parseIds;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+public class MultiGetHelperTests {
+
+  private static final int MAX_IDS = 3;
+
+  private final ResourceBundleMessageSource messageSource = messageSource();
+
+  @Test
+  public void shouldParseIdsInOrder() {
+    assertEquals(Arrays.asList("c", "a", "b"), parseIds(" c,a,,c , b", MAX_IDS, messageSource));
+  }
+
+  @Test(expected = BeanValidationException.class)
+  public void shouldRejectNoIds() {
+    parseIds(" , ", MAX_IDS, messageSource);
+  }
+
+  @Test(expected = BeanValidationException.class)
+  public void shouldRejectTooManyIds() {
+    parseIds("a,b,c,d", MAX_IDS, messageSource);
+  }
+
+  @Test
+  public void shouldKeepRequestedOrderAndReportMissing() {
+    final MultiGetResult<Post> result =
+        inRequestedOrder(Arrays.asList("c", "x", "a"), Arrays.asList(post("a"), post("c")));
+    assertEquals(
+        Arrays.asList("c", "a"), result.getItems().stream().map(Post::getId).collect(toList()));
+    assertEquals(Collections.singletonList("x"), result.getMissing());
+  }
+
+  private static Post post(final String id) {
+    final Post post = new Post();
+    post.setId(id);
+    return post;
+  }
+
+  private static ResourceBundleMessageSource messageSource() {
+    final ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+    messageSource.setBasename("messages");
+    return messageSource;
+  }
+}
@@ -1,11 +1,15 @@
 package com.v8tix.katix.social;
 
+import com.v8tix.katix.social.model.BulkResult;
+import com.v8tix.katix.social.model.Comment;
 import com.v8tix.katix.social.model.Post;
 import com.v8tix.katix.social.utils.CommonConstants;
 import com.v8tix.katix.social.utils.CommonRestTestsHelper;
 import com.v8tix.katix.social.utils.CommonValidatorsHelper;
+import com.v8tix.katix.social.util.LinkRelation;
 import com.v8tix.katix.social.util.MathHelper;
 import com.v8tix.katix.social.util.MessageSourceHelper;
+import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -14,18 +18,30 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.MessageSource;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 import static com.v8tix.katix.social.util.MessageSourceHelper.getMessage;
 import static com.v8tix.katix.social.util.RestHelper.*;
+import static com.v8tix.katix.social.util.StringHelper.*;
 import static java.lang.String.valueOf;
 import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.springframework.http.MediaType.APPLICATION_STREAM_JSON;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.DEFINED_PORT;
 
 @RunWith(SpringRunner.class)
@@ -76,6 +92,66 @@ public class PostControllerTests
     getAll(webTestClient, postsPageableEmbedPath, posts, Post.class, this::validateListTypes);
   }
 
+  @Test
+  public void getAllPostsByCursor() {
+    final String postsCursorPath = createCursorPath(postsPath, PER_PAGE, null, null);
+    posts = getPageablePosts();
+    getAll(webTestClient, postsCursorPath, posts, Post.class, this::validateListTypes);
+  }
+
+  @Test
+  public void shouldWalkPostsByCursorAcrossEqualEpochs() {
+    final List<String> tieIds = insertTies(post.getCreatedAtEpoch(), 7);
+    try {
+      final List<String> expectedIds =
+          operations.findAll(Post.class).stream()
+              .sorted(
+                  comparing(Post::getCreatedAtEpoch)
+                      .thenComparing(other -> new ObjectId(other.getId()))
+                      .reversed())
+              .map(Post::getId)
+              .collect(toList());
+      final List<String> walkedIds = new ArrayList<>();
+      String after = null;
+      do {
+        final EntityExchangeResult<List<Post>> page =
+            webTestClient
+                .get()
+                .uri(createCursorPath(postsPath, PER_PAGE, after, null))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Post.class)
+                .returnResult();
+        page.getResponseBody().forEach(listed -> walkedIds.add(listed.getId()));
+        after = nextCursor(page.getResponseHeaders().getFirst(LINK_HEADER));
+      } while (after != null);
+      assertEquals(expectedIds, walkedIds);
+    } finally {
+      operations.remove(query(where("_id").in(tieIds)), Post.class);
+    }
+  }
+
+  // Posts sharing the epoch, so that some page boundary falls between two of them.
+  private List<String> insertTies(final long createdAtEpoch, final int count) {
+    return IntStream.range(0, count)
+        .mapToObj(
+            i -> {
+              final Post tie = post.copy();
+              tie.setId(null);
+              tie.setCreatedAtEpoch(createdAtEpoch);
+              return operations.insert(tie).getId();
+            })
+        .collect(toList());
+  }
+
+  private static String nextCursor(final String linkHeader) {
+    final Matcher next =
+        Pattern.compile("&after=([^>&]+)" + Pattern.quote(LinkRelation.NEXT.getLinkSuffix()))
+            .matcher(linkHeader);
+    return next.find() ? next.group(1) : null;
+  }
+
   private List<Post> getPageablePosts() {
     return posts.stream()
         .sorted(comparing(Post::getCreatedAtEpoch).reversed())
@@ -90,6 +166,141 @@ public class PostControllerTests
     getById(webTestClient, postsPath, id, post, Post.class, this::equalsByTypeId);
   }
 
+  @Test
+  public void shouldFindPostFields() {
+    final String uri = concatStrings(EMPTY_STRING, postsPath, post.getId(), "?fields=id,content");
+    webTestClient
+        .get()
+        .uri(uri)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.id")
+        .isEqualTo(post.getId())
+        .jsonPath("$.content")
+        .isEqualTo(post.getContent())
+        .jsonPath("$.userId")
+        .doesNotExist()
+        .jsonPath("$.comments")
+        .doesNotExist();
+  }
+
+  @Test
+  public void getAllPostsFields() {
+    final String uri =
+        concatStrings(
+            EMPTY_STRING, createCursorPath(postsPath, PER_PAGE, null, null), "&fields=content");
+    webTestClient
+        .get()
+        .uri(uri)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$[0].content")
+        .exists()
+        .jsonPath("$[0].id")
+        .doesNotExist();
+  }
+
+  @Test
+  public void shouldNotFindPostUnknownFields() {
+    final String uri = concatStrings(EMPTY_STRING, postsPath, post.getId(), "?fields=", FAKE_STRING);
+    webTestClient.get().uri(uri).exchange().expectStatus().isBadRequest();
+  }
+
+  @Test
+  public void shouldNotListPostsByCursorPastMaxPerPage() {
+    final String uri = concatStrings(EMPTY_STRING, postsPath, "?per_page=2147483647");
+    webTestClient.get().uri(uri).exchange().expectStatus().isBadRequest();
+  }
+
+  @Test
+  public void shouldSearchPostsByContent() {
+    final Post newPost = post.copy();
+    newPost.setId(null);
+    newPost.setContent("Zyzzyvas & zyzzyva <3");
+    operations.insert(newPost);
+    webTestClient
+        .get()
+        .uri(concatStrings(EMPTY_STRING, postsPath, "_search?q=zyzzyva&per_page=5&mode=mongo"))
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectHeader()
+        .exists(LINK_HEADER)
+        .expectBody()
+        .jsonPath("$[0].post.id")
+        .isEqualTo(newPost.getId())
+        .jsonPath("$[0].highlights.content[0]")
+        .isEqualTo("<em>Zyzzyvas</em> &amp; <em>zyzzyva</em> &lt;3");
+  }
+
+  @Test
+  public void shouldSearchPostsByPrefix() {
+    final Post newPost = post.copy();
+    newPost.setId(null);
+    newPost.setContent("Zyzzyvas everywhere");
+    postValidType(webTestClient, postsPath, Post.class, newPost);
+    webTestClient
+        .get()
+        .uri(concatStrings(EMPTY_STRING, postsPath, "_search?q=zyzz&per_page=5&mode=memory"))
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$[0].post.content")
+        .isEqualTo(newPost.getContent())
+        .jsonPath("$[0].highlights.content[0]")
+        .isEqualTo("<em>Zyzzyvas</em> everywhere");
+  }
+
+  @Test
+  public void shouldNotSearchPostsWithoutTerms() {
+    final String uri = concatStrings(EMPTY_STRING, postsPath, "_search?q=!!&per_page=5");
+    webTestClient.get().uri(uri).exchange().expectStatus().isBadRequest();
+  }
+
+  @Test
+  public void shouldFindPostsByIds() {
+    final Post other =
+        posts.stream().filter(candidate -> !candidate.equals(post)).findFirst().get();
+    final String uri =
+        concatStrings(
+            EMPTY_STRING, postsPath, IDS_PART, other.getId(), ",", FAKE_STRING, ",", post.getId());
+    webTestClient
+        .get()
+        .uri(uri)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectHeader()
+        .exists(LINK_HEADER)
+        .expectBody()
+        .jsonPath("$.items.length()")
+        .isEqualTo(2)
+        .jsonPath("$.items[0].id")
+        .isEqualTo(other.getId())
+        .jsonPath("$.items[1].id")
+        .isEqualTo(post.getId())
+        .jsonPath("$.missing[0]")
+        .isEqualTo(FAKE_STRING);
+  }
+
+  @Test
+  public void shouldNotFindTooManyPostsByIds() {
+    final String ids =
+        IntStream.rangeClosed(0, 100).mapToObj(String::valueOf).collect(joining(","));
+    final String uri = concatStrings(EMPTY_STRING, postsPath, IDS_PART, ids);
+    webTestClient.get().uri(uri).exchange().expectStatus().isBadRequest();
+  }
+
+  @Test
+  public void shouldNotModifyPost() {
+    getByIdNotModified(webTestClient, postsPath, post.getId());
+  }
+
   @Test
   public void shouldNotFindPost() {
     getByFakeId(webTestClient, postsPath, FAKE_STRING);
@@ -102,6 +313,20 @@ public class PostControllerTests
     assertEquals(this.posts.size() - 1, posts.size());
   }
 
+  @Test
+  public void shouldDeletePostComments() {
+    final Query postComments = query(where("postId").is(post.getId()));
+    deleteById(webTestClient, postsPath, post.getId());
+    awaitZero(() -> operations.count(postComments, Comment.class));
+  }
+
+  @Test
+  public void shouldNotDeletePostStaleETag() {
+    deleteByIdPreconditionFailed(webTestClient, postsPath, post.getId());
+    final List<Post> posts = operations.findAll(Post.class);
+    assertEquals(this.posts.size(), posts.size());
+  }
+
   @Test
   public void shouldNotDeletePost() {
     deleteByFakeId(webTestClient, postsPath, FAKE_STRING);
@@ -134,6 +359,79 @@ public class PostControllerTests
     postValidType(webTestClient, postsPath, Post.class, post);
   }
 
+  @Test
+  public void shouldNotReplacePostOnSave() {
+    final Post stored = operations.findById(post.getId(), Post.class);
+    final long numberOfPosts = operations.count(new Query(), Post.class);
+    post.setContent("Posted again with the id of a stored post");
+    post.setVersion(stored.getVersion() + 10);
+    post.setCommentCount(stored.getCommentCount() + 10);
+    postValidType(webTestClient, postsPath, Post.class, post);
+    final Post unchanged = operations.findById(post.getId(), Post.class);
+    assertEquals(stored.getContent(), unchanged.getContent());
+    assertEquals(stored.getVersion(), unchanged.getVersion());
+    assertEquals(stored.getCommentCount(), unchanged.getCommentCount());
+    assertEquals(stored.getLatestComments(), unchanged.getLatestComments());
+    assertEquals(numberOfPosts + 1, operations.count(new Query(), Post.class));
+  }
+
+  @Test
+  public void shouldExportPostsOldestFirst() {
+    final List<Post> exported = getExport(webTestClient, postsPath, null, Post.class);
+    assertEquals(posts.size(), exported.size());
+    final List<Post> sorted = new ArrayList<>(exported);
+    sorted.sort(comparing(Post::getCreatedAtEpoch).thenComparing(Post::getId));
+    assertEquals(sorted, exported);
+  }
+
+  @Test
+  public void shouldResumeExportAfterPosition() {
+    final List<String> tieIds = insertTies(post.getCreatedAtEpoch(), 4);
+    try {
+      final List<Post> exported = getExport(webTestClient, postsPath, null, Post.class);
+      // Resumed from inside the run of equal epochs.
+      final int lastIndex = exported.indexOf(operations.findById(tieIds.get(0), Post.class)) + 1;
+      final Post last = exported.get(lastIndex);
+      assertEquals(post.getCreatedAtEpoch(), last.getCreatedAtEpoch());
+      final String after = concatStrings(COLON, valueOf(last.getCreatedAtEpoch()), last.getId());
+      assertEquals(
+          exported.subList(lastIndex + 1, exported.size()),
+          getExport(webTestClient, postsPath, after, Post.class));
+    } finally {
+      operations.remove(query(where("_id").in(tieIds)), Post.class);
+    }
+  }
+
+  @Test
+  public void shouldNotExportPostsInvalidPosition() {
+    final String uri = concatStrings(EMPTY_STRING, postsPath, "_export?after=", FAKE_STRING);
+    webTestClient
+        .get()
+        .uri(uri)
+        .accept(APPLICATION_STREAM_JSON)
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
+  @Test
+  public void shouldBulkSavePosts() {
+    final Post newPost = post.copy();
+    newPost.setId(null);
+    final List<BulkResult> results =
+        postBulk(webTestClient, postsPath, newPost.toString(), post.toString(), "{", "{}");
+    assertEquals(
+        Arrays.asList(201, 409, 400, 400),
+        results.stream().map(BulkResult::getStatus).collect(toList()));
+    assertEquals(
+        Arrays.asList(1L, 2L, 3L, 4L),
+        results.stream().map(BulkResult::getLine).collect(toList()));
+    assertEquals(posts.size() + 1, operations.findAll(Post.class).size());
+    final Post savedPost = operations.findById(results.get(0).getId(), Post.class);
+    assertEquals(newPost.getContent(), savedPost.getContent());
+    assertEquals(1, savedPost.getVersion());
+  }
+
   @Test
   public void shouldNotUpdatePostInvalidContent() {
     final String expectedMessage = getMessage(messageSource, CONTENT_NOT_EMPTY, null);
@@ -153,6 +451,27 @@ public class PostControllerTests
     putInvalidIdValidType(webTestClient, postsPath, FAKE_STRING, Post.class, post);
   }
 
+  @Test
+  public void shouldNotUpdatePostStaleETag() {
+    post.setContent(FAKE_STRING);
+    putIdPreconditionFailed(webTestClient, postsPath, post.getId(), Post.class, post);
+  }
+
+  @Test
+  public void shouldNotUpdatePostStaleVersion() {
+    post.setContent(FAKE_STRING);
+    post.setVersion(post.getVersion() + 2);
+    putIdConflict(webTestClient, postsPath, post.getId(), Post.class, post);
+  }
+
+  @Test
+  public void shouldNotWriteUnchangedPost() {
+    putIdValidType(webTestClient, postsPath, post.getId(), Post.class, post);
+    final long version = operations.findById(post.getId(), Post.class).getVersion();
+    putIdValidType(webTestClient, postsPath, post.getId(), Post.class, post);
+    assertEquals(version, operations.findById(post.getId(), Post.class).getVersion());
+  }
+
   @Test
   public void shouldUpdatePost() {
     final Post postToUpdate = posts.get(FIRST_INDEX);
@@ -1,5 +1,6 @@
 package com.v8tix.katix.social;
 
+import com.v8tix.katix.social.model.CursorPage;
 import com.v8tix.katix.social.utils.CommonConstants;
 import com.v8tix.katix.social.util.LinkRelation;
 import org.junit.Test;
@@ -11,10 +12,13 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import static com.v8tix.katix.social.util.CursorHelper.*;
 import static com.v8tix.katix.social.util.RestHelper.*;
 import static com.v8tix.katix.social.util.StringHelper.*;
 import static java.lang.String.format;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.DEFINED_PORT;
 
 @RunWith(SpringRunner.class)
@@ -135,6 +139,53 @@ public class PostPaginationTests implements CommonConstants {
     assertEquals(EMPTY_STRING, nextLink);
   }
 
+  @Test
+  public void shouldDecodeEncodedCursor() {
+    final String cursor = encodeCursor(1535491159707L, "5b85bc5610dfea5143d83d75");
+    final String[] decodedCursor = decodeCursor(cursor, null, null);
+    assertEquals("1535491159707", decodedCursor[0]);
+    assertEquals("5b85bc5610dfea5143d83d75", decodedCursor[1]);
+  }
+
+  @Test
+  public void shouldCreateFirstCursorPage() {
+    final CursorPage<Long> cursorPage =
+        createCursorPage(asList(6L, 5L, 4L, 3L, 2L, 1L), PER_PAGE, null, null, String::valueOf);
+    assertEquals(asList(6L, 5L, 4L, 3L, 2L), cursorPage.getItems());
+    assertEquals("2", cursorPage.getNext());
+    assertNull(cursorPage.getPrevious());
+  }
+
+  @Test
+  public void shouldCreateLastCursorPage() {
+    final CursorPage<Long> cursorPage =
+        createCursorPage(asList(3L, 2L, 1L), PER_PAGE, "4", null, String::valueOf);
+    assertEquals(asList(3L, 2L, 1L), cursorPage.getItems());
+    assertNull(cursorPage.getNext());
+    assertEquals("3", cursorPage.getPrevious());
+  }
+
+  @Test
+  public void shouldCreateBackwardCursorPage() {
+    final CursorPage<Long> cursorPage =
+        createCursorPage(asList(2L, 3L, 4L, 5L, 6L, 7L), PER_PAGE, null, "1", String::valueOf);
+    assertEquals(asList(6L, 5L, 4L, 3L, 2L), cursorPage.getItems());
+    assertEquals("2", cursorPage.getNext());
+    assertEquals("6", cursorPage.getPrevious());
+  }
+
+  @Test
+  public void shouldGenerateCursorLinks() {
+    final CursorPage<Long> cursorPage = new CursorPage<>(asList(3L, 2L), "2", "3");
+    final String expectedLinks =
+        concatStrings(
+            COMA,
+            createWebLink(createCursorPath(postsPath, PER_PAGE, null, null), LinkRelation.FIRST),
+            createWebLink(postsPath + "?per_page=5&after=2", LinkRelation.NEXT),
+            createWebLink(postsPath + "?per_page=5&before=3", LinkRelation.PREV));
+    assertEquals(expectedLinks, createPageableWebLinks(postsPath, PER_PAGE, cursorPage));
+  }
+
   private String getWebLink(
       final long actualPage, final String rel, final String title, final String type) {
     final String pageableUri = format(PAGEABLE_PART, actualPage, PER_PAGE);
@@ -0,0 +1,66 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.exception.BeanValidationException;
+import com.v8tix.katix.social.model.SearchMatch;
+import org.junit.Test;
+import org.springframework.context.support.ResourceBundleMessageSource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.v8tix.katix.social.util.SearchHelper.decodeSearchCursor;
+import static com.v8tix.katix.social.util.SearchHelper.encodeSearchCursor;
+import static com.v8tix.katix.social.util.SearchHelper.highlight;
+import static com.v8tix.katix.social.util.SearchHelper.terms;
+import static com.v8tix.katix.social.util.SearchHelper.tokenize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SearchHelperTests {
+
+  private final ResourceBundleMessageSource messageSource = messageSource();
+
+  @Test
+  public void shouldTokenize() {
+    assertEquals(Arrays.asList("rock", "n", "roll", "2019"), tokenize(" Rock'n'ROLL, 2019!"));
+    assertEquals(Collections.emptyList(), tokenize(null));
+    assertEquals(Arrays.asList("rock", "roll"), Arrays.asList(terms("rock ROCK roll").toArray()));
+  }
+
+  @Test
+  public void shouldHighlightPrefixMatches() {
+    final List<String> terms = Arrays.asList("roc", "jazz");
+    assertEquals(
+        "I <em>rocked</em> &amp; <em>rolled</em>?",
+        highlight("I rocked & rolled?", Arrays.asList("roc", "rol"), 150));
+    assertEquals("<em>Jazz</em> &lt;3", highlight("Jazz <3", terms, 150));
+    assertNull(highlight("Blues only", terms, 150));
+    assertNull(highlight(null, terms, 150));
+  }
+
+  @Test
+  public void shouldCutLongTextAroundFirstMatch() {
+    final String text = "one two three four five six seven eight rock nine ten eleven twelve";
+    final String fragment = highlight(text, Collections.singletonList("rock"), 20);
+    assertEquals("...eight <em>rock</em> nine ten...", fragment);
+  }
+
+  @Test
+  public void shouldRoundTripCursor() {
+    final SearchMatch match = new SearchMatch("5b85bc5610dfea5143d83d75", 1535491159707L, 1.75);
+    final SearchMatch decoded = decodeSearchCursor(encodeSearchCursor(match), messageSource);
+    assertEquals(0, SearchMatch.BEST_FIRST.compare(match, decoded));
+  }
+
+  @Test(expected = BeanValidationException.class)
+  public void shouldRejectInvalidCursor() {
+    decodeSearchCursor("bm90OmEtY3Vyc29y", messageSource);
+  }
+
+  private static ResourceBundleMessageSource messageSource() {
+    final ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+    messageSource.setBasename("messages");
+    return messageSource;
+  }
+}
@@ -0,0 +1,97 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.component.SearchIndex;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.SearchMatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTests {
+
+  private static final int MAX_RESULTS = 10;
+  private static final int COMMENTS_PER_MATCH = 2;
+
+  private final SearchIndex searchIndex = new SearchIndex(null, new SimpleMeterRegistry(), true);
+
+  @Test
+  public void shouldMatchPrefixesBestFirst() {
+    searchIndex.addPosts(
+        Arrays.asList(
+            post("old", 1, "Rock and rock again"),
+            post("new", 2, "Rockabilly night"),
+            post("other", 3, "Jazz night")));
+    assertEquals(Arrays.asList("old", "new"), postIds(match("roc")));
+    assertEquals(Arrays.asList("other", "new"), postIds(match("night")));
+    assertEquals(2.0, match("rock").get(0).getScore(), 0);
+  }
+
+  @Test
+  public void shouldMatchThroughComments() {
+    searchIndex.addPosts(Arrays.asList(post("jazz", 1, "Jazz"), post("blues", 2, "Blues")));
+    searchIndex.addComments(
+        Arrays.asList(
+            comment("c1", "blues", "more jazz please"),
+            comment("c2", "blues", "jazz jazz jazz"),
+            comment("c3", "jazz", "jazz")));
+    final List<SearchMatch> matches = match("jazz");
+    assertEquals(Arrays.asList("blues", "jazz"), postIds(matches));
+    assertEquals(3.0, matches.get(0).getScore(), 0);
+    assertEquals(Arrays.asList("c2", "c1"), matches.get(0).getCommentIds());
+    assertEquals(Collections.singletonList("c3"), matches.get(1).getCommentIds());
+  }
+
+  @Test
+  public void shouldFollowUpdatesAndDeletes() {
+    searchIndex.addPosts(Collections.singletonList(post("post", 1, "rock")));
+    searchIndex.addComments(Collections.singletonList(comment("comment", "post", "swing")));
+    searchIndex.addPosts(Collections.singletonList(post("post", 1, "jazz")));
+    assertTrue(match("rock").isEmpty());
+    assertEquals(Collections.singletonList("post"), postIds(match("jazz")));
+    searchIndex.removeComments(Collections.singletonList("comment"));
+    assertTrue(match("swing").isEmpty());
+    searchIndex.addComments(Collections.singletonList(comment("comment", "post", "swing")));
+    searchIndex.removePosts(Collections.singletonList("post"));
+    assertTrue(match("jazz").isEmpty());
+    assertTrue(match("swing").isEmpty());
+  }
+
+  @Test
+  public void shouldDoNothingWhenDisabled() {
+    final SearchIndex disabled = new SearchIndex(null, new SimpleMeterRegistry(), false);
+    disabled.addPosts(Collections.singletonList(post("post", 1, "rock")));
+    disabled.load();
+    assertFalse(disabled.isReady());
+    assertTrue(disabled.match(Collections.singleton("rock"), MAX_RESULTS, 1).isEmpty());
+  }
+
+  private List<SearchMatch> match(final String term) {
+    return searchIndex.match(Collections.singleton(term), MAX_RESULTS, COMMENTS_PER_MATCH);
+  }
+
+  private static List<String> postIds(final List<SearchMatch> matches) {
+    return matches.stream().map(SearchMatch::getPostId).collect(toList());
+  }
+
+  private static Post post(final String id, final long createdAtEpoch, final String content) {
+    final Post post = new Post(content, "user");
+    post.setId(id);
+    post.setCreatedAtEpoch(createdAtEpoch);
+    return post;
+  }
+
+  private static Comment comment(final String id, final String postId, final String content) {
+    final Comment comment = new Comment(content, "user", postId);
+    comment.setId(id);
+    return comment;
+  }
+}
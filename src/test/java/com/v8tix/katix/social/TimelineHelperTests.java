@@ -0,0 +1,75 @@
+package com.v8tix.katix.social;
+
+import com.v8tix.katix.social.model.TimelineEntry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.v8tix.katix.social.util.TimelineHelper.merge;
+import static com.v8tix.katix.social.util.TimelineHelper.pageOf;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+public class TimelineHelperTests {
+
+  private static final String PUSHED = "pushed";
+  private static final String PULLED = "pulled";
+
+  // One account pushed to the timeline, one pulled, and one that crossed the threshold.
+  private final List<TimelineEntry> stored =
+      Arrays.asList(entry("p7", PUSHED, 70), entry("c5", PULLED, 50), entry("p2", PUSHED, 20));
+  private final List<TimelineEntry> pulled =
+      Arrays.asList(entry("c8", PULLED, 80), entry("c5", PULLED, 50), entry("c1", PULLED, 10));
+
+  @Test
+  public void shouldMergeStoredAndPulledOnce() {
+    assertEquals(
+        Arrays.asList("c8", "p7", "c5", "p2", "c1"),
+        postIdsOf(merge(stored, pulled, Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void shouldCapMergedEntries() {
+    assertEquals(Arrays.asList("c8", "p7", "c5"), postIdsOf(merge(pulled, stored, 3)));
+  }
+
+  @Test
+  public void shouldPageForward() {
+    final List<TimelineEntry> entries = merge(stored, pulled, Long.MAX_VALUE);
+    assertEquals(Arrays.asList("c8", "p7", "c5"), postIdsOf(pageOf(entries, 2, null, false)));
+    assertEquals(
+        Arrays.asList("c5", "p2", "c1"),
+        postIdsOf(pageOf(entries, 2, new String[] {"70", "p7"}, false)));
+    assertEquals(
+        Arrays.asList("c1"), postIdsOf(pageOf(entries, 2, new String[] {"20", "p2"}, false)));
+  }
+
+  @Test
+  public void shouldPageBackwardOldestFirst() {
+    final List<TimelineEntry> entries = merge(stored, pulled, Long.MAX_VALUE);
+    assertEquals(
+        Arrays.asList("c5", "p7", "c8"),
+        postIdsOf(pageOf(entries, 2, new String[] {"20", "p2"}, true)));
+    assertEquals(
+        Arrays.asList("c8"), postIdsOf(pageOf(entries, 2, new String[] {"70", "p7"}, true)));
+  }
+
+  @Test
+  public void shouldBreakTiesByPostId() {
+    final List<TimelineEntry> entries =
+        merge(Arrays.asList(entry("a", PUSHED, 5)), Arrays.asList(entry("b", PULLED, 5)), 10);
+    assertEquals(Arrays.asList("b", "a"), postIdsOf(entries));
+    assertEquals(
+        Arrays.asList("a"), postIdsOf(pageOf(entries, 2, new String[] {"5", "b"}, false)));
+  }
+
+  private static TimelineEntry entry(
+      final String postId, final String userId, final long createdAtEpoch) {
+    return new TimelineEntry(postId, userId, createdAtEpoch);
+  }
+
+  private static List<String> postIdsOf(final List<TimelineEntry> entries) {
+    return entries.stream().map(TimelineEntry::getPostId).collect(toList());
+  }
+}
@@ -1,5 +1,8 @@
 package com.v8tix.katix.social;
 
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.Timeline;
 import com.v8tix.katix.social.model.User;
 import com.v8tix.katix.social.utils.CommonConstants;
 import com.v8tix.katix.social.utils.CommonRestTestsHelper;
@@ -16,22 +19,49 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.MessageSource;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
 
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.function.Function;
+
+import static com.v8tix.katix.social.util.RestHelper.COMMENTS_PATH;
+import static com.v8tix.katix.social.util.RestHelper.FOLLOWING_PATH;
+import static com.v8tix.katix.social.util.RestHelper.IDS_PART;
+import static com.v8tix.katix.social.util.RestHelper.LINK_HEADER;
+import static com.v8tix.katix.social.util.RestHelper.POSTS_PATH;
+import static com.v8tix.katix.social.util.RestHelper.TIMELINE_PATH;
 import static com.v8tix.katix.social.util.RestHelper.createPageablePath;
 import static com.v8tix.katix.social.util.StringHelper.*;
 import static java.lang.String.valueOf;
 import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.DEFINED_PORT;
 
+/**
+ * Runs with a low pull threshold so the timeline tests reach the pulled accounts, and without a
+ * fan-out queue so every fan-out runs on the request that saved the post. The other settings
+ * differ from the shared test context, hence its own port.
+ */
 @RunWith(SpringRunner.class)
-@SpringBootTest(webEnvironment = DEFINED_PORT)
+@SpringBootTest(
+    webEnvironment = DEFINED_PORT,
+    properties = {
+      "server.port=0",
+      "social.timeline.pull_threshold=" + UserControllerTests.PULL_THRESHOLD,
+      "social.timeline.pulled_refresh_ms=1",
+      "social.timeline.fan_out_queue_size=0"
+    })
 @ActiveProfiles("dev")
 public class UserControllerTests
     implements CommonRestTestsHelper<User>,
@@ -42,6 +72,7 @@ public class UserControllerTests
   private static final Logger LOGGER = LoggerFactory.getLogger(UserControllerTests.class);
   private static final long PAGE = 1;
   private static final long PER_PAGE = 5;
+  static final long PULL_THRESHOLD = 1000;
 
   @Autowired private WebTestClient webTestClient;
 
@@ -52,6 +83,9 @@ public class UserControllerTests
   @Value("${rest.users.path}")
   private String usersPath;
 
+  @Value("${rest.posts.path}")
+  private String postsPath;
+
   private List<User> users;
   private User user;
 
@@ -81,11 +115,46 @@ public class UserControllerTests
     getById(webTestClient, usersPath, user.getId(), user, User.class, this::equalsByTypeId);
   }
 
+  @Test
+  public void shouldFindUsersByIds() {
+    final User other =
+        users.stream().filter(candidate -> !candidate.equals(user)).findFirst().get();
+    final String uri =
+        concatStrings(
+            EMPTY_STRING, usersPath, IDS_PART, user.getId(), ",", FAKE_STRING, ",", other.getId());
+    webTestClient
+        .get()
+        .uri(uri)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.items[0].id")
+        .isEqualTo(user.getId())
+        .jsonPath("$.items[1].id")
+        .isEqualTo(other.getId())
+        .jsonPath("$.missing[0]")
+        .isEqualTo(FAKE_STRING);
+  }
+
+  @Test
+  public void shouldNotModifyUser() {
+    getByIdNotModified(webTestClient, usersPath, user.getId());
+  }
+
   @Test
   public void shouldNotFindUser() {
     getByFakeId(webTestClient, usersPath, FAKE_STRING);
   }
 
+  @Test
+  public void shouldDeleteUserContent() {
+    final Query userContent = query(where("userId").is(user.getId()));
+    deleteById(webTestClient, usersPath, user.getId());
+    awaitZero(() -> operations.count(userContent, Post.class));
+    awaitZero(() -> operations.count(userContent, Comment.class));
+  }
+
   @Test
   public void shouldDeleteUser() {
     deleteById(webTestClient, usersPath, user.getId());
@@ -93,6 +162,11 @@ public class UserControllerTests
     assertEquals(this.users.size() - 1, users.size());
   }
 
+  @Test
+  public void shouldNotDeleteUserStaleETag() {
+    deleteByIdPreconditionFailed(webTestClient, usersPath, user.getId());
+  }
+
   @Test
   public void shouldNotDeleteUser() {
     deleteByFakeId(webTestClient, usersPath, FAKE_STRING);
@@ -222,6 +296,19 @@ public class UserControllerTests
     postValidType(webTestClient, usersPath, User.class, user);
   }
 
+  @Test
+  public void shouldNotReplaceUserOnSave() {
+    final User stored = operations.findById(user.getId(), User.class);
+    final long numberOfUsers = operations.count(new Query(), User.class);
+    user.setVersion(stored.getVersion() + 10);
+    user.setFollowerCount(stored.getFollowerCount() + 10);
+    postValidType(webTestClient, usersPath, User.class, user);
+    final User unchanged = operations.findById(user.getId(), User.class);
+    assertEquals(stored.getVersion(), unchanged.getVersion());
+    assertEquals(stored.getFollowerCount(), unchanged.getFollowerCount());
+    assertEquals(numberOfUsers + 1, operations.count(new Query(), User.class));
+  }
+
   @Test
   public void shouldNotUpdateUserValidIdInvalidUser() {
     final String expectedMessage = messageSource.getMessage(USER_GENDER_SIZE, null, null);
@@ -256,4 +343,215 @@ public class UserControllerTests
       }
     }
   }
+
+  @Test
+  public void shouldFollowUserIntoTimeline() {
+    final Post post = (Post) MathHelper.getRandomObject(operations.findAll(Post.class));
+    final String followeeId = post.getUserId();
+    final User follower =
+        users.stream().filter(other -> !other.getId().equals(followeeId)).findFirst().get();
+    final long followerCount = operations.findById(followeeId, User.class).getFollowerCount();
+    final String followingUri =
+        concatStrings(EMPTY_STRING, usersPath, follower.getId(), FOLLOWING_PATH, "/", followeeId);
+    webTestClient.put().uri(followingUri).exchange().expectStatus().isNoContent();
+    webTestClient.put().uri(followingUri).exchange().expectStatus().isNoContent();
+    assertEquals(
+        followerCount + 1, operations.findById(followeeId, User.class).getFollowerCount());
+
+    final String timelineUri =
+        concatStrings(EMPTY_STRING, usersPath, follower.getId(), TIMELINE_PATH, "?per_page=100");
+    final List<Post> timeline =
+        webTestClient
+            .get()
+            .uri(timelineUri)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBodyList(Post.class)
+            .returnResult()
+            .getResponseBody();
+    assertTrue(timeline.stream().anyMatch(timelinePost -> timelinePost.equals(post)));
+
+    webTestClient.delete().uri(followingUri).exchange().expectStatus().isNoContent();
+    webTestClient.delete().uri(followingUri).exchange().expectStatus().isNotFound();
+    assertTrue(
+        operations.findById(follower.getId(), Timeline.class).getEntries().stream()
+            .noneMatch(entry -> entry.getUserId().equals(followeeId)));
+  }
+
+  @Test
+  public void shouldFanOutInlineWhenQueueIsFull() {
+    final Post post = (Post) MathHelper.getRandomObject(operations.findAll(Post.class));
+    final String authorId = post.getUserId();
+    final User follower = otherUser(authorId);
+    final long followerCount = setFollowerCount(authorId, 0);
+    final String followingUri = followingUri(follower.getId(), authorId);
+    try {
+      webTestClient.put().uri(followingUri).exchange().expectStatus().isNoContent();
+      final Post newPost = savePost(authorId);
+      assertTrue(timelineHas(follower.getId(), newPost.getId()));
+      assertTrue(timelineHas(authorId, newPost.getId()));
+    } finally {
+      webTestClient.delete().uri(followingUri).exchange();
+      setFollowerCount(authorId, followerCount);
+    }
+  }
+
+  @Test
+  public void shouldPullPostsOfPopularAccount() {
+    final Post post = (Post) MathHelper.getRandomObject(operations.findAll(Post.class));
+    final String authorId = post.getUserId();
+    final User follower = otherUser(authorId);
+    final long followerCount = setFollowerCount(authorId, PULL_THRESHOLD);
+    final String followingUri = followingUri(follower.getId(), authorId);
+    try {
+      // The follow still copies the posts the account had, as when it crosses the threshold.
+      webTestClient.put().uri(followingUri).exchange().expectStatus().isNoContent();
+      assertTrue(timelineHas(follower.getId(), post.getId()));
+      final Post newPost = savePost(authorId);
+      assertTrue(timelineHas(authorId, newPost.getId()));
+      assertFalse(timelineHas(follower.getId(), newPost.getId()));
+
+      final List<String> timelinePostIds =
+          getTimeline(follower.getId()).stream().map(Post::getId).collect(toList());
+      assertTrue(timelinePostIds.contains(newPost.getId()));
+      assertTrue(timelinePostIds.contains(post.getId()));
+      assertEquals(new HashSet<>(timelinePostIds).size(), timelinePostIds.size());
+    } finally {
+      webTestClient.delete().uri(followingUri).exchange();
+      setFollowerCount(authorId, followerCount);
+    }
+  }
+
+  @Test
+  public void shouldNotFollowItself() {
+    final String followingUri =
+        concatStrings(EMPTY_STRING, usersPath, user.getId(), FOLLOWING_PATH, "/", user.getId());
+    webTestClient.put().uri(followingUri).exchange().expectStatus().isBadRequest();
+  }
+
+  @Test
+  public void shouldNotFindTimelineOfFakeUser() {
+    final String timelineUri =
+        concatStrings(EMPTY_STRING, usersPath, FAKE_STRING, TIMELINE_PATH, "?per_page=5");
+    webTestClient.get().uri(timelineUri).exchange().expectStatus().isNotFound();
+  }
+
+  @Test
+  public void shouldListPostsOfUser() {
+    final Post post = (Post) MathHelper.getRandomObject(operations.findAll(Post.class));
+    final List<Post> expected =
+        newestFirst(
+            operations.find(query(where("userId").is(post.getUserId())), Post.class),
+            Post::getCreatedAtEpoch,
+            Post::getId);
+    final List<Post> listed = listByUser(post.getUserId(), POSTS_PATH, Post.class);
+    assertEquals(
+        expected.stream().map(Post::getId).collect(toList()),
+        listed.stream().map(Post::getId).collect(toList()));
+  }
+
+  @Test
+  public void shouldListCommentsOfUser() {
+    final Comment comment = (Comment) MathHelper.getRandomObject(operations.findAll(Comment.class));
+    final List<Comment> expected =
+        newestFirst(
+            operations.find(query(where("userId").is(comment.getUserId())), Comment.class),
+            Comment::getCreatedAtEpoch,
+            Comment::getId);
+    final List<Comment> listed = listByUser(comment.getUserId(), COMMENTS_PATH, Comment.class);
+    assertEquals(
+        expected.stream().map(Comment::getId).collect(toList()),
+        listed.stream().map(Comment::getId).collect(toList()));
+  }
+
+  @Test
+  public void shouldNotListPostsOfFakeUser() {
+    final String postsUri =
+        concatStrings(EMPTY_STRING, usersPath, FAKE_STRING, POSTS_PATH, "?per_page=5");
+    webTestClient.get().uri(postsUri).exchange().expectStatus().isNotFound();
+  }
+
+  @Test
+  public void shouldNotListPostsPastMaxPerPage() {
+    final String postsUri =
+        concatStrings(EMPTY_STRING, usersPath, user.getId(), POSTS_PATH, "?per_page=100000");
+    webTestClient.get().uri(postsUri).exchange().expectStatus().isBadRequest();
+  }
+
+  private <T> List<T> listByUser(final String userId, final String path, final Class<T> type) {
+    final String uri =
+        concatStrings(EMPTY_STRING, usersPath, userId, path, "?per_page=", valueOf(PER_PAGE));
+    return webTestClient
+        .get()
+        .uri(uri)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectHeader()
+        .exists(LINK_HEADER)
+        .expectBodyList(type)
+        .returnResult()
+        .getResponseBody();
+  }
+
+  private static <T> List<T> newestFirst(
+      final List<T> items,
+      final Function<T, Long> createdAtEpoch,
+      final Function<T, String> id) {
+    return items.stream()
+        .sorted(comparing(createdAtEpoch).thenComparing(id).reversed())
+        .limit(PER_PAGE)
+        .collect(toList());
+  }
+
+  private User otherUser(final String userId) {
+    return users.stream().filter(other -> !other.getId().equals(userId)).findFirst().get();
+  }
+
+  private String followingUri(final String userId, final String followeeId) {
+    return concatStrings(EMPTY_STRING, usersPath, userId, FOLLOWING_PATH, "/", followeeId);
+  }
+
+  /** Sets the count the pull threshold is checked against, returning the previous one. */
+  private long setFollowerCount(final String userId, final long followerCount) {
+    final long previous = operations.findById(userId, User.class).getFollowerCount();
+    operations.updateFirst(
+        query(where("_id").is(userId)),
+        new Update().set(User.FOLLOWER_COUNT, followerCount),
+        User.class);
+    return previous;
+  }
+
+  private Post savePost(final String userId) {
+    final String content = concatStrings(" ", FAKE_CONTENT, valueOf(System.nanoTime()));
+    webTestClient
+        .post()
+        .uri(postsPath)
+        .body(Mono.just(new Post(content, userId)), Post.class)
+        .exchange()
+        .expectStatus()
+        .isCreated();
+    return operations.findOne(query(where("content").is(content)), Post.class);
+  }
+
+  private boolean timelineHas(final String userId, final String postId) {
+    final Timeline timeline = operations.findById(userId, Timeline.class);
+    return timeline != null
+        && timeline.getEntries().stream().anyMatch(entry -> entry.getPostId().equals(postId));
+  }
+
+  private List<Post> getTimeline(final String userId) {
+    final String timelineUri =
+        concatStrings(EMPTY_STRING, usersPath, userId, TIMELINE_PATH, "?per_page=100");
+    return webTestClient
+        .get()
+        .uri(timelineUri)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBodyList(Post.class)
+        .returnResult()
+        .getResponseBody();
+  }
 }
@@ -0,0 +1,140 @@
+package com.v8tix.katix.social.benchmark;
+
+import com.v8tix.katix.social.component.CounterCache;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.repository.PostReactiveRepository;
+import com.v8tix.katix.social.service.PostReactiveService;
+import com.v8tix.katix.social.utils.CommonConstants;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.DEFINED_PORT;
+
+/**
+ * Compares materialising the posts collection to count it against {@link
+ * PostReactiveService#getNumberOfPosts()} while the collection grows. It is not picked up by
+ * surefire's default includes; run it with {@code mvn test -Dtest=CountBenchmark} and optionally
+ * {@code -Dbenchmark.sizes=1000,10000,100000 -Dbenchmark.iterations=50}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = DEFINED_PORT)
+@ActiveProfiles("dev")
+public class CountBenchmark implements CommonConstants {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CountBenchmark.class);
+  private static final String BENCHMARK_USER_ID = "count-benchmark";
+  private static final int INSERT_BATCH = 5000;
+
+  @Autowired private MongoOperations operations;
+
+  @Autowired private PostReactiveRepository postReactiveRepository;
+
+  @Autowired private PostReactiveService postReactiveService;
+
+  @Autowired private CounterCache counterCache;
+
+  @Test
+  public void countLatencyAndHeapStayFlat() {
+    final long iterations = Long.getLong("benchmark.iterations", 20);
+    final long existing = operations.count(new Query(), Post.class);
+    long seeded = 0;
+    LOGGER.info("size | materialise ms | materialise alloc KB | counter ms | counter alloc KB");
+    for (long size : sizes()) {
+      seeded += seed(size - seeded);
+      final long expected = existing + seeded;
+      final Result materialise =
+          measure(
+              iterations,
+              () -> postReactiveRepository.findAll().collectList().map(list -> (long) list.size()));
+      counterCache.invalidate(counterCache.collectionKey(Post.class));
+      final Result counter = measure(iterations, postReactiveService::getNumberOfPosts);
+      assertEquals(expected, materialise.lastCount);
+      assertEquals(expected, counter.lastCount);
+      LOGGER.info(
+          format(
+              "%d | %.3f | %d | %.3f | %d",
+              expected,
+              materialise.meanMillis,
+              materialise.meanAllocatedKb,
+              counter.meanMillis,
+              counter.meanAllocatedKb));
+    }
+  }
+
+  @After
+  public void cleanUp() {
+    operations.remove(Query.query(Criteria.where("userId").is(BENCHMARK_USER_ID)), Post.class);
+  }
+
+  private static List<Long> sizes() {
+    final String sizes = System.getProperty("benchmark.sizes", "1000,10000,50000");
+    final List<Long> result = new ArrayList<>();
+    Arrays.stream(sizes.split(",")).map(String::trim).map(Long::valueOf).forEach(result::add);
+    return result;
+  }
+
+  private long seed(final long amount) {
+    long inserted = 0;
+    while (inserted < amount) {
+      final long batchSize = Math.min(INSERT_BATCH, amount - inserted);
+      final List<Post> batch = new ArrayList<>();
+      for (int i = 0; i < batchSize; i++) {
+        final Post post = new Post(FAKE_CONTENT, BENCHMARK_USER_ID);
+        post.setProfilePicture(FAKE_STRING);
+        batch.add(post);
+      }
+      operations.insertAll(batch);
+      inserted += batchSize;
+    }
+    return inserted;
+  }
+
+  private static Result measure(final long iterations, final Supplier<Mono<Long>> count) {
+    final Result result = new Result();
+    count.get().block();
+    long elapsed = 0;
+    long allocated = 0;
+    for (int i = 0; i < iterations; i++) {
+      final long allocatedBefore = allocatedBytes();
+      final long start = System.nanoTime();
+      result.lastCount = count.get().block();
+      elapsed += System.nanoTime() - start;
+      allocated += allocatedBytes() - allocatedBefore;
+    }
+    result.meanMillis = elapsed / (iterations * 1_000_000d);
+    result.meanAllocatedKb = allocated / (iterations * 1024);
+    return result;
+  }
+
+  private static long allocatedBytes() {
+    final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final long[] allocated = threads.getThreadAllocatedBytes(threads.getAllThreadIds());
+    return Arrays.stream(allocated).filter(bytes -> bytes > 0).sum();
+  }
+
+  private static class Result {
+    private long lastCount;
+    private double meanMillis;
+    private long meanAllocatedKb;
+  }
+}
@@ -0,0 +1,385 @@
+package com.v8tix.katix.social.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.v8tix.katix.social.model.Comment;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.User;
+import com.v8tix.katix.social.util.JsonHelper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.DEFINED_PORT;
+import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+
+/**
+ * Open-loop load test against the application running on embedded Mongo. Requests are issued on a
+ * fixed schedule, whether or not earlier responses have arrived. Each latency is measured from
+ * the moment the request was due rather than when it was sent, so a stalled server shows up in
+ * the percentiles instead of silently lowering the offered rate (coordinated omission).
+ *
+ * <p>It is not picked up by surefire's default includes; run it with {@code mvn test
+ * -Dtest=LoadBenchmark}. The knobs are system properties, for example {@code -Dload.rate=500
+ * -Dload.duration_s=60 -Dload.posts=5000}. The report is written to {@code
+ * target/load-report.json}. The first run also writes it to {@code load.baseline} (default
+ * {@code load-baseline.json}); later runs fail when an endpoint's p99 exceeds the baseline by more
+ * than {@code load.tolerance}. Pass {@code -Dload.update_baseline=true} to replace the baseline.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = DEFINED_PORT)
+@ActiveProfiles("dev")
+public class LoadBenchmark {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadBenchmark.class);
+  private static final String MARKER = "load-benchmark";
+  private static final String MARKER_EMAIL = "load-benchmark@v8tix.com";
+  private static final String API_PATH = "/katix/social/api/v1";
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final int INSERT_BATCH = 5000;
+  private static final long MAX_IN_FLIGHT = 10_000;
+
+  @Autowired private MongoOperations operations;
+
+  @Value("${server.port}")
+  private int port;
+
+  @Value("${social.embed.preview_size}")
+  private int previewSize;
+
+  private final int rate = Integer.getInteger("load.rate", 200);
+  private final int warmupSeconds = Integer.getInteger("load.warmup_s", 10);
+  private final int durationSeconds = Integer.getInteger("load.duration_s", 30);
+  private final int users = Integer.getInteger("load.users", 100);
+  private final int posts = Integer.getInteger("load.posts", 1000);
+  private final int commentsPerPost = Integer.getInteger("load.comments_per_post", 5);
+  private final int perPage = Integer.getInteger("load.per_page", 10);
+  private final long seed = Long.getLong("load.seed", 42L);
+  private final double tolerance =
+      Double.parseDouble(System.getProperty("load.tolerance", "0.25"));
+  private final File baselineFile =
+      new File(System.getProperty("load.baseline", "load-baseline.json"));
+  private final boolean updateBaseline = Boolean.getBoolean("load.update_baseline");
+
+  private final List<String> userIds = new ArrayList<>();
+  private final List<String> postIds = new ArrayList<>();
+
+  @Test
+  public void mixedTrafficStaysWithinBaseline() throws IOException {
+    seed();
+    final WebClient webClient = WebClient.create("http://localhost:" + port + API_PATH);
+    final Random random = new Random(seed);
+    final List<Endpoint> endpoints = endpoints(random);
+    final int totalWeight = endpoints.stream().mapToInt(endpoint -> endpoint.weight).sum();
+    final AtomicLong inFlight = new AtomicLong();
+    final long periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    final long start = System.nanoTime();
+    final long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+    final long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+    for (long i = 0; ; i++) {
+      final long intendedStart = start + i * periodNanos;
+      if (intendedStart >= end) {
+        break;
+      }
+      waitUntil(intendedStart);
+      final Endpoint endpoint = pick(endpoints, random.nextInt(totalWeight));
+      final boolean measured = intendedStart >= measureFrom;
+      if (inFlight.get() >= MAX_IN_FLIGHT) {
+        endpoint.dropped(measured);
+        continue;
+      }
+      inFlight.incrementAndGet();
+      endpoint
+          .request
+          .apply(webClient)
+          .exchange()
+          .flatMap(response -> response.bodyToMono(Void.class).thenReturn(response.statusCode()))
+          .doFinally(signal -> inFlight.decrementAndGet())
+          .subscribe(
+              status -> endpoint.record(measured, intendedStart, status),
+              error -> endpoint.failed(measured));
+    }
+    awaitInFlight(inFlight);
+    final Map<String, Map<String, Object>> report = report(endpoints);
+    final ObjectWriter writer = JsonHelper.MAPPER.writerWithDefaultPrettyPrinter();
+    writer.writeValue(new File("target/load-report.json"), report);
+    if (updateBaseline || !baselineFile.exists()) {
+      writer.writeValue(baselineFile, report);
+      LOGGER.info(format("Baseline written to %s", baselineFile.getAbsolutePath()));
+      return;
+    }
+    final List<String> regressions = compareWithBaseline(report);
+    assertTrue(regressions.toString(), regressions.isEmpty());
+  }
+
+  @After
+  public void cleanUp() {
+    final Query byMarker = Query.query(Criteria.where("content").is(MARKER));
+    operations.remove(byMarker, Comment.class);
+    operations.remove(byMarker, Post.class);
+    operations.remove(Query.query(Criteria.where("email").is(MARKER_EMAIL)), User.class);
+  }
+
+  private void seed() {
+    final List<User> seededUsers = new ArrayList<>();
+    for (int i = 0; i < users; i++) {
+      seededUsers.add(newUser(i));
+    }
+    operations.insertAll(seededUsers).forEach(user -> userIds.add(user.getId()));
+    final Random random = new Random(seed);
+    final List<Post> seededPosts = new ArrayList<>();
+    for (int i = 0; i < posts; i++) {
+      final Post post = new Post(MARKER, userIds.get(random.nextInt(userIds.size())));
+      post.setProfilePicture(MARKER);
+      post.setCommentCount(commentsPerPost);
+      seededPosts.add(post);
+      if (seededPosts.size() == INSERT_BATCH || i == posts - 1) {
+        operations.insertAll(seededPosts).forEach(saved -> postIds.add(saved.getId()));
+        seededPosts.clear();
+      }
+    }
+    final List<Comment> seededComments = new ArrayList<>();
+    final Map<String, List<Comment>> latestComments = new LinkedHashMap<>();
+    for (String postId : postIds) {
+      for (int i = 0; i < commentsPerPost; i++) {
+        final Comment comment =
+            new Comment(MARKER, userIds.get(random.nextInt(userIds.size())), postId);
+        seededComments.add(comment);
+        if (i >= commentsPerPost - previewSize) {
+          latestComments.computeIfAbsent(postId, id -> new ArrayList<>()).add(0, comment);
+        }
+        if (seededComments.size() == INSERT_BATCH) {
+          operations.insertAll(seededComments);
+          seededComments.clear();
+        }
+      }
+    }
+    operations.insertAll(seededComments);
+    final BulkOperations previews = operations.bulkOps(BulkMode.UNORDERED, Post.class);
+    latestComments.forEach(
+        (postId, comments) ->
+            previews.updateOne(
+                Query.query(Criteria.where("id").is(postId)),
+                Update.update(Post.LATEST_COMMENTS, comments)));
+    if (!latestComments.isEmpty()) {
+      previews.execute();
+    }
+    LOGGER.info(
+        format(
+            "Seeded %d users, %d posts and %d comments",
+            users, posts, posts * commentsPerPost));
+  }
+
+  private List<Endpoint> endpoints(final Random random) {
+    final int pages = Math.max(1, posts / perPage);
+    final List<Endpoint> endpoints = new ArrayList<>();
+    endpoints.add(
+        new Endpoint(
+            "GET /posts",
+            Integer.getInteger("load.weight.posts", 50),
+            webClient ->
+                webClient
+                    .get()
+                    .uri(
+                        "/posts/?page={page}&per_page={perPage}",
+                        random.nextInt(pages) + 1,
+                        perPage)
+                    .accept(APPLICATION_JSON_UTF8)));
+    endpoints.add(
+        new Endpoint(
+            "GET /posts?embed=comments",
+            Integer.getInteger("load.weight.posts_embed", 30),
+            webClient ->
+                webClient
+                    .get()
+                    .uri(
+                        "/posts/?page={page}&per_page={perPage}&embed=comments",
+                        random.nextInt(pages) + 1,
+                        perPage)
+                    .accept(APPLICATION_JSON_UTF8)));
+    endpoints.add(
+        new Endpoint(
+            "POST /posts/{id}/comments",
+            Integer.getInteger("load.weight.comment_create", 15),
+            webClient -> {
+              final String postId = postIds.get(random.nextInt(postIds.size()));
+              final String userId = userIds.get(random.nextInt(userIds.size()));
+              return webClient
+                  .post()
+                  .uri("/posts/{postId}/comments/", postId)
+                  .contentType(APPLICATION_JSON_UTF8)
+                  .syncBody(new Comment(MARKER, userId, postId));
+            }));
+    endpoints.add(
+        new Endpoint(
+            "PUT /users/{id}",
+            Integer.getInteger("load.weight.user_update", 5),
+            webClient -> {
+              final int index = random.nextInt(userIds.size());
+              return webClient
+                  .put()
+                  .uri("/users/{userId}", userIds.get(index))
+                  .contentType(APPLICATION_JSON_UTF8)
+                  .syncBody(newUser(index));
+            }));
+    return endpoints;
+  }
+
+  private static User newUser(final int index) {
+    return new User("Load", "Benchmark", MARKER_EMAIL, index % 2 == 0 ? "male" : "female", MARKER);
+  }
+
+  private static Endpoint pick(final List<Endpoint> endpoints, final int ticket) {
+    int remaining = ticket;
+    for (Endpoint endpoint : endpoints) {
+      if (remaining < endpoint.weight) {
+        return endpoint;
+      }
+      remaining -= endpoint.weight;
+    }
+    return endpoints.get(endpoints.size() - 1);
+  }
+
+  private static void waitUntil(final long nanoTime) {
+    long now;
+    while ((now = System.nanoTime()) < nanoTime) {
+      LockSupport.parkNanos(nanoTime - now);
+    }
+  }
+
+  private static void awaitInFlight(final AtomicLong inFlight) {
+    final long deadline = System.nanoTime() + HIGHEST_TRACKABLE_NANOS;
+    while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+  }
+
+  private Map<String, Map<String, Object>> report(final List<Endpoint> endpoints) {
+    final Map<String, Map<String, Object>> report = new LinkedHashMap<>();
+    LOGGER.info("endpoint | requests/s | p50 ms | p99 ms | p999 ms | errors | dropped");
+    for (Endpoint endpoint : endpoints) {
+      final Histogram latencies = endpoint.latencies;
+      final Map<String, Object> summary = new LinkedHashMap<>();
+      summary.put("requests", latencies.getTotalCount());
+      summary.put("throughput", latencies.getTotalCount() / (double) durationSeconds);
+      summary.put("p50_ms", millis(latencies.getValueAtPercentile(50)));
+      summary.put("p99_ms", millis(latencies.getValueAtPercentile(99)));
+      summary.put("p999_ms", millis(latencies.getValueAtPercentile(99.9)));
+      summary.put("max_ms", millis(latencies.getMaxValue()));
+      summary.put("errors", endpoint.errors.get());
+      summary.put("dropped", endpoint.dropped.get());
+      report.put(endpoint.name, summary);
+      LOGGER.info(
+          format(
+              "%s | %.1f | %.3f | %.3f | %.3f | %d | %d",
+              endpoint.name,
+              summary.get("throughput"),
+              summary.get("p50_ms"),
+              summary.get("p99_ms"),
+              summary.get("p999_ms"),
+              endpoint.errors.get(),
+              endpoint.dropped.get()));
+    }
+    return report;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<String> compareWithBaseline(final Map<String, Map<String, Object>> report)
+      throws IOException {
+    final Map<String, Map<String, Object>> baseline =
+        JsonHelper.MAPPER.readValue(baselineFile, Map.class);
+    final List<String> regressions = new ArrayList<>();
+    report.forEach(
+        (name, summary) -> {
+          final Map<String, Object> expected = baseline.get(name);
+          if (expected == null) {
+            return;
+          }
+          final double baselineP99 = ((Number) expected.get("p99_ms")).doubleValue();
+          final double p99 = ((Number) summary.get("p99_ms")).doubleValue();
+          LOGGER.info(format("%s p99: baseline %.3f ms, now %.3f ms", name, baselineP99, p99));
+          if (p99 > baselineP99 * (1 + tolerance)) {
+            regressions.add(format("%s p99 %.3f ms > baseline %.3f ms", name, p99, baselineP99));
+          }
+          if (((Number) summary.get("errors")).longValue() > 0) {
+            regressions.add(format("%s had %s errors", name, summary.get("errors")));
+          }
+        });
+    return regressions;
+  }
+
+  private static double millis(final long nanos) {
+    return nanos / 1_000_000d;
+  }
+
+  private static class Endpoint {
+
+    private final String name;
+    private final int weight;
+    private final Function<WebClient, WebClient.RequestHeadersSpec<?>> request;
+    private final Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Endpoint(
+        final String name,
+        final int weight,
+        final Function<WebClient, WebClient.RequestHeadersSpec<?>> request) {
+      this.name = name;
+      this.weight = weight;
+      this.request = request;
+    }
+
+    private void record(final boolean measured, final long intendedStart, final HttpStatus status) {
+      if (!measured) {
+        return;
+      }
+      latencies.recordValue(Math.min(System.nanoTime() - intendedStart, HIGHEST_TRACKABLE_NANOS));
+      if (status.isError()) {
+        errors.incrementAndGet();
+      }
+    }
+
+    private void failed(final boolean measured) {
+      if (measured) {
+        errors.incrementAndGet();
+      }
+    }
+
+    private void dropped(final boolean measured) {
+      if (measured) {
+        dropped.incrementAndGet();
+      }
+    }
+  }
+}
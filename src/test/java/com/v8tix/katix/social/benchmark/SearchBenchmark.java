@@ -0,0 +1,111 @@
+package com.v8tix.katix.social.benchmark;
+
+import com.v8tix.katix.social.component.SearchIndex;
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.model.Post;
+import com.v8tix.katix.social.model.SearchHit;
+import com.v8tix.katix.social.service.SearchReactiveService;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.v8tix.katix.social.service.SearchReactiveService.MEMORY_MODE;
+import static com.v8tix.katix.social.service.SearchReactiveService.MONGO_MODE;
+import static com.v8tix.katix.social.util.SearchHelper.tokenize;
+import static java.lang.String.format;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.DEFINED_PORT;
+
+/**
+ * Compares the two search modes of {@link SearchReactiveService} on the seeded dataset: the same
+ * words searched through the Mongo text indexes and through the in-process {@link SearchIndex},
+ * then the prefixes of those words, which only the in-process index answers as prefixes. It is not
+ * picked up by surefire's default includes; run it with {@code mvn test -Dtest=SearchBenchmark}
+ * and optionally {@code -Dbenchmark.iterations=200 -Dbenchmark.queries=50}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = DEFINED_PORT)
+@ActiveProfiles("dev")
+public class SearchBenchmark {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SearchBenchmark.class);
+  private static final long PER_PAGE = 20;
+  private static final int MIN_WORD_LENGTH = 4;
+  private static final int PREFIX_LENGTH = 3;
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  @Autowired private MongoOperations operations;
+
+  @Autowired private SearchReactiveService searchReactiveService;
+
+  @Autowired private SearchIndex searchIndex;
+
+  @Test
+  public void compareSearchModes() throws InterruptedException {
+    final long iterations = Long.getLong("benchmark.iterations", 100);
+    final List<String> words = words(Integer.getInteger("benchmark.queries", 20));
+    assertTrue(searchIndex.isEnabled());
+    while (!searchIndex.isReady()) {
+      Thread.sleep(100);
+    }
+    final List<String> prefixes = new ArrayList<>();
+    words.forEach(word -> prefixes.add(word.substring(0, PREFIX_LENGTH)));
+    LOGGER.info("queries | mode | mean ms | p50 ms | p99 ms | mean hits");
+    report("words", MONGO_MODE, words, iterations);
+    report("words", MEMORY_MODE, words, iterations);
+    report("prefixes", MONGO_MODE, prefixes, iterations);
+    report("prefixes", MEMORY_MODE, prefixes, iterations);
+  }
+
+  private List<String> words(final int queries) {
+    final Set<String> words = new LinkedHashSet<>();
+    for (Post post : operations.findAll(Post.class)) {
+      for (String token : tokenize(post.getContent())) {
+        if (token.length() >= MIN_WORD_LENGTH && words.size() < queries) {
+          words.add(token);
+        }
+      }
+    }
+    return new ArrayList<>(words);
+  }
+
+  private void report(
+      final String name, final String mode, final List<String> queries, final long iterations) {
+    queries.forEach(query -> search(query, mode));
+    final Histogram latencies = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+    long hits = 0;
+    for (int i = 0; i < iterations; i++) {
+      for (String query : queries) {
+        final long start = System.nanoTime();
+        hits += search(query, mode).getItems().size();
+        latencies.recordValue(Math.min(System.nanoTime() - start, HIGHEST_TRACKABLE_NANOS));
+      }
+    }
+    LOGGER.info(
+        format(
+            "%s | %s | %.3f | %.3f | %.3f | %.1f",
+            name,
+            mode,
+            latencies.getMean() / 1_000_000d,
+            latencies.getValueAtPercentile(50) / 1_000_000d,
+            latencies.getValueAtPercentile(99) / 1_000_000d,
+            hits / (double) (iterations * queries.size())));
+  }
+
+  private CursorPage<SearchHit> search(final String query, final String mode) {
+    return searchReactiveService.search(query, mode, PER_PAGE, null, null).block();
+  }
+}
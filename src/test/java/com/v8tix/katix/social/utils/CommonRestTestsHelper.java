@@ -1,21 +1,34 @@
 package com.v8tix.katix.social.utils;
 
 import com.v8tix.katix.social.exception.ErrorDetail;
+import com.v8tix.katix.social.model.BulkResult;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
 
+import static com.v8tix.katix.social.util.RestHelper.APPLICATION_NDJSON_VALUE;
+import static com.v8tix.katix.social.util.RestHelper.BULK_PATH;
+import static com.v8tix.katix.social.util.RestHelper.EXPORT_PATH;
 import static com.v8tix.katix.social.util.StringHelper.EMPTY_STRING;
 import static com.v8tix.katix.social.util.StringHelper.concatStrings;
 import static org.junit.Assert.assertEquals;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+import static org.springframework.http.MediaType.APPLICATION_STREAM_JSON;
 
 public interface CommonRestTestsHelper<T> extends WebTestClientHelper<T> {
 
     String LOCATION_HEADER = "Location";
     String LINK_HEADER = "Link";
+    String ETAG_HEADER = "ETag";
+    String STALE_ETAG = "\"-1\"";
+    long AWAIT_TIMEOUT_MS = 10000;
+    long AWAIT_POLL_MS = 100;
 
     default void getById(final WebTestClient webTestClient,
                          final String baseURI,
@@ -52,6 +65,50 @@ public interface CommonRestTestsHelper<T> extends WebTestClientHelper<T> {
         deleteExchange(uri, webTestClient).expectStatus().isNoContent();
     }
 
+    /** Waits for background work, such as a cascade delete, to bring {@code count} to zero. */
+    default void awaitZero(final LongSupplier count) {
+        final long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT_MS;
+        while (count.getAsLong() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(AWAIT_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        assertEquals(0, count.getAsLong());
+    }
+
+    default List<BulkResult> postBulk(final WebTestClient webTestClient,
+                                      final String baseURI,
+                                      final String... lines) {
+        final String uri = concatStrings(EMPTY_STRING, baseURI, BULK_PATH.substring(1));
+        return webTestClient.post().uri(uri)
+                .contentType(MediaType.valueOf(APPLICATION_NDJSON_VALUE))
+                .accept(APPLICATION_STREAM_JSON)
+                .syncBody(String.join("\n", lines))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BulkResult.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    default List<T> getExport(final WebTestClient webTestClient,
+                              final String baseURI,
+                              final String after,
+                              final Class<T> typeClass) {
+        final String uri = concatStrings(EMPTY_STRING, baseURI, EXPORT_PATH.substring(1),
+                after != null ? "?after=" + after : EMPTY_STRING);
+        return webTestClient.get().uri(uri)
+                .accept(APPLICATION_STREAM_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(typeClass)
+                .returnResult()
+                .getResponseBody();
+    }
+
     default void deleteByFakeId(final WebTestClient webTestClient,
                                 final String baseURI,
                                 final String id) {
@@ -194,4 +251,57 @@ public interface CommonRestTestsHelper<T> extends WebTestClientHelper<T> {
                         }
                 );
     }
+
+    default void getByIdNotModified(final WebTestClient webTestClient,
+                                    final String baseURI,
+                                    final String id) {
+        final String uri = concatStrings(EMPTY_STRING, baseURI, id);
+        final String eTag = getExchange(uri, webTestClient)
+                .expectStatus().isOk()
+                .expectHeader().exists(ETAG_HEADER)
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+        getRequest(uri, webTestClient)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(ETAG_HEADER, eTag)
+                .expectBody().isEmpty();
+    }
+
+    default void putIdPreconditionFailed(final WebTestClient webTestClient,
+                                         final String baseURI,
+                                         final String id,
+                                         final Class<T> typeClass,
+                                         final T type) {
+        final String uri = concatStrings(EMPTY_STRING, baseURI, id);
+        getUpsertRequest(uri, webTestClient.put())
+                .header(HttpHeaders.IF_MATCH, STALE_ETAG)
+                .body(Mono.just(type), typeClass)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED)
+                .expectBody(ErrorDetail.class);
+    }
+
+    default void deleteByIdPreconditionFailed(final WebTestClient webTestClient,
+                                              final String baseURI,
+                                              final String id) {
+        final String uri = concatStrings(EMPTY_STRING, baseURI, id);
+        deleteRequest(uri, webTestClient)
+                .header(HttpHeaders.IF_MATCH, STALE_ETAG)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    default void putIdConflict(final WebTestClient webTestClient,
+                               final String baseURI,
+                               final String id,
+                               final Class<T> typeClass,
+                               final T type) {
+        final String uri = concatStrings(EMPTY_STRING, baseURI, id);
+        upsertExchange(typeClass, Mono.just(type), uri, webTestClient.put())
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(ErrorDetail.class);
+    }
 }
@@ -0,0 +1,117 @@
+package com.v8tix.katix.social.utils;
+
+import com.v8tix.katix.social.model.CursorPage;
+import com.v8tix.katix.social.util.LinkRelation;
+
+import static com.v8tix.katix.social.util.RestHelper.AFTER_PART;
+import static com.v8tix.katix.social.util.RestHelper.BEFORE_PART;
+import static com.v8tix.katix.social.util.RestHelper.CURSOR_PART;
+import static com.v8tix.katix.social.util.RestHelper.FIRST_PAGE;
+import static com.v8tix.katix.social.util.RestHelper.PAGEABLE_PART;
+import static com.v8tix.katix.social.util.RestHelper.RFC_5988_LINK_FORMAT;
+import static com.v8tix.katix.social.util.RestHelper.getNumberOfPages;
+import static com.v8tix.katix.social.util.RestHelper.hasNextPage;
+import static com.v8tix.katix.social.util.RestHelper.hasPreviousPage;
+import static com.v8tix.katix.social.util.StringHelper.COMA;
+import static com.v8tix.katix.social.util.StringHelper.EMPTY_STRING;
+import static com.v8tix.katix.social.util.StringHelper.concatStrings;
+import static java.lang.String.format;
+
+/**
+ * The {@code String.format} based link rendering that RestHelper used before LinkHeaderWriter. It
+ * is the reference for the equality tests and the link benchmarks.
+ */
+public interface LegacyLinkHelper {
+
+  static String createWebLink(final String path, final LinkRelation linkRelation) {
+    return format(
+        RFC_5988_LINK_FORMAT,
+        path,
+        linkRelation.getRel(),
+        linkRelation.getTitle(),
+        linkRelation.getType());
+  }
+
+  static String createPageableWebLink(
+      final String path, final long page, final long perPage, final LinkRelation linkRelation) {
+    final String pageablePath =
+        concatStrings(EMPTY_STRING, path, format(PAGEABLE_PART, page, perPage));
+    return createWebLink(pageablePath, linkRelation);
+  }
+
+  static String createPageableWebLinks(
+      final String path, final long page, final long perPage, final long numberOfElements) {
+    final String firstWebLink =
+        createPageableWebLink(path, FIRST_PAGE, perPage, LinkRelation.FIRST);
+    final String lastWebLink =
+        createPageableWebLink(
+            path, getNumberOfPages(numberOfElements, perPage), perPage, LinkRelation.LAST);
+    String nextWebLink = EMPTY_STRING;
+    if (hasNextPage(numberOfElements, page, perPage)) {
+      nextWebLink = createPageableWebLink(path, page + 1, perPage, LinkRelation.NEXT);
+    }
+    String previousWebLink = EMPTY_STRING;
+    if (hasPreviousPage(numberOfElements, page, perPage)) {
+      previousWebLink = createPageableWebLink(path, page - 1, perPage, LinkRelation.PREV);
+    }
+    return concatStrings(COMA, firstWebLink, lastWebLink, nextWebLink, previousWebLink);
+  }
+
+  static String createCursorWebLink(
+      final String path,
+      final long perPage,
+      final String after,
+      final String before,
+      final LinkRelation linkRelation) {
+    final String cursorPathPart = format(CURSOR_PART, perPage);
+    final String cursorPath;
+    if (after != null) {
+      cursorPath = concatStrings(EMPTY_STRING, path, cursorPathPart, AFTER_PART, after);
+    } else if (before != null) {
+      cursorPath = concatStrings(EMPTY_STRING, path, cursorPathPart, BEFORE_PART, before);
+    } else {
+      cursorPath = concatStrings(EMPTY_STRING, path, cursorPathPart);
+    }
+    return createWebLink(cursorPath, linkRelation);
+  }
+
+  static String createPageableWebLinks(
+      final String path, final long perPage, final CursorPage<?> cursorPage) {
+    final String firstWebLink = createCursorWebLink(path, perPage, null, null, LinkRelation.FIRST);
+    String nextWebLink = EMPTY_STRING;
+    if (cursorPage.getNext() != null) {
+      nextWebLink =
+          createCursorWebLink(path, perPage, cursorPage.getNext(), null, LinkRelation.NEXT);
+    }
+    String previousWebLink = EMPTY_STRING;
+    if (cursorPage.getPrevious() != null) {
+      previousWebLink =
+          createCursorWebLink(path, perPage, null, cursorPage.getPrevious(), LinkRelation.PREV);
+    }
+    return concatStrings(COMA, firstWebLink, nextWebLink, previousWebLink);
+  }
+
+  static String createSelfWebLinks(final String path, final String id, final String... webLinks) {
+    final String selfWebLink =
+        createWebLink(concatStrings(EMPTY_STRING, path, id), LinkRelation.SELF);
+    return concatStrings(COMA, selfWebLink, webLinks);
+  }
+
+  static String createPageableHeader(
+      final String path,
+      final long page,
+      final long perPage,
+      final long numberOfElements,
+      final String... webLinks) {
+    final String pageableWebLinks = createPageableWebLinks(path, page, perPage, numberOfElements);
+    return concatStrings(COMA, pageableWebLinks, webLinks);
+  }
+
+  static String createCursorHeader(
+      final String path,
+      final long perPage,
+      final CursorPage<?> cursorPage,
+      final String... webLinks) {
+    return concatStrings(COMA, createPageableWebLinks(path, perPage, cursorPage), webLinks);
+  }
+}